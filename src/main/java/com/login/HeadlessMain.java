@@ -0,0 +1,123 @@
+package com.login;
+
+import com.login.dao.impl.ActiveUserAnalytics;
+import com.login.dao.impl.LoginAuditLog;
+import com.login.model.UserRecord;
+import com.login.service.ServiceOverloadedException;
+import com.login.service.UserService;
+import com.login.util.DatabaseUtil;
+import com.login.util.HealthReport;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+/**
+ * Command-line entry point for scripts and batch jobs, without any Swing.
+ * This is the main class of the native executable built by the {@code native} Maven profile.
+ * <p>
+ * Usage: {@code login-cli <command> [args]} where command is one of
+ * {@code register <username> <password> [email]}, {@code login <username> <password>},
+ * {@code available <username>}, {@code purge <inactive-days>} or {@code health}.
+ * Exits with 0 on success, 1 if the request was refused, 2 on bad usage and
+ * 3 if the database failed.
+ */
+public class HeadlessMain {
+
+    private static final String USAGE = "Usage: login-cli register <username> <password> [email]\n"
+            + "       login-cli login <username> <password>\n"
+            + "       login-cli available <username>\n"
+            + "       login-cli purge <inactive-days>\n"
+            + "       login-cli health";
+
+    private static UserService service;
+
+    public static void main(String[] args) {
+        int status;
+        try {
+            status = run(args);
+        } finally {
+            if (service != null) {
+                // Write out buffered login events and sketches before the process exits
+                LoginAuditLog auditLog = LoginAuditLog.getInstance();
+                if (auditLog != null) {
+                    auditLog.close();
+                }
+                ActiveUserAnalytics analytics = ActiveUserAnalytics.getInstance();
+                if (analytics != null) {
+                    analytics.close();
+                }
+            }
+        }
+        System.exit(status);
+    }
+
+    private static int run(String[] args) {
+        if (args.length == 0) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        try {
+            switch (args[0]) {
+                case "register":
+                    if (args.length < 3 || args.length > 4) {
+                        break;
+                    }
+                    long id = userService().registerUser(args[1], args[2], args.length > 3 ? args[3] : null).getId();
+                    System.out.println("Registered " + args[1] + " with id " + id);
+                    return 0;
+                case "login":
+                    if (args.length != 3) {
+                        break;
+                    }
+                    UserRecord record = userService().authenticate(args[1], args[2], "login-cli");
+                    System.out.println("Authenticated " + record.getUsername());
+                    return 0;
+                case "available":
+                    if (args.length != 2) {
+                        break;
+                    }
+                    boolean available = userService().isUsernameAvailable(args[1]);
+                    System.out.println(available ? "available" : "taken");
+                    return available ? 0 : 1;
+                case "purge":
+                    if (args.length != 2) {
+                        break;
+                    }
+                    LocalDateTime cutoff = LocalDateTime.now().minusDays(Long.parseLong(args[1]));
+                    long deleted = userService().purgeInactiveUsers(cutoff, null);
+                    System.out.println("Deleted " + deleted + " inactive users");
+                    return 0;
+                case "health":
+                    if (args.length != 1) {
+                        break;
+                    }
+                    HealthReport report = DatabaseUtil.checkHealth();
+                    System.out.println(report.toJson());
+                    return report.isHealthy() ? 0 : 3;
+                default:
+                    break;
+            }
+            System.err.println(USAGE);
+            return 2;
+        } catch (NumberFormatException e) {
+            System.err.println("Not a number: " + e.getMessage());
+            return 2;
+        } catch (IllegalArgumentException | ServiceOverloadedException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        } catch (SQLException e) {
+            System.err.println("Database error: " + e.getMessage());
+            return 3;
+        }
+    }
+
+    /**
+     * Create the service on first use, so commands that do not need it skip its startup
+     */
+    private static UserService userService() {
+        if (service == null) {
+            service = new UserService();
+        }
+        return service;
+    }
+}
@@ -1,5 +1,6 @@
 package com.login;
 
+import com.login.util.ConfigWatcher;
 import com.login.util.DatabaseUtil;
 import com.login.view.LoginFrame;
 
@@ -31,6 +32,9 @@ public class Main {
             System.exit(1);
         }
         
+        // Pick up tuning changes to database.properties without a restart
+        ConfigWatcher.getInstance();
+        
         // Start the GUI on the Event Dispatch Thread
         SwingUtilities.invokeLater(new Runnable() {
             @Override
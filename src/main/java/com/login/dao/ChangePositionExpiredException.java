@@ -0,0 +1,29 @@
+package com.login.dao;
+
+import java.sql.SQLException;
+
+/**
+ * Thrown to a change feed subscriber whose position is older than the oldest event still
+ * retained, i.e. events it never saw have been trimmed. The consumer has to resynchronize
+ * from the users table and resubscribe from the latest sequence.
+ */
+public class ChangePositionExpiredException extends SQLException {
+
+    private final long afterSequence;
+    private final long oldestSequence;
+
+    public ChangePositionExpiredException(long afterSequence, long oldestSequence) {
+        super("Change feed position " + afterSequence + " has expired; the oldest retained event is "
+                + oldestSequence + ", resynchronize");
+        this.afterSequence = afterSequence;
+        this.oldestSequence = oldestSequence;
+    }
+
+    public long getAfterSequence() {
+        return afterSequence;
+    }
+
+    public long getOldestSequence() {
+        return oldestSequence;
+    }
+}
@@ -1,12 +1,24 @@
 package com.login.dao;
 
 import com.login.model.User;
+import com.login.model.UserRecord;
+import com.login.util.UsernameUtil;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * Data Access Object interface for User operations
+ * <p>
+ * Username lookups are case-insensitive and ignore surrounding whitespace:
+ * implementations compare {@link com.login.util.UsernameUtil#normalize(String)} keys.
+ * Emails are matched and kept unique the same way, by
+ * {@link com.login.util.EmailUtil#normalize(String)}; users without an email never clash.
  */
 public interface UserDAO {
     
@@ -25,6 +37,34 @@ public interface UserDAO {
      * @throws SQLException if database operation fails
      */
     Optional<User> findByUsername(String username) throws SQLException;
+
+    /**
+     * Find a user by username as a compact record, including the password hash
+     * @param username the username to search for
+     * @return Optional containing the record if found, empty otherwise
+     * @throws SQLException if database operation fails
+     */
+    default Optional<UserRecord> findRecordByUsername(String username) throws SQLException {
+        return findByUsername(username).map(UserRecord::from);
+    }
+    
+    /**
+     * Find a user by email address
+     * @param email the email to search for
+     * @return Optional containing the user if found, empty otherwise
+     * @throws SQLException if database operation fails
+     */
+    Optional<User> findByEmail(String email) throws SQLException;
+
+    /**
+     * Find a user by email address as a compact record, including the password hash
+     * @param email the email to search for
+     * @return Optional containing the record if found, empty otherwise
+     * @throws SQLException if database operation fails
+     */
+    default Optional<UserRecord> findRecordByEmail(String email) throws SQLException {
+        return findByEmail(email).map(UserRecord::from);
+    }
     
     /**
      * Find a user by ID
@@ -35,9 +75,11 @@ public interface UserDAO {
     Optional<User> findById(Long id) throws SQLException;
     
     /**
-     * Update user information
+     * Update user information if the stored version still matches user.getVersion().
+     * On success the version is incremented both in storage and on the given user.
      * @param user the user to update
-     * @return true if update was successful, false otherwise
+     * @return true if update was successful, false if the user no longer exists
+     * @throws VersionConflictException if the user was modified since it was read
      * @throws SQLException if database operation fails
      */
     boolean updateUser(User user) throws SQLException;
@@ -50,12 +92,120 @@ public interface UserDAO {
      */
     boolean deleteUser(Long id) throws SQLException;
     
+    /**
+     * Delete up to limit users who have not logged in since the cutoff; users who never
+     * logged in count as inactive once they were created before it
+     * @param cutoff users last active before this time are deleted
+     * @param limit the most users to delete in this call
+     * @return the number of users deleted; less than limit once none are left
+     * @throws SQLException if database operation fails
+     */
+    default int deleteInactiveUsers(LocalDateTime cutoff, int limit) throws SQLException {
+        long cutoffMillis = UserRecord.toEpochMillis(cutoff);
+        int deleted = 0;
+        for (UserRecord record : getAllUserRecords()) {
+            if (deleted >= limit) {
+                break;
+            }
+            long lastActive = record.getLastLoginMillis() != UserRecord.NO_TIME
+                    ? record.getLastLoginMillis() : record.getCreatedAtMillis();
+            if (lastActive != UserRecord.NO_TIME && lastActive < cutoffMillis && deleteUser(record.getId())) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Give storage freed by deletes back to the file system, where the backend supports it
+     * @throws SQLException if database operation fails
+     */
+    default void reclaimSpace() throws SQLException {
+    }
+    
     /**
      * Get all users
      * @return list of all users
      * @throws SQLException if database operation fails
      */
     List<User> getAllUsers() throws SQLException;
+
+    /**
+     * Get one page of users in ascending id order, for keyset pagination
+     * @param afterId only users with a greater id are returned; 0 for the first page
+     * @param limit maximum number of users to return
+     * @return the page; pass the last id as afterId to get the next one
+     * @throws SQLException if database operation fails
+     */
+    default List<User> findUsersAfter(long afterId, int limit) throws SQLException {
+        List<User> users = new ArrayList<>();
+        for (User user : getAllUsers()) {
+            if (user.getId() > afterId) {
+                users.add(user);
+            }
+        }
+        users.sort(Comparator.comparing(User::getId));
+        return users.size() > limit ? new ArrayList<>(users.subList(0, limit)) : users;
+    }
+
+    /**
+     * Get one page of users whose normalized username starts with the normalized prefix,
+     * in username order, for keyset pagination
+     * @param prefix the start of the username
+     * @param afterUsername only usernames sorting after this one are returned; null for the first page
+     * @param limit maximum number of users to return
+     * @return the page; pass the last username as afterUsername to get the next one
+     * @throws SQLException if database operation fails
+     */
+    default List<User> findUsersByPrefix(String prefix, String afterUsername, int limit) throws SQLException {
+        String key = UsernameUtil.normalize(prefix);
+        String afterKey = afterUsername == null ? "" : UsernameUtil.normalize(afterUsername);
+        List<User> users = new ArrayList<>();
+        for (User user : getAllUsers()) {
+            String userKey = UsernameUtil.normalize(user.getUsername());
+            if (userKey.startsWith(key) && userKey.compareTo(afterKey) > 0) {
+                users.add(user);
+            }
+        }
+        users.sort(Comparator.comparing(user -> UsernameUtil.normalize(user.getUsername())));
+        return users.size() > limit ? new ArrayList<>(users.subList(0, limit)) : users;
+    }
+
+    /**
+     * Get one page of users whose normalized username contains the normalized fragment,
+     * in ascending id order, for keyset pagination
+     * @param fragment the text to look for anywhere in the username
+     * @param afterId only users with a greater id are returned; 0 for the first page
+     * @param limit maximum number of users to return
+     * @return the page; pass the last id as afterId to get the next one
+     * @throws SQLException if database operation fails
+     */
+    default List<User> findUsersContaining(String fragment, long afterId, int limit) throws SQLException {
+        String key = UsernameUtil.normalize(fragment);
+        List<User> users = new ArrayList<>();
+        for (User user : getAllUsers()) {
+            if (user.getId() > afterId && UsernameUtil.normalize(user.getUsername()).contains(key)) {
+                users.add(user);
+            }
+        }
+        users.sort(Comparator.comparing(User::getId));
+        return users.size() > limit ? new ArrayList<>(users.subList(0, limit)) : users;
+    }
+
+    /**
+     * Get all users as compact records without password hashes, newest first
+     * @return list of all user records
+     * @throws SQLException if database operation fails
+     */
+    default List<UserRecord> getAllUserRecords() throws SQLException {
+        List<User> users = getAllUsers();
+        List<UserRecord> records = new ArrayList<>(users.size());
+        for (User user : users) {
+            records.add(new UserRecord(user.getId(), user.getVersion(), user.getUsername(), user.getEmail(),
+                    UserRecord.toEpochMillis(user.getCreatedAt()), UserRecord.toEpochMillis(user.getLastLogin()), null));
+        }
+        return records;
+    }
     
     /**
      * Check if username exists
@@ -65,10 +215,36 @@ public interface UserDAO {
      */
     boolean usernameExists(String username) throws SQLException;
     
+    /**
+     * Check if an email address belongs to a user
+     * @param email the email to check
+     * @return true if a user has this email, false otherwise
+     * @throws SQLException if database operation fails
+     */
+    boolean emailExists(String email) throws SQLException;
+    
     /**
      * Update user's last login time
      * @param username the username
      * @throws SQLException if database operation fails
      */
     void updateLastLogin(String username) throws SQLException;
+    
+    /**
+     * Stream every user into a binary snapshot file without loading them all into memory
+     * @param file the snapshot file to create or replace
+     * @return the number of users exported
+     * @throws SQLException if database operation fails
+     * @throws IOException if writing the file fails
+     */
+    long exportUsers(Path file) throws SQLException, IOException;
+    
+    /**
+     * Insert every user from a snapshot file, keeping ids, versions and timestamps
+     * @param file the snapshot file written by exportUsers
+     * @return the number of users imported
+     * @throws SQLException if database operation fails, e.g. an id or username already exists
+     * @throws IOException if reading the file fails
+     */
+    long importUsers(Path file) throws SQLException, IOException;
 }
@@ -0,0 +1,117 @@
+package com.login.dao;
+
+import com.login.dao.impl.CoalescingUserDAO;
+import com.login.dao.impl.InMemoryUserDAO;
+import com.login.dao.impl.LogStructuredUserDAO;
+import com.login.dao.impl.ShardedUserDAO;
+import com.login.dao.impl.UserChangeFeed;
+import com.login.dao.impl.UserDAOImpl;
+import com.login.util.ConfigUtil;
+import com.login.util.DatabaseUtil;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Factory for the UserDAO selected by {@code db.backend} in database.properties
+ * <p>
+ * {@code sqlite} (the default) uses the database configured by {@code db.url};
+ * {@code memory} keeps users in memory with snapshots and a change log;
+ * {@code log} keeps them in a memory-mapped, log-structured file;
+ * {@code sharded} spreads them over the SQLite databases listed in {@code db.shards.urls}.
+ * With {@code db.coalesceLookups} set, concurrent lookups of the same user share one query.
+ * <p>
+ * Only the SQLite-backed stores record changes in a user_changes outbox, so only
+ * {@code sqlite} and {@code sharded} offer a change feed.
+ */
+public class UserDAOFactory {
+
+    private static final int MB = 1024 * 1024;
+    private static UserDAO instance;
+    private static UserDAO backend;
+
+    /**
+     * Get the configured UserDAO, creating it on first use
+     * @return the shared UserDAO
+     * @throws IllegalStateException if the backend is unknown or its storage cannot be opened
+     */
+    public static synchronized UserDAO getUserDAO() {
+        if (instance == null) {
+            backend = create(ConfigUtil.get("db.backend", "sqlite"));
+            instance = ConfigUtil.getBoolean("db.coalesceLookups", false) ? new CoalescingUserDAO(backend) : backend;
+        }
+        return instance;
+    }
+
+    /**
+     * Check whether users live in the database configured by db.url, which is where the
+     * login audit trail and activity sketches are kept. Other backends get neither, rather
+     * than a SQLite file the node otherwise has no use for.
+     * @return true for the sqlite backend
+     */
+    public static boolean usesDefaultDatabase() {
+        return "sqlite".equals(ConfigUtil.get("db.backend", "sqlite"));
+    }
+
+    /**
+     * Open the change feeds of the configured store: one for sqlite, one per shard for sharded
+     * @param pollIntervalMillis how often each feed looks for new events
+     * @return the feeds, in shard order; the caller closes them
+     * @throws IllegalStateException if the backend does not record changes (memory and log)
+     */
+    public static synchronized List<UserChangeFeed> openChangeFeeds(long pollIntervalMillis) {
+        getUserDAO();
+        List<UserChangeFeed> feeds = new ArrayList<>();
+        if (backend instanceof ShardedUserDAO) {
+            ShardedUserDAO sharded = (ShardedUserDAO) backend;
+            for (int shard = 0; shard < sharded.getShardCount(); shard++) {
+                feeds.add(sharded.openChangeFeed(shard, pollIntervalMillis));
+            }
+        } else if (backend instanceof UserDAOImpl) {
+            feeds.add(new UserChangeFeed(DatabaseUtil.getDatabase(), pollIntervalMillis));
+        } else {
+            throw new IllegalStateException("db.backend=" + ConfigUtil.get("db.backend", "sqlite")
+                    + " does not record user changes; change feeds need sqlite or sharded");
+        }
+        return feeds;
+    }
+
+    private static UserDAO create(String backend) {
+        boolean syncEachWrite = ConfigUtil.getBoolean("db.syncEachWrite", true);
+        try {
+            switch (backend) {
+                case "sqlite":
+                    return new UserDAOImpl();
+                case "memory":
+                    return new InMemoryUserDAO(Paths.get(ConfigUtil.get("db.memory.dir", "data/memory")),
+                            ConfigUtil.getLong("db.memory.snapshotIntervalMs", 60000), syncEachWrite);
+                case "log":
+                    return new LogStructuredUserDAO(Paths.get(ConfigUtil.get("db.log.dir", "data/log")),
+                            ConfigUtil.getInt("db.log.segmentSizeMb", 64) * MB, syncEachWrite,
+                            Double.parseDouble(ConfigUtil.get("db.log.compactionGarbageRatio", "0.5")),
+                            ConfigUtil.getLong("db.log.compactionCheckMs", 30000));
+                case "sharded":
+                    return ShardedUserDAO.open(shardUrls());
+                default:
+                    throw new IllegalStateException("Unknown db.backend: " + backend);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open " + backend + " user store", e);
+        }
+    }
+
+    private static List<String> shardUrls() {
+        List<String> urls = new ArrayList<>();
+        for (String url : ConfigUtil.get("db.shards.urls", "").split(",")) {
+            if (!url.trim().isEmpty()) {
+                urls.add(url.trim());
+            }
+        }
+        if (urls.isEmpty()) {
+            throw new IllegalStateException("db.backend=sharded requires db.shards.urls");
+        }
+        return urls;
+    }
+}
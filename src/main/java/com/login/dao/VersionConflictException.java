@@ -0,0 +1,34 @@
+package com.login.dao;
+
+import java.sql.SQLException;
+
+/**
+ * Thrown when an update is based on a stale copy of a user,
+ * i.e. the stored row version no longer matches the expected one
+ */
+public class VersionConflictException extends SQLException {
+
+    private final long userId;
+    private final long expectedVersion;
+    private final long actualVersion;
+
+    public VersionConflictException(long userId, long expectedVersion, long actualVersion) {
+        super("User " + userId + " was modified concurrently (expected version "
+                + expectedVersion + ", found " + actualVersion + ")");
+        this.userId = userId;
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = actualVersion;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public long getActualVersion() {
+        return actualVersion;
+    }
+}
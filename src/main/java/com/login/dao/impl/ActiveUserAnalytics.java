@@ -0,0 +1,252 @@
+package com.login.dao.impl;
+
+import com.login.dao.UserDAOFactory;
+import com.login.util.ConfigUtil;
+import com.login.util.Database;
+import com.login.util.DatabaseUtil;
+import com.login.util.HyperLogLog;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Approximate daily and monthly active users, fed by successful logins.
+ * <p>
+ * Each UTC day has a {@link HyperLogLog} sketch of the ids that logged in that day, so
+ * "distinct users in the last N days" is a merge of N small sketches rather than a scan
+ * of users.last_login. Memory is bounded by the number of retained days times the sketch
+ * size. Changed sketches are saved to active_user_sketches in the background and loaded
+ * again on start. {@link #countActiveUsersExact(int)} answers the same question exactly
+ * from the last_login index, for validating the estimates.
+ */
+public class ActiveUserAnalytics implements AutoCloseable {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static ActiveUserAnalytics instance;
+
+    private final Database database;
+    private final int precision;
+    private final int retainDays;
+    private final Map<Long, HyperLogLog> buckets = new ConcurrentHashMap<>();
+    private final Map<Long, Boolean> dirty = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Create the analytics, load saved sketches and start saving changes periodically
+     * @param database the database holding active_user_sketches and users
+     * @param precision sketch precision; each day uses 2^precision bytes
+     * @param retainDays how many days of sketches are kept
+     * @param persistIntervalMillis how often changed sketches are saved
+     * @throws SQLException if the saved sketches cannot be read
+     */
+    public ActiveUserAnalytics(Database database, int precision, int retainDays,
+                               long persistIntervalMillis) throws SQLException {
+        this.database = database;
+        this.precision = precision;
+        this.retainDays = retainDays;
+        load();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "active-user-analytics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::persistQuietly, persistIntervalMillis, persistIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get the analytics configured by db.analytics.* in database.properties
+     * @return the shared analytics, or null if disabled or the sketches cannot be loaded
+     */
+    public static synchronized ActiveUserAnalytics getInstance() {
+        if (instance == null && ConfigUtil.getBoolean("db.analytics.enabled", true) && UserDAOFactory.usesDefaultDatabase()) {
+            try {
+                instance = new ActiveUserAnalytics(DatabaseUtil.getDatabase(),
+                        ConfigUtil.getInt("db.analytics.precision", 12),
+                        ConfigUtil.getInt("db.analytics.retainDays", 400),
+                        ConfigUtil.getLong("db.analytics.persistIntervalMs", 60000));
+            } catch (SQLException e) {
+                System.err.println("Error loading active user sketches: " + e.getMessage());
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Count a successful login now
+     * @param userId the id of the user who logged in
+     */
+    public void recordLogin(long userId) {
+        recordLogin(userId, System.currentTimeMillis());
+    }
+
+    void recordLogin(long userId, long atMillis) {
+        long day = Math.floorDiv(atMillis, DAY_MILLIS);
+        if (!buckets.containsKey(day)) {
+            prune(day);
+        }
+        HyperLogLog sketch = buckets.computeIfAbsent(day, d -> new HyperLogLog(precision));
+        synchronized (sketch) {
+            sketch.add(userId);
+        }
+        dirty.put(day, Boolean.TRUE);
+    }
+
+    /**
+     * Estimate the distinct users who logged in during the last N days, today included
+     * @param days number of UTC days
+     * @return the estimated number of active users
+     */
+    public long estimateActiveUsers(int days) {
+        return estimateActiveUsers(days, System.currentTimeMillis());
+    }
+
+    long estimateActiveUsers(int days, long nowMillis) {
+        HyperLogLog union = new HyperLogLog(precision);
+        long today = Math.floorDiv(nowMillis, DAY_MILLIS);
+        for (long day = today - days + 1; day <= today; day++) {
+            HyperLogLog sketch = buckets.get(day);
+            if (sketch != null) {
+                synchronized (sketch) {
+                    union.merge(sketch);
+                }
+            }
+        }
+        return union.estimate();
+    }
+
+    /**
+     * Count exactly the users whose last login falls in the last N days, today included.
+     * Uses the last_login index; meant for validating {@link #estimateActiveUsers(int)}.
+     * @param days number of UTC days
+     * @return the number of active users
+     * @throws SQLException if the query fails
+     */
+    public long countActiveUsersExact(int days) throws SQLException {
+        return countActiveUsersExact(days, System.currentTimeMillis());
+    }
+
+    long countActiveUsersExact(int days, long nowMillis) throws SQLException {
+        long since = (Math.floorDiv(nowMillis, DAY_MILLIS) - days + 1) * DAY_MILLIS;
+        try (Connection conn = database.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM users WHERE last_login >= ?")) {
+            stmt.setLong(1, since);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Save every changed sketch now and delete the saved ones past retention
+     * @throws SQLException if writing fails
+     */
+    public void persist() throws SQLException {
+        try {
+            scheduler.submit(() -> {
+                save();
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while saving active user sketches", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Saving active user sketches failed", e.getCause());
+        }
+    }
+
+    /**
+     * Save what has changed and stop the background job
+     */
+    @Override
+    public void close() {
+        try {
+            persist();
+        } catch (SQLException e) {
+            System.err.println("Error saving active user sketches: " + e.getMessage());
+        }
+        scheduler.shutdown();
+    }
+
+    private void load() throws SQLException {
+        try (Connection conn = database.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT day, registers FROM active_user_sketches");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                HyperLogLog sketch;
+                try {
+                    sketch = HyperLogLog.fromBytes(rs.getBytes(2));
+                } catch (IllegalArgumentException e) {
+                    // One damaged row costs that day's count, not the whole feature
+                    System.err.println("Ignoring corrupt active user sketch for day " + rs.getLong(1) + ": " + e.getMessage());
+                    continue;
+                }
+                // Sketches saved with another precision cannot be merged with new ones
+                if (sketch.getPrecision() == precision) {
+                    buckets.put(rs.getLong(1), sketch);
+                }
+            }
+        }
+    }
+
+    private void save() throws SQLException {
+        List<Long> days = new ArrayList<>(dirty.keySet());
+        List<byte[]> registers = new ArrayList<>();
+        for (Long day : days) {
+            // Cleared before the copy so a login racing with the save marks it dirty again
+            dirty.remove(day);
+            HyperLogLog sketch = buckets.get(day);
+            if (sketch == null) {
+                registers.add(null);
+                continue;
+            }
+            synchronized (sketch) {
+                registers.add(sketch.toBytes());
+            }
+        }
+        long oldest = Math.floorDiv(System.currentTimeMillis(), DAY_MILLIS) - retainDays + 1;
+        database.getWriteQueue().execute(conn -> {
+            try (PreparedStatement upsert = conn.prepareStatement(
+                    "INSERT OR REPLACE INTO active_user_sketches (day, registers) VALUES (?, ?)")) {
+                for (int i = 0; i < days.size(); i++) {
+                    if (registers.get(i) != null) {
+                        upsert.setLong(1, days.get(i));
+                        upsert.setBytes(2, registers.get(i));
+                        upsert.addBatch();
+                    }
+                }
+                upsert.executeBatch();
+            }
+            try (PreparedStatement delete = conn.prepareStatement("DELETE FROM active_user_sketches WHERE day < ?")) {
+                delete.setLong(1, oldest);
+                return delete.executeUpdate();
+            }
+        });
+    }
+
+    private void prune(long newestDay) {
+        long oldest = newestDay - retainDays + 1;
+        buckets.keySet().removeIf(day -> day < oldest);
+    }
+
+    private void persistQuietly() {
+        try {
+            save();
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Error saving active user sketches: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.login.dao.impl;
+
+import com.login.dao.UserDAO;
+import com.login.model.User;
+import com.login.model.UserRecord;
+import com.login.util.EmailUtil;
+import com.login.util.UsernameUtil;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * UserDAO wrapper that collapses concurrent identical lookups into one query.
+ * <p>
+ * The first caller for a key (normalized username, email or id) runs the query and
+ * publishes the result through a future in a per-lookup concurrent map; callers that
+ * arrive while it is in flight wait for that future instead of querying again. Each
+ * caller gets its own copy of the result, so nobody sees another caller's changes to a
+ * shared User. Nothing is cached: the entry is removed as soon as the query finishes.
+ * <p>
+ * A write detaches the lookups in flight for the username, email and id it touched, both
+ * before and after the change, so a call made after the write returns never joins a query
+ * that started before it; lookups of other users keep sharing. Bulk deletes and imports
+ * detach everything. Last-login stamps detach nothing, so a lookup may return the stamp
+ * from just before a concurrent login; that keeps lookups shared while logins complete.
+ */
+public class CoalescingUserDAO implements UserDAO {
+
+    /**
+     * A lookup run by the first caller for a key
+     */
+    @FunctionalInterface
+    private interface Lookup<T> {
+        T run() throws SQLException;
+    }
+
+    private final UserDAO delegate;
+    private final ConcurrentMap<String, CompletableFuture<Optional<User>>> byUsername = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<Optional<UserRecord>>> recordByUsername = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<Optional<User>>> byEmail = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<Optional<UserRecord>>> recordByEmail = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, CompletableFuture<Optional<User>>> byId = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<Boolean>> usernameExists = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<Boolean>> emailExists = new ConcurrentHashMap<>();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Wrap a UserDAO
+     * @param delegate the DAO that runs the queries
+     */
+    public CoalescingUserDAO(UserDAO delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Get the number of lookups made through this wrapper
+     * @return lookup count
+     */
+    public long getLookupCount() {
+        return lookups.sum();
+    }
+
+    /**
+     * Get the number of lookups that shared another caller's query instead of running one
+     * @return collapsed lookup count
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    @Override
+    public Optional<User> findByUsername(String username) throws SQLException {
+        return coalesce(byUsername, UsernameUtil.normalize(username), () -> delegate.findByUsername(username))
+                .map(CoalescingUserDAO::copyOf);
+    }
+
+    @Override
+    public Optional<UserRecord> findRecordByUsername(String username) throws SQLException {
+        return coalesce(recordByUsername, UsernameUtil.normalize(username), () -> delegate.findRecordByUsername(username))
+                .map(CoalescingUserDAO::copyOf);
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) throws SQLException {
+        return coalesce(byEmail, EmailUtil.normalize(email), () -> delegate.findByEmail(email))
+                .map(CoalescingUserDAO::copyOf);
+    }
+
+    @Override
+    public Optional<UserRecord> findRecordByEmail(String email) throws SQLException {
+        return coalesce(recordByEmail, EmailUtil.normalize(email), () -> delegate.findRecordByEmail(email))
+                .map(CoalescingUserDAO::copyOf);
+    }
+
+    @Override
+    public Optional<User> findById(Long id) throws SQLException {
+        return coalesce(byId, id, () -> delegate.findById(id)).map(CoalescingUserDAO::copyOf);
+    }
+
+    @Override
+    public boolean usernameExists(String username) throws SQLException {
+        return coalesce(usernameExists, UsernameUtil.normalize(username), () -> delegate.usernameExists(username));
+    }
+
+    @Override
+    public boolean emailExists(String email) throws SQLException {
+        return coalesce(emailExists, EmailUtil.normalize(email), () -> delegate.emailExists(email));
+    }
+
+    @Override
+    public User createUser(User user) throws SQLException {
+        User created = null;
+        try {
+            created = delegate.createUser(user);
+            return created;
+        } finally {
+            detach(user.getUsername(), user.getEmail(), created == null ? null : created.getId());
+        }
+    }
+
+    @Override
+    public boolean updateUser(User user) throws SQLException {
+        // A rename or new email also changes what the old keys resolve to
+        Optional<User> previous = user.getId() == null ? Optional.empty() : delegate.findById(user.getId());
+        try {
+            return delegate.updateUser(user);
+        } finally {
+            previous.ifPresent(old -> detach(old.getUsername(), old.getEmail(), null));
+            detach(user.getUsername(), user.getEmail(), user.getId());
+        }
+    }
+
+    @Override
+    public boolean deleteUser(Long id) throws SQLException {
+        Optional<User> previous = delegate.findById(id);
+        try {
+            return delegate.deleteUser(id);
+        } finally {
+            previous.ifPresent(old -> detach(old.getUsername(), old.getEmail(), null));
+            detach(null, null, id);
+        }
+    }
+
+    @Override
+    public int deleteInactiveUsers(LocalDateTime cutoff, int limit) throws SQLException {
+        try {
+            return delegate.deleteInactiveUsers(cutoff, limit);
+        } finally {
+            detachInFlight();
+        }
+    }
+
+    @Override
+    public void updateLastLogin(String username) throws SQLException {
+        delegate.updateLastLogin(username);
+    }
+
+    @Override
+    public long importUsers(Path file) throws SQLException, IOException {
+        try {
+            return delegate.importUsers(file);
+        } finally {
+            detachInFlight();
+        }
+    }
+
+    @Override
+    public void reclaimSpace() throws SQLException {
+        delegate.reclaimSpace();
+    }
+
+    @Override
+    public List<User> getAllUsers() throws SQLException {
+        return delegate.getAllUsers();
+    }
+
+    @Override
+    public List<User> findUsersAfter(long afterId, int limit) throws SQLException {
+        return delegate.findUsersAfter(afterId, limit);
+    }
+
+    @Override
+    public List<User> findUsersByPrefix(String prefix, String afterUsername, int limit) throws SQLException {
+        return delegate.findUsersByPrefix(prefix, afterUsername, limit);
+    }
+
+    @Override
+    public List<User> findUsersContaining(String fragment, long afterId, int limit) throws SQLException {
+        return delegate.findUsersContaining(fragment, afterId, limit);
+    }
+
+    @Override
+    public List<UserRecord> getAllUserRecords() throws SQLException {
+        return delegate.getAllUserRecords();
+    }
+
+    @Override
+    public long exportUsers(Path file) throws SQLException, IOException {
+        return delegate.exportUsers(file);
+    }
+
+    private <K, T> T coalesce(ConcurrentMap<K, CompletableFuture<T>> inFlight, K key, Lookup<T> lookup)
+            throws SQLException {
+        lookups.increment();
+        if (key == null) {
+            return lookup.run();
+        }
+        CompletableFuture<T> mine = new CompletableFuture<>();
+        CompletableFuture<T> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.increment();
+            return await(running);
+        }
+        try {
+            T result = lookup.run();
+            mine.complete(result);
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> running) throws SQLException {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a shared lookup", e);
+        } catch (ExecutionException e) {
+            // Each waiter gets its own exception; the leader's is rethrown on its own thread
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                SQLException failure = (SQLException) cause;
+                throw new SQLException(failure.getMessage(), failure.getSQLState(), failure.getErrorCode(), failure);
+            }
+            throw new IllegalStateException("Shared lookup failed", cause);
+        }
+    }
+
+    /**
+     * Detach the lookups in flight for one user's keys; null keys are skipped
+     */
+    private void detach(String username, String email, Long id) {
+        String usernameKey = UsernameUtil.normalize(username);
+        if (usernameKey != null) {
+            byUsername.remove(usernameKey);
+            recordByUsername.remove(usernameKey);
+            usernameExists.remove(usernameKey);
+        }
+        String emailKey = EmailUtil.normalize(email);
+        if (emailKey != null) {
+            byEmail.remove(emailKey);
+            recordByEmail.remove(emailKey);
+            emailExists.remove(emailKey);
+        }
+        if (id != null) {
+            byId.remove(id);
+        }
+    }
+
+    private void detachInFlight() {
+        byUsername.clear();
+        recordByUsername.clear();
+        byEmail.clear();
+        recordByEmail.clear();
+        byId.clear();
+        usernameExists.clear();
+        emailExists.clear();
+    }
+
+    private static User copyOf(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setVersion(user.getVersion());
+        copy.setUsername(user.getUsername());
+        copy.setPassword(user.getPassword());
+        copy.setEmail(user.getEmail());
+        copy.setCreatedAt(user.getCreatedAt());
+        copy.setLastLogin(user.getLastLogin());
+        return copy;
+    }
+
+    private static UserRecord copyOf(UserRecord record) {
+        byte[] hash = record.getPasswordHash();
+        return new UserRecord(record.getId(), record.getVersion(), record.getUsername(), record.getEmail(),
+                record.getCreatedAtMillis(), record.getLastLoginMillis(), hash == null ? null : hash.clone());
+    }
+}
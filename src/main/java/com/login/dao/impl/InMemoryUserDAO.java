@@ -0,0 +1,758 @@
+package com.login.dao.impl;
+
+import com.login.dao.UserDAO;
+import com.login.dao.VersionConflictException;
+import com.login.model.User;
+import com.login.util.EmailUtil;
+import com.login.util.LongIntHashMap;
+import com.login.util.SortedSlotIndex;
+import com.login.util.StringIntHashMap;
+import com.login.util.UsernameUtil;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * UserDAO that keeps the whole user set in memory, for nodes without a database.
+ * <p>
+ * Users are stored column-wise in flat arrays indexed by slot, with primitive
+ * {@link LongIntHashMap} and {@link StringIntHashMap} indexes from id, normalized
+ * username and normalized email to slot; no User objects or boxed keys are kept. A
+ * {@link SortedSlotIndex} of slots in normalized username order serves prefix searches.
+ * Every mutation is appended
+ * to a change log before it becomes visible. A periodic snapshot (in the
+ * {@link UserSnapshotWriter} format) rotates the log, so recovery is loading the latest
+ * snapshot and replaying the logs written since.
+ * <p>
+ * Files in the data directory: {@code snapshot-<gen>.bin} holds every change made
+ * before {@code changes-<gen>.log}. The change log is private to recovery; this store
+ * does not publish a {@link UserChangeFeed}.
+ */
+public class InMemoryUserDAO implements UserDAO, Closeable {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int IMPORT_BATCH_SIZE = 1000;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String LOG_PREFIX = "changes-";
+    private static final String LOG_SUFFIX = ".log";
+
+    private final Path directory;
+    private final boolean syncEachWrite;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService snapshotScheduler;
+
+    // Column storage, indexed by slot; a slot is free when its username is null
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] versions = new long[INITIAL_CAPACITY];
+    private long[] createdAt = new long[INITIAL_CAPACITY];
+    private long[] lastLogin = new long[INITIAL_CAPACITY];
+    private String[] usernames = new String[INITIAL_CAPACITY];
+    private String[] usernameKeys = new String[INITIAL_CAPACITY];
+    private String[] passwords = new String[INITIAL_CAPACITY];
+    private String[] emails = new String[INITIAL_CAPACITY];
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int slotCount;
+
+    private final LongIntHashMap idIndex = new LongIntHashMap(INITIAL_CAPACITY);
+    private final StringIntHashMap usernameIndex = new StringIntHashMap(INITIAL_CAPACITY);
+    private final StringIntHashMap emailIndex = new StringIntHashMap(INITIAL_CAPACITY);
+    private final SortedSlotIndex sortedUsernames = new SortedSlotIndex(slot -> usernameKeys[slot]);
+    private long nextId = 1;
+    private long generation;
+    private UserChangeLog changeLog;
+
+    /**
+     * Open the store, recovering any data already in the directory
+     * @param directory where snapshots and change logs are kept
+     * @param snapshotIntervalMillis how often to snapshot and rotate the log; 0 disables periodic snapshots
+     * @param syncEachWrite whether each mutation is forced to disk before it returns
+     * @throws IOException if the directory cannot be read or recovered
+     */
+    public InMemoryUserDAO(Path directory, long snapshotIntervalMillis, boolean syncEachWrite) throws IOException {
+        this.directory = directory;
+        this.syncEachWrite = syncEachWrite;
+        Files.createDirectories(directory);
+        recover();
+
+        if (snapshotIntervalMillis > 0) {
+            snapshotScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "user-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotScheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    takeSnapshot();
+                } catch (IOException e) {
+                    System.err.println("Error writing user snapshot: " + e.getMessage());
+                }
+            }, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            snapshotScheduler = null;
+        }
+    }
+
+    @Override
+    public User createUser(User user) throws SQLException {
+        String key = UsernameUtil.normalize(user.getUsername());
+        LocalDateTime now = LocalDateTime.now();
+        long id;
+
+        lock.writeLock().lock();
+        try {
+            if (usernameIndex.get(key) >= 0) {
+                throw new SQLException("UNIQUE constraint failed: users.username");
+            }
+            String emailKey = EmailUtil.normalize(user.getEmail());
+            if (emailKey != null && emailIndex.get(emailKey) >= 0) {
+                throw new SQLException("UNIQUE constraint failed: users.email_key");
+            }
+            id = nextId;
+            User stored = copyOf(user);
+            stored.setId(id);
+            stored.setCreatedAt(now);
+            stored.setVersion(0);
+            append(UserChangeLog.PUT, UserSnapshotWriter.encodeRecord(stored));
+            store(stored);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        user.setId(id);
+        user.setCreatedAt(now);
+        return user;
+    }
+
+    @Override
+    public Optional<User> findByUsername(String username) throws SQLException {
+        lock.readLock().lock();
+        try {
+            int slot = usernameIndex.get(UsernameUtil.normalize(username));
+            return slot < 0 ? Optional.empty() : Optional.of(materialize(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) throws SQLException {
+        String key = EmailUtil.normalize(email);
+        if (key == null) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            int slot = emailIndex.get(key);
+            return slot < 0 ? Optional.empty() : Optional.of(materialize(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<User> findById(Long id) throws SQLException {
+        lock.readLock().lock();
+        try {
+            int slot = idIndex.get(id);
+            return slot < 0 ? Optional.empty() : Optional.of(materialize(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean updateUser(User user) throws SQLException {
+        String key = UsernameUtil.normalize(user.getUsername());
+
+        lock.writeLock().lock();
+        try {
+            int slot = idIndex.get(user.getId());
+            if (slot < 0) {
+                return false;
+            }
+            if (versions[slot] != user.getVersion()) {
+                throw new VersionConflictException(user.getId(), user.getVersion(), versions[slot]);
+            }
+            int owner = usernameIndex.get(key);
+            if (owner >= 0 && owner != slot) {
+                throw new SQLException("UNIQUE constraint failed: users.username");
+            }
+            String emailKey = EmailUtil.normalize(user.getEmail());
+            int emailOwner = emailKey == null ? -1 : emailIndex.get(emailKey);
+            if (emailOwner >= 0 && emailOwner != slot) {
+                throw new SQLException("UNIQUE constraint failed: users.email_key");
+            }
+            User stored = materialize(slot);
+            stored.setUsername(user.getUsername());
+            stored.setPassword(user.getPassword());
+            stored.setEmail(user.getEmail());
+            stored.setVersion(user.getVersion() + 1);
+            append(UserChangeLog.PUT, UserSnapshotWriter.encodeRecord(stored));
+            store(stored);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        user.setVersion(user.getVersion() + 1);
+        return true;
+    }
+
+    @Override
+    public boolean deleteUser(Long id) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            if (idIndex.get(id) < 0) {
+                return false;
+            }
+            append(UserChangeLog.DELETE, ByteBuffer.allocate(Long.BYTES).putLong(id).array());
+            remove(id);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Scans the lastLogin and createdAt columns in place, stopping after limit matches,
+     * and syncs the change log once for the whole call
+     */
+    @Override
+    public int deleteInactiveUsers(LocalDateTime cutoff, int limit) throws SQLException {
+        long cutoffMillis = UserSnapshotWriter.toEpochMillis(cutoff);
+        int deleted = 0;
+        lock.writeLock().lock();
+        try {
+            // Removing a user frees its slot but never moves another, so the scan stays valid
+            for (int slot = 0; slot < slotCount && deleted < limit; slot++) {
+                if (usernames[slot] == null) {
+                    continue;
+                }
+                long lastActive = lastLogin[slot] != UserSnapshotWriter.NULL_TIME ? lastLogin[slot] : createdAt[slot];
+                if (lastActive != UserSnapshotWriter.NULL_TIME && lastActive < cutoffMillis) {
+                    long id = ids[slot];
+                    changeLog.append(UserChangeLog.DELETE, ByteBuffer.allocate(Long.BYTES).putLong(id).array());
+                    remove(id);
+                    deleted++;
+                }
+            }
+            if (deleted > 0 && syncEachWrite) {
+                changeLog.sync();
+            }
+            return deleted;
+        } catch (IOException e) {
+            throw new SQLException("Error writing user change log", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<User> getAllUsers() throws SQLException {
+        List<User> users = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (usernames[slot] != null) {
+                    users.add(materialize(slot));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        // Same order as ORDER BY created_at DESC in SQLite, where NULL sorts lowest
+        users.sort(Comparator.comparing(User::getCreatedAt, Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()))
+                .reversed());
+        return users;
+    }
+
+    @Override
+    public List<User> findUsersByPrefix(String prefix, String afterUsername, int limit) throws SQLException {
+        String key = UsernameUtil.normalize(prefix);
+        String afterKey = afterUsername == null ? "" : UsernameUtil.normalize(afterUsername);
+        lock.readLock().lock();
+        try {
+            // Walk the sorted slots from the later of the prefix and the cursor
+            int position = afterKey.compareTo(key) >= 0 ? sortedUsernames.higher(afterKey) : sortedUsernames.ceiling(key);
+            List<User> users = new ArrayList<>();
+            for (; position < sortedUsernames.size() && users.size() < limit; position++) {
+                int slot = sortedUsernames.slotAt(position);
+                if (!usernameKeys[slot].startsWith(key)) {
+                    break;
+                }
+                users.add(materialize(slot));
+            }
+            return users;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<User> findUsersContaining(String fragment, long afterId, int limit) throws SQLException {
+        String key = UsernameUtil.normalize(fragment);
+        lock.readLock().lock();
+        try {
+            List<Integer> matches = new ArrayList<>();
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (usernames[slot] != null && ids[slot] > afterId && usernameKeys[slot].contains(key)) {
+                    matches.add(slot);
+                }
+            }
+            matches.sort(Comparator.comparingLong(slot -> ids[slot]));
+            return materialize(matches, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean usernameExists(String username) throws SQLException {
+        lock.readLock().lock();
+        try {
+            return usernameIndex.get(UsernameUtil.normalize(username)) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean emailExists(String email) throws SQLException {
+        String key = EmailUtil.normalize(email);
+        if (key == null) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            return emailIndex.get(key) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void updateLastLogin(String username) throws SQLException {
+        long now = UserSnapshotWriter.toEpochMillis(LocalDateTime.now());
+
+        lock.writeLock().lock();
+        try {
+            int slot = usernameIndex.get(UsernameUtil.normalize(username));
+            if (slot < 0) {
+                return;
+            }
+            append(UserChangeLog.LAST_LOGIN, ByteBuffer.allocate(2 * Long.BYTES).putLong(ids[slot]).putLong(now).array());
+            lastLogin[slot] = now;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long exportUsers(Path file) throws SQLException, IOException {
+        Frozen frozen = freeze();
+        return frozen.writeTo(file);
+    }
+
+    @Override
+    public long importUsers(Path file) throws SQLException, IOException {
+        long imported = 0;
+        try (UserSnapshotReader reader = new UserSnapshotReader(file)) {
+            List<User> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+            User user;
+            do {
+                user = reader.next();
+                if (user != null) {
+                    batch.add(user);
+                }
+                if (batch.size() == IMPORT_BATCH_SIZE || (user == null && !batch.isEmpty())) {
+                    imported += importBatch(batch);
+                    batch.clear();
+                }
+            } while (user != null);
+        }
+        return imported;
+    }
+
+    /**
+     * Write a snapshot of the current state and drop the change logs it covers
+     * @throws IOException if the snapshot cannot be written
+     */
+    public synchronized void takeSnapshot() throws IOException {
+        Frozen frozen;
+        long snapshotGeneration;
+        lock.writeLock().lock();
+        try {
+            // Start a new log generation; the snapshot covers everything logged before it
+            changeLog.close();
+            snapshotGeneration = ++generation;
+            changeLog = new UserChangeLog(logFile(snapshotGeneration), 0);
+            frozen = freeze();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        // The writer only moves the snapshot into place once it is complete
+        frozen.writeTo(snapshotFile(snapshotGeneration));
+        deleteGenerationsBefore(snapshotGeneration);
+    }
+
+    /**
+     * Get the number of users held in memory
+     * @return user count
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return idIndex.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+        }
+        lock.writeLock().lock();
+        try {
+            changeLog.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private long importBatch(List<User> batch) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            // Validate the whole batch first so a rejected batch leaves nothing behind
+            Set<Long> batchIds = new HashSet<>();
+            Set<String> batchKeys = new HashSet<>();
+            Set<String> batchEmails = new HashSet<>();
+            for (User user : batch) {
+                if (idIndex.get(user.getId()) >= 0 || !batchIds.add(user.getId())) {
+                    throw new SQLException("UNIQUE constraint failed: users.id");
+                }
+                String key = UsernameUtil.normalize(user.getUsername());
+                if (usernameIndex.get(key) >= 0 || !batchKeys.add(key)) {
+                    throw new SQLException("UNIQUE constraint failed: users.username");
+                }
+                String emailKey = EmailUtil.normalize(user.getEmail());
+                if (emailKey != null && (emailIndex.get(emailKey) >= 0 || !batchEmails.add(emailKey))) {
+                    throw new SQLException("UNIQUE constraint failed: users.email_key");
+                }
+            }
+            // Merge the batch into the username order once instead of shifting it per user
+            sortedUsernames.defer();
+            try {
+                for (User user : batch) {
+                    changeLog.append(UserChangeLog.PUT, UserSnapshotWriter.encodeRecord(user));
+                    store(user);
+                }
+            } finally {
+                sortedUsernames.resume();
+            }
+            // One sync per batch instead of one per user
+            changeLog.sync();
+            return batch.size();
+        } catch (IOException e) {
+            throw new SQLException("Error writing user change log", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void append(byte op, byte[] body) throws SQLException {
+        try {
+            changeLog.append(op, body);
+            if (syncEachWrite) {
+                changeLog.sync();
+            }
+        } catch (IOException e) {
+            throw new SQLException("Error writing user change log", e);
+        }
+    }
+
+    /**
+     * Load the newest snapshot, then replay every change log from its generation on
+     */
+    private void recover() throws IOException {
+        TreeSet<Long> snapshots = new TreeSet<>();
+        TreeSet<Long> logs = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX)) {
+                    snapshots.add(parseGeneration(name, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX));
+                } else if (name.startsWith(LOG_PREFIX) && name.endsWith(LOG_SUFFIX)) {
+                    logs.add(parseGeneration(name, LOG_PREFIX, LOG_SUFFIX));
+                }
+            }
+        }
+
+        // Sort the usernames once at the end rather than per loaded user
+        sortedUsernames.defer();
+        long base = 0;
+        if (!snapshots.isEmpty()) {
+            base = snapshots.last();
+            try (UserSnapshotReader reader = new UserSnapshotReader(snapshotFile(base))) {
+                User user;
+                while ((user = reader.next()) != null) {
+                    store(user);
+                }
+                // Ids of users deleted before the snapshot stay retired
+                nextId = Math.max(nextId, reader.getHighWaterId() + 1);
+            }
+        }
+
+        generation = base;
+        long validLength = 0;
+        for (long logGeneration : logs.tailSet(base, true)) {
+            generation = logGeneration;
+            validLength = UserChangeLog.replay(logFile(logGeneration), (offset, op, body) -> applyLogEntry(op, body));
+        }
+        sortedUsernames.resume();
+        changeLog = new UserChangeLog(logFile(generation), validLength);
+        deleteGenerationsBefore(base);
+    }
+
+    private void applyLogEntry(byte op, ByteBuffer body) throws IOException {
+        switch (op) {
+            case UserChangeLog.PUT:
+                store(UserSnapshotReader.decodeRecord(body));
+                break;
+            case UserChangeLog.DELETE:
+                remove(body.getLong());
+                break;
+            case UserChangeLog.LAST_LOGIN:
+                int slot = idIndex.get(body.getLong());
+                if (slot >= 0) {
+                    lastLogin[slot] = body.getLong();
+                }
+                break;
+            default:
+                throw new IOException("Unknown change log entry type " + op);
+        }
+    }
+
+    /**
+     * Insert or replace a user by id
+     */
+    private void store(User user) {
+        long id = user.getId();
+        String key = UsernameUtil.normalize(user.getUsername());
+        int slot = idIndex.get(id);
+        boolean reordered = true;
+        if (slot < 0) {
+            slot = allocateSlot();
+            idIndex.put(id, slot);
+        } else {
+            usernameIndex.remove(usernameKeys[slot]);
+            // Most updates keep the username, and its place in the order
+            reordered = !key.equals(usernameKeys[slot]);
+            if (reordered) {
+                sortedUsernames.remove(slot);
+            }
+            unindexEmail(slot);
+        }
+        ids[slot] = id;
+        versions[slot] = user.getVersion();
+        createdAt[slot] = UserSnapshotWriter.toEpochMillis(user.getCreatedAt());
+        lastLogin[slot] = UserSnapshotWriter.toEpochMillis(user.getLastLogin());
+        usernames[slot] = user.getUsername();
+        usernameKeys[slot] = key.equals(user.getUsername()) ? user.getUsername() : key;
+        passwords[slot] = user.getPassword();
+        emails[slot] = user.getEmail();
+        usernameIndex.put(usernameKeys[slot], slot);
+        if (reordered) {
+            sortedUsernames.add(slot);
+        }
+        String emailKey = EmailUtil.normalize(user.getEmail());
+        // Data from before emails were unique may repeat one; the first holder keeps it
+        if (emailKey != null && emailIndex.get(emailKey) < 0) {
+            emailIndex.put(emailKey, slot);
+        }
+        nextId = Math.max(nextId, id + 1);
+    }
+
+    private void unindexEmail(int slot) {
+        String emailKey = EmailUtil.normalize(emails[slot]);
+        if (emailKey != null && emailIndex.get(emailKey) == slot) {
+            emailIndex.remove(emailKey);
+        }
+    }
+
+    private void remove(long id) {
+        int slot = idIndex.remove(id);
+        if (slot < 0) {
+            return;
+        }
+        usernameIndex.remove(usernameKeys[slot]);
+        sortedUsernames.remove(slot);
+        unindexEmail(slot);
+        usernames[slot] = null;
+        usernameKeys[slot] = null;
+        passwords[slot] = null;
+        emails[slot] = null;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slotCount == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+            createdAt = Arrays.copyOf(createdAt, capacity);
+            lastLogin = Arrays.copyOf(lastLogin, capacity);
+            usernames = Arrays.copyOf(usernames, capacity);
+            usernameKeys = Arrays.copyOf(usernameKeys, capacity);
+            passwords = Arrays.copyOf(passwords, capacity);
+            emails = Arrays.copyOf(emails, capacity);
+        }
+        return slotCount++;
+    }
+
+    private User materialize(int slot) {
+        User user = new User();
+        user.setId(ids[slot]);
+        user.setVersion(versions[slot]);
+        user.setUsername(usernames[slot]);
+        user.setPassword(passwords[slot]);
+        user.setEmail(emails[slot]);
+        user.setCreatedAt(UserSnapshotReader.toLocalDateTime(createdAt[slot]));
+        user.setLastLogin(UserSnapshotReader.toLocalDateTime(lastLogin[slot]));
+        return user;
+    }
+
+    private List<User> materialize(List<Integer> slots, int limit) {
+        List<User> users = new ArrayList<>(Math.min(slots.size(), limit));
+        for (int i = 0; i < slots.size() && i < limit; i++) {
+            users.add(materialize(slots.get(i)));
+        }
+        return users;
+    }
+
+    private static User copyOf(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setVersion(user.getVersion());
+        copy.setUsername(user.getUsername());
+        copy.setPassword(user.getPassword());
+        copy.setEmail(user.getEmail());
+        copy.setCreatedAt(user.getCreatedAt());
+        copy.setLastLogin(user.getLastLogin());
+        return copy;
+    }
+
+    /**
+     * Copy the columns so a snapshot can be written without holding the lock.
+     * Strings are immutable, so copying the arrays is enough.
+     */
+    private Frozen freeze() {
+        lock.readLock().lock();
+        try {
+            return new Frozen(this);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void deleteGenerationsBefore(long keep) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX)
+                        && parseGeneration(name, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) < keep) {
+                    Files.deleteIfExists(file);
+                } else if (name.startsWith(LOG_PREFIX) && name.endsWith(LOG_SUFFIX)
+                        && parseGeneration(name, LOG_PREFIX, LOG_SUFFIX) < keep) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private Path snapshotFile(long gen) {
+        return directory.resolve(SNAPSHOT_PREFIX + gen + SNAPSHOT_SUFFIX);
+    }
+
+    private Path logFile(long gen) {
+        return directory.resolve(LOG_PREFIX + gen + LOG_SUFFIX);
+    }
+
+    private static long parseGeneration(String name, String prefix, String suffix) {
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    /**
+     * A point-in-time copy of the column storage
+     */
+    private static class Frozen {
+        private final int slotCount;
+        private final long[] ids;
+        private final long[] versions;
+        private final long[] createdAt;
+        private final long[] lastLogin;
+        private final String[] usernames;
+        private final String[] passwords;
+        private final String[] emails;
+        private final long highWaterId;
+
+        Frozen(InMemoryUserDAO dao) {
+            slotCount = dao.slotCount;
+            highWaterId = dao.nextId - 1;
+            ids = Arrays.copyOf(dao.ids, slotCount);
+            versions = Arrays.copyOf(dao.versions, slotCount);
+            createdAt = Arrays.copyOf(dao.createdAt, slotCount);
+            lastLogin = Arrays.copyOf(dao.lastLogin, slotCount);
+            usernames = Arrays.copyOf(dao.usernames, slotCount);
+            passwords = Arrays.copyOf(dao.passwords, slotCount);
+            emails = Arrays.copyOf(dao.emails, slotCount);
+        }
+
+        long writeTo(Path file) throws IOException {
+            try (UserSnapshotWriter writer = new UserSnapshotWriter(file)) {
+                for (int slot = 0; slot < slotCount; slot++) {
+                    if (usernames[slot] == null) {
+                        continue;
+                    }
+                    User user = new User();
+                    user.setId(ids[slot]);
+                    user.setVersion(versions[slot]);
+                    user.setUsername(usernames[slot]);
+                    user.setPassword(passwords[slot]);
+                    user.setEmail(emails[slot]);
+                    user.setCreatedAt(UserSnapshotReader.toLocalDateTime(createdAt[slot]));
+                    user.setLastLogin(UserSnapshotReader.toLocalDateTime(lastLogin[slot]));
+                    writer.write(user);
+                }
+                writer.setHighWaterId(highWaterId);
+                writer.commit();
+                return writer.getCount();
+            }
+        }
+    }
+}
@@ -0,0 +1,986 @@
+package com.login.dao.impl;
+
+import com.login.dao.UserDAO;
+import com.login.dao.VersionConflictException;
+import com.login.model.User;
+import com.login.util.EmailUtil;
+import com.login.util.LongIntHashMap;
+import com.login.util.SortedSlotIndex;
+import com.login.util.StringIntHashMap;
+import com.login.util.UsernameUtil;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * UserDAO backed by an append-only, memory-mapped record log instead of SQLite.
+ * <p>
+ * Every create, update, last-login stamp and delete appends an entry
+ * ({@code [int length][int crc32][byte op][body]}, bodies in the
+ * {@link UserSnapshotWriter} record layout) to {@code users-<gen>.data}. The file grows
+ * in fixed-size segments, each mapped read-write, and entries never straddle a segment.
+ * An in-memory index maps id, normalized username and normalized email to the offset
+ * of the latest record, and lookups decode straight out of the mapping without a read syscall.
+ * A {@link SortedSlotIndex} of slots in normalized username order serves prefix searches.
+ * <p>
+ * Recovery scans the log and stops at the first torn or corrupt entry. A background
+ * compaction copies live records into the next generation once enough of the file is
+ * superseded, catches up on entries appended meanwhile, and swaps files atomically.
+ * Each compacted file starts with the id high-water mark, so ids of users deleted before
+ * compaction are never handed out again. The log is not published as a
+ * {@link UserChangeFeed}.
+ */
+public class LogStructuredUserDAO implements UserDAO, Closeable {
+
+    private static final String FILE_PREFIX = "users-";
+    private static final String FILE_SUFFIX = ".data";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int SKIP_TO_NEXT_SEGMENT = -1;
+    private static final int IMPORT_BATCH_SIZE = 1000;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean syncEachWrite;
+    private final double compactionGarbageRatio;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService compactionScheduler;
+
+    private DataFile data;
+    private Index index;
+    private long generation;
+    private long nextId = 1;
+
+    /**
+     * Open the store, recovering the newest data file in the directory
+     * @param directory where data files are kept
+     * @param segmentSize bytes per mapped segment; also the largest possible entry
+     * @param syncEachWrite whether each mutation is forced to disk before it returns
+     * @param compactionGarbageRatio share of superseded bytes that triggers compaction
+     * @param compactionCheckMillis how often to check for compaction; 0 disables it
+     * @throws IOException if the data file cannot be opened or recovered
+     */
+    public LogStructuredUserDAO(Path directory, int segmentSize, boolean syncEachWrite,
+                                double compactionGarbageRatio, long compactionCheckMillis) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncEachWrite = syncEachWrite;
+        this.compactionGarbageRatio = compactionGarbageRatio;
+        Files.createDirectories(directory);
+        recover();
+
+        if (compactionCheckMillis > 0) {
+            compactionScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "user-log-compaction");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactionScheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    if (needsCompaction()) {
+                        compact();
+                    }
+                } catch (IOException e) {
+                    System.err.println("Error compacting user log: " + e.getMessage());
+                }
+            }, compactionCheckMillis, compactionCheckMillis, TimeUnit.MILLISECONDS);
+        } else {
+            compactionScheduler = null;
+        }
+    }
+
+    @Override
+    public User createUser(User user) throws SQLException {
+        String key = UsernameUtil.normalize(user.getUsername());
+        LocalDateTime now = LocalDateTime.now();
+        long id;
+
+        lock.writeLock().lock();
+        try {
+            if (index.slotOf(key) >= 0) {
+                throw new SQLException("UNIQUE constraint failed: users.username");
+            }
+            String emailKey = EmailUtil.normalize(user.getEmail());
+            if (emailKey != null && index.slotOfEmail(emailKey) >= 0) {
+                throw new SQLException("UNIQUE constraint failed: users.email_key");
+            }
+            id = nextId;
+            User stored = new User(user.getUsername(), user.getPassword(), user.getEmail());
+            stored.setId(id);
+            stored.setCreatedAt(now);
+            put(stored);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        user.setId(id);
+        user.setCreatedAt(now);
+        return user;
+    }
+
+    @Override
+    public Optional<User> findByUsername(String username) throws SQLException {
+        lock.readLock().lock();
+        try {
+            int slot = index.slotOf(UsernameUtil.normalize(username));
+            return slot < 0 ? Optional.empty() : Optional.of(read(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<User> findById(Long id) throws SQLException {
+        lock.readLock().lock();
+        try {
+            int slot = index.slotOf(id);
+            return slot < 0 ? Optional.empty() : Optional.of(read(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean updateUser(User user) throws SQLException {
+        String key = UsernameUtil.normalize(user.getUsername());
+
+        lock.writeLock().lock();
+        try {
+            int slot = index.slotOf(user.getId());
+            if (slot < 0) {
+                return false;
+            }
+            User stored = read(slot);
+            if (stored.getVersion() != user.getVersion()) {
+                throw new VersionConflictException(user.getId(), user.getVersion(), stored.getVersion());
+            }
+            int owner = index.slotOf(key);
+            if (owner >= 0 && owner != slot) {
+                throw new SQLException("UNIQUE constraint failed: users.username");
+            }
+            String emailKey = EmailUtil.normalize(user.getEmail());
+            int emailOwner = emailKey == null ? -1 : index.slotOfEmail(emailKey);
+            if (emailOwner >= 0 && emailOwner != slot) {
+                throw new SQLException("UNIQUE constraint failed: users.email_key");
+            }
+            stored.setUsername(user.getUsername());
+            stored.setPassword(user.getPassword());
+            stored.setEmail(user.getEmail());
+            stored.setVersion(user.getVersion() + 1);
+            put(stored);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        user.setVersion(user.getVersion() + 1);
+        return true;
+    }
+
+    @Override
+    public boolean deleteUser(Long id) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            if (index.slotOf(id) < 0) {
+                return false;
+            }
+            try {
+                data.append(UserChangeLog.DELETE, ByteBuffer.allocate(Long.BYTES).putLong(id).array());
+                if (syncEachWrite) {
+                    data.force();
+                }
+            } catch (IOException e) {
+                throw new SQLException("Error writing user log", e);
+            }
+            index.remove(id);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Scans the index's last-active column, stopping after limit matches, so no record is
+     * decoded; the log is synced once for the whole call
+     */
+    @Override
+    public int deleteInactiveUsers(LocalDateTime cutoff, int limit) throws SQLException {
+        long cutoffMillis = UserSnapshotWriter.toEpochMillis(cutoff);
+        int deleted = 0;
+        lock.writeLock().lock();
+        try {
+            // Removing a user frees its slot but never moves another, so the scan stays valid
+            for (int slot = 0; slot < index.slotCount && deleted < limit; slot++) {
+                long lastActive = index.lastActive[slot];
+                if (index.keys[slot] != null && lastActive != UserSnapshotWriter.NULL_TIME && lastActive < cutoffMillis) {
+                    long id = index.ids[slot];
+                    data.append(UserChangeLog.DELETE, ByteBuffer.allocate(Long.BYTES).putLong(id).array());
+                    index.remove(id);
+                    deleted++;
+                }
+            }
+            if (deleted > 0 && syncEachWrite) {
+                data.force();
+            }
+            return deleted;
+        } catch (IOException e) {
+            throw new SQLException("Error writing user log", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) throws SQLException {
+        String emailKey = EmailUtil.normalize(email);
+        if (emailKey == null) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            int slot = index.slotOfEmail(emailKey);
+            return slot < 0 ? Optional.empty() : Optional.of(read(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean emailExists(String email) throws SQLException {
+        String emailKey = EmailUtil.normalize(email);
+        if (emailKey == null) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            return index.slotOfEmail(emailKey) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<User> getAllUsers() throws SQLException {
+        List<User> users = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < index.slotCount; slot++) {
+                if (index.keys[slot] != null) {
+                    users.add(read(slot));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        // Same order as ORDER BY created_at DESC in SQLite, where NULL sorts lowest
+        users.sort(Comparator.comparing(User::getCreatedAt, Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()))
+                .reversed());
+        return users;
+    }
+
+    @Override
+    public List<User> findUsersByPrefix(String prefix, String afterUsername, int limit) throws SQLException {
+        String key = UsernameUtil.normalize(prefix);
+        String afterKey = afterUsername == null ? "" : UsernameUtil.normalize(afterUsername);
+        lock.readLock().lock();
+        try {
+            // Walk the sorted slots from the later of the prefix and the cursor, decoding only the page
+            SortedSlotIndex sorted = index.sortedSlots;
+            int position = afterKey.compareTo(key) >= 0 ? sorted.higher(afterKey) : sorted.ceiling(key);
+            List<User> users = new ArrayList<>();
+            for (; position < sorted.size() && users.size() < limit; position++) {
+                int slot = sorted.slotAt(position);
+                if (!index.keys[slot].startsWith(key)) {
+                    break;
+                }
+                users.add(read(slot));
+            }
+            return users;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<User> findUsersContaining(String fragment, long afterId, int limit) throws SQLException {
+        String key = UsernameUtil.normalize(fragment);
+        lock.readLock().lock();
+        try {
+            List<Integer> matches = new ArrayList<>();
+            for (int slot = 0; slot < index.slotCount; slot++) {
+                if (index.keys[slot] != null && index.ids[slot] > afterId && index.keys[slot].contains(key)) {
+                    matches.add(slot);
+                }
+            }
+            matches.sort(Comparator.comparingLong(slot -> index.ids[slot]));
+            return read(matches, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean usernameExists(String username) throws SQLException {
+        lock.readLock().lock();
+        try {
+            return index.slotOf(UsernameUtil.normalize(username)) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void updateLastLogin(String username) throws SQLException {
+        LocalDateTime now = LocalDateTime.now();
+
+        lock.writeLock().lock();
+        try {
+            int slot = index.slotOf(UsernameUtil.normalize(username));
+            if (slot < 0) {
+                return;
+            }
+            User stored = read(slot);
+            stored.setLastLogin(now);
+            put(stored);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long exportUsers(Path file) throws SQLException, IOException {
+        DataFile source;
+        long[] offsets;
+        lock.readLock().lock();
+        try {
+            // Records are immutable once written, so the offsets can be read after unlocking;
+            // the mapping stays valid even if compaction retires the file meanwhile
+            source = data;
+            offsets = index.liveOffsets();
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        try (UserSnapshotWriter writer = new UserSnapshotWriter(file)) {
+            for (long offset : offsets) {
+                writer.write(UserSnapshotReader.decodeRecord(source.bodyAt(offset)));
+            }
+            writer.commit();
+            return writer.getCount();
+        }
+    }
+
+    @Override
+    public long importUsers(Path file) throws SQLException, IOException {
+        long imported = 0;
+        try (UserSnapshotReader reader = new UserSnapshotReader(file)) {
+            List<User> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+            User user;
+            do {
+                user = reader.next();
+                if (user != null) {
+                    batch.add(user);
+                }
+                if (batch.size() == IMPORT_BATCH_SIZE || (user == null && !batch.isEmpty())) {
+                    imported += importBatch(batch);
+                    batch.clear();
+                }
+            } while (user != null);
+        }
+        return imported;
+    }
+
+    /**
+     * Compact the log so space held by deleted and superseded records is released
+     */
+    @Override
+    public void reclaimSpace() throws SQLException {
+        try {
+            compact();
+        } catch (IOException e) {
+            throw new SQLException("Error compacting user log", e);
+        }
+    }
+
+    /**
+     * Rewrite the live records into a new data file and retire the current one
+     * @throws IOException if the new file cannot be written
+     */
+    public synchronized void compact() throws IOException {
+        DataFile source;
+        long markEnd;
+        long[] ids;
+        long[] offsets;
+        String[] keys;
+        String[] emailKeys;
+        long[] lastActive;
+        long highWaterId;
+        lock.readLock().lock();
+        try {
+            source = data;
+            markEnd = data.end;
+            highWaterId = nextId - 1;
+            int live = index.idToSlot.size();
+            ids = new long[live];
+            offsets = new long[live];
+            keys = new String[live];
+            emailKeys = new String[live];
+            lastActive = new long[live];
+            int n = 0;
+            for (int slot = 0; slot < index.slotCount; slot++) {
+                if (index.keys[slot] != null) {
+                    ids[n] = index.ids[slot];
+                    offsets[n] = index.offsets[slot];
+                    keys[n] = index.keys[slot];
+                    emailKeys[n] = index.emailKeys[slot];
+                    lastActive[n] = index.lastActive[slot];
+                    n++;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Copy live records without blocking writers
+        long targetGeneration = generation + 1;
+        Path target = dataFile(targetGeneration);
+        Path temp = directory.resolve(target.getFileName() + TEMP_SUFFIX);
+        DataFile compacted = DataFile.create(temp, segmentSize);
+        Index compactedIndex = new Index(Math.max(ids.length, 16));
+        try {
+            byte[] mark = ByteBuffer.allocate(Long.BYTES).putLong(highWaterId).array();
+            applyEntry(compactedIndex, compacted.append(UserChangeLog.HIGH_WATER_ID, mark), UserChangeLog.HIGH_WATER_ID,
+                    ByteBuffer.wrap(mark));
+            compactedIndex.sortedSlots.defer();
+            for (int i = 0; i < ids.length; i++) {
+                ByteBuffer entry = source.entryAt(offsets[i]);
+                byte op = entry.get();
+                byte[] body = new byte[entry.remaining()];
+                entry.get(body);
+                long offset = compacted.append(op, body);
+                compactedIndex.put(ids[i], keys[i], emailKeys[i], lastActive[i], offset, HEADER_BYTES + 1 + body.length);
+            }
+            compactedIndex.sortedSlots.resume();
+
+            lock.writeLock().lock();
+            try {
+                // Catch up on whatever was appended while copying
+                source.scan(markEnd, (offset, op, body) -> {
+                    byte[] bytes = new byte[body.remaining()];
+                    body.get(bytes);
+                    long newOffset = compacted.append(op, bytes);
+                    applyEntry(compactedIndex, newOffset, op, ByteBuffer.wrap(bytes));
+                });
+                compacted.force();
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                source.close();
+                data = compacted;
+                index = compactedIndex;
+                generation = targetGeneration;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (IOException | RuntimeException e) {
+            compacted.close();
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.deleteIfExists(dataFile(targetGeneration - 1));
+    }
+
+    /**
+     * Get the share of the data file taken up by superseded records
+     * @return garbage ratio between 0 and 1
+     */
+    public double getGarbageRatio() {
+        lock.readLock().lock();
+        try {
+            return data.end == 0 ? 0 : 1.0 - (double) index.liveBytes / data.end;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the number of live users
+     * @return user count
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.idToSlot.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (compactionScheduler != null) {
+            compactionScheduler.shutdownNow();
+        }
+        lock.writeLock().lock();
+        try {
+            data.force();
+            data.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean needsCompaction() {
+        lock.readLock().lock();
+        try {
+            return data.end >= segmentSize && getGarbageRatio() >= compactionGarbageRatio;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long importBatch(List<User> batch) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            // Validate the whole batch first so a rejected batch leaves nothing behind
+            Set<Long> batchIds = new HashSet<>();
+            Set<String> batchKeys = new HashSet<>();
+            Set<String> batchEmails = new HashSet<>();
+            for (User user : batch) {
+                if (index.slotOf(user.getId()) >= 0 || !batchIds.add(user.getId())) {
+                    throw new SQLException("UNIQUE constraint failed: users.id");
+                }
+                String key = UsernameUtil.normalize(user.getUsername());
+                if (index.slotOf(key) >= 0 || !batchKeys.add(key)) {
+                    throw new SQLException("UNIQUE constraint failed: users.username");
+                }
+                String emailKey = EmailUtil.normalize(user.getEmail());
+                if (emailKey != null && (index.slotOfEmail(emailKey) >= 0 || !batchEmails.add(emailKey))) {
+                    throw new SQLException("UNIQUE constraint failed: users.email_key");
+                }
+            }
+            // Merge the batch into the username order once instead of shifting it per user
+            index.sortedSlots.defer();
+            try {
+                for (User user : batch) {
+                    byte[] body = UserSnapshotWriter.encodeRecord(user);
+                    long offset = data.append(UserChangeLog.PUT, body);
+                    index.put(user.getId(), UsernameUtil.normalize(user.getUsername()), EmailUtil.normalize(user.getEmail()),
+                            lastActive(user), offset, HEADER_BYTES + 1 + body.length);
+                    nextId = Math.max(nextId, user.getId() + 1);
+                }
+            } finally {
+                index.sortedSlots.resume();
+            }
+            data.force();
+            return batch.size();
+        } catch (IOException e) {
+            throw new SQLException("Error writing user log", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Append a full record for the user and point the index at it. Caller holds the write lock.
+     */
+    private void put(User user) throws SQLException {
+        byte[] body = UserSnapshotWriter.encodeRecord(user);
+        try {
+            long offset = data.append(UserChangeLog.PUT, body);
+            if (syncEachWrite) {
+                data.force();
+            }
+            index.put(user.getId(), UsernameUtil.normalize(user.getUsername()), EmailUtil.normalize(user.getEmail()),
+                        lastActive(user), offset, HEADER_BYTES + 1 + body.length);
+            nextId = Math.max(nextId, user.getId() + 1);
+        } catch (IOException e) {
+            throw new SQLException("Error writing user log", e);
+        }
+    }
+
+    /**
+     * Last login, or creation for users who never logged in, as the index keeps it
+     */
+    private static long lastActive(User user) {
+        return UserSnapshotWriter.toEpochMillis(user.getLastLogin() != null ? user.getLastLogin() : user.getCreatedAt());
+    }
+
+    private User read(int slot) {
+        return UserSnapshotReader.decodeRecord(data.bodyAt(index.offsets[slot]));
+    }
+
+    private List<User> read(List<Integer> slots, int limit) {
+        List<User> users = new ArrayList<>(Math.min(slots.size(), limit));
+        for (int i = 0; i < slots.size() && i < limit; i++) {
+            users.add(read(slots.get(i)));
+        }
+        return users;
+    }
+
+    private void recover() throws IOException {
+        long newest = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX + TEMP_SUFFIX)) {
+                    // An interrupted compaction; the previous generation is still complete
+                    Files.delete(file);
+                } else if (name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX)) {
+                    newest = Math.max(newest, Long.parseLong(
+                            name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length())));
+                }
+            }
+        }
+        generation = Math.max(newest, 0);
+        for (long older = 0; older < generation; older++) {
+            Files.deleteIfExists(dataFile(older));
+        }
+
+        data = DataFile.create(dataFile(generation), segmentSize);
+        index = new Index(1024);
+        // Sort the usernames once at the end rather than per replayed entry
+        index.sortedSlots.defer();
+        long end = data.scan(0, (offset, op, body) -> applyEntry(index, offset, op, body));
+        index.sortedSlots.resume();
+        data.truncateAfter(end);
+    }
+
+    private void applyEntry(Index target, long offset, byte op, ByteBuffer body) throws IOException {
+        int entrySize = HEADER_BYTES + 1 + body.remaining();
+        switch (op) {
+            case UserChangeLog.PUT:
+                User user = UserSnapshotReader.decodeRecord(body);
+                target.put(user.getId(), UsernameUtil.normalize(user.getUsername()), EmailUtil.normalize(user.getEmail()),
+                        lastActive(user), offset, entrySize);
+                nextId = Math.max(nextId, user.getId() + 1);
+                break;
+            case UserChangeLog.DELETE:
+                long deleted = body.getLong();
+                target.remove(deleted);
+                nextId = Math.max(nextId, deleted + 1);
+                break;
+            case UserChangeLog.HIGH_WATER_ID:
+                // Stays live for as long as the file does
+                target.liveBytes += entrySize;
+                nextId = Math.max(nextId, body.getLong() + 1);
+                break;
+            default:
+                throw new IOException("Unknown user log entry type " + op);
+        }
+    }
+
+    private Path dataFile(long gen) {
+        return directory.resolve(FILE_PREFIX + gen + FILE_SUFFIX);
+    }
+
+    /**
+     * Index from id, normalized username and normalized email to the latest record, stored column-wise,
+     * with the usernames also kept in sorted order
+     */
+    private static class Index {
+        private final LongIntHashMap idToSlot;
+        private final StringIntHashMap keyToSlot;
+        private final StringIntHashMap emailToSlot;
+        private final SortedSlotIndex sortedSlots = new SortedSlotIndex(slot -> this.keys[slot]);
+        private long[] ids;
+        private long[] offsets;
+        private int[] sizes;
+        private String[] keys;
+        private String[] emailKeys;
+        private long[] lastActive;
+        private int[] freeSlots = new int[16];
+        private int freeCount;
+        private int slotCount;
+        private long liveBytes;
+
+        Index(int capacity) {
+            idToSlot = new LongIntHashMap(capacity);
+            keyToSlot = new StringIntHashMap(capacity);
+            emailToSlot = new StringIntHashMap(capacity);
+            ids = new long[capacity];
+            offsets = new long[capacity];
+            sizes = new int[capacity];
+            keys = new String[capacity];
+            emailKeys = new String[capacity];
+            lastActive = new long[capacity];
+        }
+
+        int slotOf(long id) {
+            return idToSlot.get(id);
+        }
+
+        int slotOf(String key) {
+            return keyToSlot.get(key);
+        }
+
+        int slotOfEmail(String emailKey) {
+            return emailToSlot.get(emailKey);
+        }
+
+        void put(long id, String key, String emailKey, long lastActiveMillis, long offset, int size) {
+            int slot = idToSlot.get(id);
+            boolean reordered = true;
+            if (slot < 0) {
+                slot = allocateSlot();
+                idToSlot.put(id, slot);
+            } else {
+                keyToSlot.remove(keys[slot]);
+                // Logins and most updates keep the username, and its place in the order
+                reordered = !key.equals(keys[slot]);
+                if (reordered) {
+                    sortedSlots.remove(slot);
+                }
+                unindexEmail(slot);
+                liveBytes -= sizes[slot];
+            }
+            ids[slot] = id;
+            offsets[slot] = offset;
+            sizes[slot] = size;
+            keys[slot] = key;
+            lastActive[slot] = lastActiveMillis;
+            keyToSlot.put(key, slot);
+            if (reordered) {
+                sortedSlots.add(slot);
+            }
+            // Records written before emails were unique may share one; the first holder keeps it
+            emailKeys[slot] = emailKey;
+            if (emailKey != null && emailToSlot.get(emailKey) < 0) {
+                emailToSlot.put(emailKey, slot);
+            }
+            liveBytes += size;
+        }
+
+        void remove(long id) {
+            int slot = idToSlot.remove(id);
+            if (slot < 0) {
+                return;
+            }
+            keyToSlot.remove(keys[slot]);
+            sortedSlots.remove(slot);
+            unindexEmail(slot);
+            keys[slot] = null;
+            liveBytes -= sizes[slot];
+            if (freeCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+            }
+            freeSlots[freeCount++] = slot;
+        }
+
+        long[] liveOffsets() {
+            long[] live = new long[idToSlot.size()];
+            int n = 0;
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (keys[slot] != null) {
+                    live[n++] = offsets[slot];
+                }
+            }
+            // File order reads the mapping sequentially
+            Arrays.sort(live);
+            return live;
+        }
+
+        private int allocateSlot() {
+            if (freeCount > 0) {
+                return freeSlots[--freeCount];
+            }
+            if (slotCount == ids.length) {
+                int capacity = ids.length * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+                keys = Arrays.copyOf(keys, capacity);
+                emailKeys = Arrays.copyOf(emailKeys, capacity);
+                lastActive = Arrays.copyOf(lastActive, capacity);
+            }
+            return slotCount++;
+        }
+
+        private void unindexEmail(int slot) {
+            String emailKey = emailKeys[slot];
+            if (emailKey != null && emailToSlot.get(emailKey) == slot) {
+                emailToSlot.remove(emailKey);
+            }
+            emailKeys[slot] = null;
+        }
+    }
+
+    /**
+     * A data file mapped segment by segment
+     */
+    private static class DataFile implements Closeable {
+        private final FileChannel channel;
+        private final int segmentSize;
+        // Copy-on-write so lock-free readers (export, compaction) can look up segments while the writer maps more
+        private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+        private final CRC32 crc = new CRC32();
+        private long end;
+        private int forcedSegment;
+
+        private DataFile(FileChannel channel, int segmentSize) {
+            this.channel = channel;
+            this.segmentSize = segmentSize;
+        }
+
+        static DataFile create(Path path, int segmentSize) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            DataFile file = new DataFile(channel, segmentSize);
+            long existing = (channel.size() + segmentSize - 1) / segmentSize;
+            for (long i = 0; i < Math.max(existing, 1); i++) {
+                file.mapSegment();
+            }
+            return file;
+        }
+
+        /**
+         * Append an entry and return its offset
+         */
+        long append(byte op, byte[] body) throws IOException {
+            int length = HEADER_BYTES + 1 + body.length;
+            if (length > segmentSize) {
+                throw new IOException("User record of " + length + " bytes exceeds segment size " + segmentSize);
+            }
+            int position = (int) (end % segmentSize);
+            if (segmentSize - position < length) {
+                // Entries never straddle segments; mark the rest of this one as unused
+                if (segmentSize - position >= Integer.BYTES) {
+                    segment(end).putInt(position, SKIP_TO_NEXT_SEGMENT);
+                }
+                end += segmentSize - position;
+                position = 0;
+            }
+            while (segments.size() <= end / segmentSize) {
+                mapSegment();
+            }
+
+            crc.reset();
+            crc.update(op);
+            crc.update(body);
+            ByteBuffer target = segment(end).duplicate();
+            target.position(position);
+            target.putInt(1 + body.length).putInt((int) crc.getValue()).put(op).put(body);
+
+            long offset = end;
+            end += length;
+            return offset;
+        }
+
+        /**
+         * Get a read-only view of an entry, positioned at its op byte
+         */
+        ByteBuffer entryAt(long offset) {
+            ByteBuffer view = segment(offset).duplicate();
+            int position = (int) (offset % segmentSize);
+            int length = view.getInt(position);
+            view.limit(position + HEADER_BYTES + length);
+            view.position(position + HEADER_BYTES);
+            return view.slice();
+        }
+
+        /**
+         * Get a read-only view of an entry body, positioned just after its op byte
+         */
+        ByteBuffer bodyAt(long offset) {
+            ByteBuffer view = entryAt(offset);
+            view.position(1);
+            return view;
+        }
+
+        /**
+         * Visit every valid entry from the given offset on
+         * @return the offset just past the last valid entry
+         */
+        long scan(long from, UserChangeLog.EntryVisitor visitor) throws IOException {
+            long offset = from;
+            long mapped = (long) segments.size() * segmentSize;
+            while (offset < mapped) {
+                int position = (int) (offset % segmentSize);
+                if (segmentSize - position < HEADER_BYTES) {
+                    offset += segmentSize - position;
+                    continue;
+                }
+                MappedByteBuffer segment = segment(offset);
+                int length = segment.getInt(position);
+                if (length == SKIP_TO_NEXT_SEGMENT) {
+                    offset += segmentSize - position;
+                    continue;
+                }
+                if (length < 1 || position + HEADER_BYTES + length > segmentSize) {
+                    break;
+                }
+                ByteBuffer payload = entryAt(offset);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != segment.getInt(position + Integer.BYTES)) {
+                    break;
+                }
+                byte op = payload.get();
+                visitor.visit(offset, op, payload.slice());
+                offset += HEADER_BYTES + length;
+            }
+            return offset;
+        }
+
+        /**
+         * Zero everything after the valid prefix so a torn entry cannot be mistaken for data later
+         */
+        void truncateAfter(long validEnd) {
+            end = validEnd;
+            for (long offset = validEnd; offset < (long) segments.size() * segmentSize; ) {
+                MappedByteBuffer segment = segment(offset);
+                int position = (int) (offset % segmentSize);
+                for (int i = position; i < segmentSize; i++) {
+                    if (segment.get(i) != 0) {
+                        segment.put(i, (byte) 0);
+                    }
+                }
+                offset += segmentSize - position;
+            }
+        }
+
+        /**
+         * Force every segment written since the last call
+         */
+        void force() {
+            int last = (int) (Math.max(end - 1, 0) / segmentSize);
+            for (int i = forcedSegment; i <= last; i++) {
+                segments.get(i).force();
+            }
+            forcedSegment = last;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Mappings stay valid after the channel closes, so readers holding a view are unaffected
+            channel.close();
+        }
+
+        private MappedByteBuffer segment(long offset) {
+            return segments.get((int) (offset / segmentSize));
+        }
+
+        private void mapSegment() throws IOException {
+            long position = (long) segments.size() * segmentSize;
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, position, segmentSize));
+        }
+    }
+}
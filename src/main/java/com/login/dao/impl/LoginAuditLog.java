@@ -0,0 +1,255 @@
+package com.login.dao.impl;
+
+import com.login.dao.UserDAOFactory;
+import com.login.model.LoginEvent;
+import com.login.util.ConfigUtil;
+import com.login.util.Database;
+import com.login.util.DatabaseUtil;
+import com.login.util.RingBuffer;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only audit trail of login attempts in the login_events table.
+ * <p>
+ * {@link #record} only puts the event into a lock-free ring buffer, so the login path
+ * never waits for the database; if the buffer is full the event is dropped and counted.
+ * A background thread drains the buffer and writes it through the write queue as
+ * multi-row INSERTs. A batch that fails to write is kept and retried first on the next
+ * flush; after {@value #MAX_WRITE_ATTEMPTS} failed attempts it is dropped, counted and
+ * logged. A retention job deletes expired events a chunk at a time, each
+ * chunk its own short write, so other writes are never held up behind a large delete.
+ */
+public class LoginAuditLog implements AutoCloseable {
+
+    private static final int ROWS_PER_INSERT = 200;
+    private static final int MAX_ROWS_PER_FLUSH = 5000;
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static LoginAuditLog instance;
+
+    private final Database database;
+    private final RingBuffer<LoginEvent> buffer;
+    private final long retentionMillis;
+    private final int purgeChunkSize;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong dropped = new AtomicLong();
+    // Only touched on the audit thread
+    private List<LoginEvent> pending = new ArrayList<>();
+    private int pendingAttempts;
+
+    /**
+     * Create an audit log and start its flush and retention jobs
+     * @param database the database holding login_events
+     * @param bufferSize number of events that can wait for a flush
+     * @param flushIntervalMillis how often buffered events are written
+     * @param retentionDays how long events are kept
+     * @param purgeChunkSize how many expired events one retention step deletes
+     */
+    public LoginAuditLog(Database database, int bufferSize, long flushIntervalMillis,
+                         int retentionDays, int purgeChunkSize) {
+        this.database = database;
+        this.buffer = new RingBuffer<>(bufferSize);
+        this.retentionMillis = retentionDays * DAY_MILLIS;
+        this.purgeChunkSize = purgeChunkSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "login-audit");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::writeQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::purgeQuietly, 1, 60, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Get the audit log configured by db.audit.* in database.properties
+     * @return the shared audit log, or null if auditing is disabled or users are not
+     *         stored in the db.url database
+     */
+    public static synchronized LoginAuditLog getInstance() {
+        if (instance == null && ConfigUtil.getBoolean("db.audit.enabled", true) && UserDAOFactory.usesDefaultDatabase()) {
+            instance = new LoginAuditLog(DatabaseUtil.getDatabase(),
+                    ConfigUtil.getInt("db.audit.bufferSize", 8192),
+                    ConfigUtil.getLong("db.audit.flushIntervalMs", 200),
+                    ConfigUtil.getInt("db.audit.retentionDays", 90),
+                    ConfigUtil.getInt("db.audit.purgeChunkSize", 500));
+        }
+        return instance;
+    }
+
+    /**
+     * Queue a login attempt for writing; never blocks
+     * @param username the username as entered
+     * @param outcome the result of the attempt
+     * @param client where the attempt came from, may be null
+     */
+    public void record(String username, LoginEvent.Outcome outcome, String client) {
+        record(new LoginEvent(username, outcome, client, System.currentTimeMillis()));
+    }
+
+    void record(LoginEvent event) {
+        if (!buffer.offer(event)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Get the number of events dropped because the buffer was full or they could not be written
+     * @return dropped event count
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Write every buffered event now. Runs on the audit thread so the buffer keeps a single consumer.
+     * @throws SQLException if writing fails
+     */
+    public void flush() throws SQLException {
+        try {
+            scheduler.submit(() -> {
+                writeBuffered();
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while flushing login events", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Flushing login events failed", e.getCause());
+        }
+    }
+
+    /**
+     * Delete events older than the retention period, one chunk per write
+     * @return the number of events deleted
+     * @throws SQLException if a delete fails
+     */
+    public int purgeExpired() throws SQLException {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        String sql = "DELETE FROM login_events WHERE id IN " +
+                "(SELECT id FROM login_events WHERE occurred_at < ? ORDER BY occurred_at LIMIT ?)";
+        int total = 0;
+        int deleted;
+        do {
+            deleted = database.getWriteQueue().execute(conn -> {
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setLong(1, cutoff);
+                    stmt.setInt(2, purgeChunkSize);
+                    return stmt.executeUpdate();
+                }
+            });
+            total += deleted;
+        } while (deleted == purgeChunkSize);
+        return total;
+    }
+
+    /**
+     * Get the most recent login attempts for a username, ignoring case
+     * @param username the username
+     * @param limit maximum number of events
+     * @return events, newest first
+     * @throws SQLException if the query fails
+     */
+    public List<LoginEvent> findRecentEvents(String username, int limit) throws SQLException {
+        String sql = "SELECT username, outcome, client, occurred_at FROM login_events " +
+                "WHERE username = ? ORDER BY occurred_at DESC, id DESC LIMIT ?";
+        List<LoginEvent> events = new ArrayList<>();
+        try (Connection conn = database.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, username);
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    events.add(new LoginEvent(rs.getString(1), LoginEvent.Outcome.valueOf(rs.getString(2)),
+                            rs.getString(3), rs.getLong(4)));
+                }
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Write what is still buffered and stop the background jobs
+     */
+    @Override
+    public void close() {
+        try {
+            flush();
+        } catch (SQLException e) {
+            System.err.println("Error writing login events; " + pending.size() + " events lost: " + e.getMessage());
+        }
+        scheduler.shutdown();
+    }
+
+    private void writeBuffered() throws SQLException {
+        while (!pending.isEmpty() || buffer.drainTo(pending::add, MAX_ROWS_PER_FLUSH) > 0) {
+            List<LoginEvent> batch = pending;
+            try {
+                database.getWriteQueue().execute(conn -> insert(conn, batch));
+            } catch (SQLException | RuntimeException e) {
+                if (++pendingAttempts >= MAX_WRITE_ATTEMPTS) {
+                    dropped.addAndGet(batch.size());
+                    System.err.println("Dropping " + batch.size() + " login events after " + pendingAttempts
+                            + " failed writes: " + e.getMessage());
+                    pending = new ArrayList<>();
+                    pendingAttempts = 0;
+                }
+                throw e;
+            }
+            pending = new ArrayList<>();
+            pendingAttempts = 0;
+        }
+    }
+
+    private static int insert(Connection conn, List<LoginEvent> events) throws SQLException {
+        for (int from = 0; from < events.size(); from += ROWS_PER_INSERT) {
+            int rows = Math.min(ROWS_PER_INSERT, events.size() - from);
+            StringBuilder sql = new StringBuilder("INSERT INTO login_events (username, outcome, client, occurred_at) VALUES ");
+            for (int i = 0; i < rows; i++) {
+                sql.append(i == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+                int param = 1;
+                for (int i = from; i < from + rows; i++) {
+                    LoginEvent event = events.get(i);
+                    stmt.setString(param++, event.getUsername());
+                    stmt.setString(param++, event.getOutcome().name());
+                    stmt.setString(param++, event.getClient());
+                    stmt.setLong(param++, event.getOccurredAtMillis());
+                }
+                stmt.executeUpdate();
+            }
+        }
+        return events.size();
+    }
+
+    private void writeQuietly() {
+        try {
+            writeBuffered();
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Error writing login events: " + e.getMessage());
+        }
+    }
+
+    private void purgeQuietly() {
+        try {
+            purgeExpired();
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Error purging login events: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.login.dao.impl;
+
+import com.login.model.User;
+import com.login.util.Database;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Offline tool that redistributes users from one set of shard databases onto another,
+ * e.g. to change the shard count.
+ * <p>
+ * Users are streamed out of every source shard, routed by username to a target shard
+ * and given new sequential ids there, then bulk-imported. Because ids encode the shard,
+ * every user gets a new id; the optional id map lists {@code oldId,newId} per user.
+ * A single source url is taken to be the unsharded {@code db.url} database, whose ids
+ * are plain row ids; with several, old ids are the shard-encoded ones.
+ * Run it with the application stopped, into new, empty database files, and then point
+ * {@code db.shards.urls} at the targets.
+ * <p>
+ * Usage: {@code ShardRebalancer <source-urls> <target-urls> [id-map.csv]}, urls comma-separated.
+ */
+public class ShardRebalancer {
+
+    private static final int PAGE_SIZE = 1000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: ShardRebalancer <source-urls> <target-urls> [id-map.csv]");
+            System.exit(2);
+        }
+        List<Database> sources = openAll(args[0]);
+        List<Database> targets = openAll(args[1]);
+        Path idMap = args.length > 2 ? Paths.get(args[2]) : null;
+        try {
+            long[] counts = rebalance(sources, targets, idMap);
+            for (int shard = 0; shard < counts.length; shard++) {
+                System.out.println("Shard " + shard + ": " + counts[shard] + " users");
+            }
+        } finally {
+            for (Database database : sources) {
+                database.close();
+            }
+            for (Database database : targets) {
+                database.close();
+            }
+        }
+    }
+
+    /**
+     * Copy every user from the source shards onto the target shards
+     * @param sources the current shard databases, in shard order
+     * @param targets the new shard databases, in shard order; must be empty
+     * @param idMap file to write {@code oldId,newId} lines to, or null
+     * @return number of users written to each target shard
+     * @throws SQLException if a database operation fails or a target is not empty
+     * @throws IOException if the temporary files or the id map cannot be written
+     */
+    public static long[] rebalance(List<Database> sources, List<Database> targets, Path idMap)
+            throws SQLException, IOException {
+        if (targets.isEmpty() || targets.size() > ShardedUserDAO.MAX_SHARDS) {
+            throw new IllegalArgumentException("Target shard count must be between 1 and " + ShardedUserDAO.MAX_SHARDS);
+        }
+        UserDAOImpl[] targetDAOs = new UserDAOImpl[targets.size()];
+        for (int shard = 0; shard < targetDAOs.length; shard++) {
+            targetDAOs[shard] = new UserDAOImpl(targets.get(shard));
+            if (!targetDAOs[shard].findUsersAfter(0, 1).isEmpty()) {
+                throw new SQLException("Target shard " + shard + " (" + targets.get(shard).getUrl() + ") is not empty");
+            }
+        }
+
+        Path[] parts = new Path[targets.size()];
+        UserSnapshotWriter[] writers = new UserSnapshotWriter[targets.size()];
+        long[] nextLocalId = new long[targets.size()];
+        Arrays.fill(nextLocalId, 1);
+        BufferedWriter mapWriter = idMap != null ? Files.newBufferedWriter(idMap, StandardCharsets.UTF_8) : null;
+        try {
+            for (int shard = 0; shard < parts.length; shard++) {
+                parts[shard] = Files.createTempFile("rebalance-" + shard + "-", ".users");
+                writers[shard] = new UserSnapshotWriter(parts[shard]);
+            }
+
+            for (int source = 0; source < sources.size(); source++) {
+                UserDAOImpl sourceDAO = new UserDAOImpl(sources.get(source));
+                long after = 0;
+                List<User> page;
+                do {
+                    page = sourceDAO.findUsersAfter(after, PAGE_SIZE);
+                    for (User user : page) {
+                        after = user.getId();
+                        long oldId = sources.size() == 1 ? user.getId() : ShardedUserDAO.globalId(user.getId(), source);
+                        int target = ShardedUserDAO.shardFor(user.getUsername(), targets.size());
+                        long localId = nextLocalId[target]++;
+                        user.setId(localId);
+                        writers[target].write(user);
+                        if (mapWriter != null) {
+                            mapWriter.write(oldId + "," + ShardedUserDAO.globalId(localId, target));
+                            mapWriter.newLine();
+                        }
+                    }
+                } while (page.size() == PAGE_SIZE);
+            }
+            for (UserSnapshotWriter writer : writers) {
+                writer.commit();
+            }
+
+            long[] counts = new long[targets.size()];
+            for (int shard = 0; shard < targetDAOs.length; shard++) {
+                counts[shard] = targetDAOs[shard].importUsers(parts[shard]);
+            }
+            return counts;
+        } finally {
+            if (mapWriter != null) {
+                mapWriter.close();
+            }
+            for (int shard = 0; shard < parts.length; shard++) {
+                if (writers[shard] != null) {
+                    writers[shard].close();
+                }
+                if (parts[shard] != null) {
+                    Files.deleteIfExists(parts[shard]);
+                }
+            }
+        }
+    }
+
+    private static List<Database> openAll(String urls) {
+        List<Database> databases = new ArrayList<>();
+        for (String url : urls.split(",")) {
+            if (!url.trim().isEmpty()) {
+                databases.add(Database.fromConfig(url.trim()));
+            }
+        }
+        return databases;
+    }
+}
@@ -0,0 +1,462 @@
+package com.login.dao.impl;
+
+import com.login.dao.UserDAO;
+import com.login.dao.VersionConflictException;
+import com.login.model.User;
+import com.login.model.UserRecord;
+import com.login.util.Database;
+import com.login.util.EmailUtil;
+import com.login.util.UsernameUtil;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * UserDAO that spreads users over several SQLite databases.
+ * <p>
+ * Each user lives on the shard picked by a CRC32 of the normalized username, so
+ * username uniqueness per shard is uniqueness overall. Ids seen by callers carry the
+ * shard in their low {@value #SHARD_BITS} bits ({@code localId << SHARD_BITS | shard}),
+ * which routes id lookups without a directory. Queries that span users run on every
+ * shard in parallel and merge the per-shard results.
+ * <p>
+ * Email is not the routing key: email lookups ask every shard, and email uniqueness
+ * across shards is only checked before a write, so two concurrent registrations on
+ * different shards can still both succeed.
+ * <p>
+ * Changing the number of shards moves users and renumbers them; use
+ * {@link ShardRebalancer} offline for that.
+ */
+public class ShardedUserDAO implements UserDAO, Closeable {
+
+    static final int SHARD_BITS = 8;
+    /** Largest supported number of shards */
+    public static final int MAX_SHARDS = 1 << SHARD_BITS;
+    private static final long SHARD_MASK = MAX_SHARDS - 1;
+    private static final int EXPORT_PAGE_SIZE = 1000;
+
+    private static final Comparator<User> NEWEST_FIRST = Comparator
+            .comparing(User::getCreatedAt, Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()))
+            .reversed();
+
+    /**
+     * A query run against one shard
+     */
+    @FunctionalInterface
+    private interface ShardQuery<T> {
+        T apply(int shard, UserDAOImpl dao) throws SQLException;
+    }
+
+    private final List<Database> databases;
+    private final UserDAOImpl[] shards;
+    private final ExecutorService fanOutExecutor;
+
+    /**
+     * Create a sharded DAO over already opened databases
+     * @param databases one database per shard, in shard order
+     */
+    public ShardedUserDAO(List<Database> databases) {
+        if (databases.isEmpty() || databases.size() > MAX_SHARDS) {
+            throw new IllegalArgumentException("Shard count must be between 1 and " + MAX_SHARDS);
+        }
+        this.databases = new ArrayList<>(databases);
+        this.shards = new UserDAOImpl[databases.size()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new UserDAOImpl(databases.get(i));
+        }
+        this.fanOutExecutor = Executors.newFixedThreadPool(shards.length, r -> {
+            Thread thread = new Thread(r, "shard-fan-out");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Open one database per url with the settings from database.properties
+     * @param urls JDBC urls, in shard order
+     * @return the sharded DAO
+     */
+    public static ShardedUserDAO open(List<String> urls) {
+        List<Database> databases = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            databases.add(Database.fromConfig(url));
+        }
+        return new ShardedUserDAO(databases);
+    }
+
+    /**
+     * Get the number of shards
+     * @return shard count
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Publish one shard's change outbox, with user ids translated to global ids.
+     * Sequence numbers are per shard, so consumers keep one position per shard.
+     * @param shard the shard index
+     * @param pollIntervalMillis how often to look for new events
+     * @return the feed; the caller closes it
+     */
+    public UserChangeFeed openChangeFeed(int shard, long pollIntervalMillis) {
+        if (shard < 0 || shard >= shards.length) {
+            throw new IllegalArgumentException("No shard " + shard + " among " + shards.length);
+        }
+        return new UserChangeFeed(databases.get(shard), pollIntervalMillis, localId -> globalId(localId, shard));
+    }
+
+    /**
+     * Pick the shard for a username; stable across restarts and JVMs
+     * @param username the username
+     * @param shardCount number of shards
+     * @return shard index
+     */
+    static int shardFor(String username, int shardCount) {
+        CRC32 crc = new CRC32();
+        crc.update(UsernameUtil.normalize(username).getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() % shardCount);
+    }
+
+    static long globalId(long localId, int shard) {
+        return (localId << SHARD_BITS) | shard;
+    }
+
+    static int shardOf(long globalId) {
+        return (int) (globalId & SHARD_MASK);
+    }
+
+    static long localId(long globalId) {
+        return globalId >>> SHARD_BITS;
+    }
+
+    @Override
+    public User createUser(User user) throws SQLException {
+        int shard = shardFor(user.getUsername(), shards.length);
+        checkEmailFree(user.getEmail(), shard);
+        shards[shard].createUser(user);
+        user.setId(globalId(user.getId(), shard));
+        return user;
+    }
+
+    @Override
+    public Optional<User> findByUsername(String username) throws SQLException {
+        int shard = shardFor(username, shards.length);
+        return shards[shard].findByUsername(username).map(user -> toGlobal(user, shard));
+    }
+
+    @Override
+    public Optional<User> findById(Long id) throws SQLException {
+        if (!isValidId(id)) {
+            return Optional.empty();
+        }
+        int shard = shardOf(id);
+        return shards[shard].findById(localId(id)).map(user -> toGlobal(user, shard));
+    }
+
+    @Override
+    public boolean updateUser(User user) throws SQLException {
+        Long id = user.getId();
+        if (!isValidId(id)) {
+            return false;
+        }
+        int shard = shardOf(id);
+        if (shardFor(user.getUsername(), shards.length) != shard) {
+            throw new SQLException("Renaming user " + id + " to '" + user.getUsername()
+                    + "' would move it to another shard, which is not supported");
+        }
+        checkEmailFree(user.getEmail(), shard);
+        user.setId(localId(id));
+        try {
+            return shards[shard].updateUser(user);
+        } catch (VersionConflictException e) {
+            throw new VersionConflictException(id, e.getExpectedVersion(), e.getActualVersion());
+        } finally {
+            user.setId(id);
+        }
+    }
+
+    @Override
+    public boolean deleteUser(Long id) throws SQLException {
+        return isValidId(id) && shards[shardOf(id)].deleteUser(localId(id));
+    }
+
+    @Override
+    public int deleteInactiveUsers(LocalDateTime cutoff, int limit) throws SQLException {
+        // Shards are drained one after another so a chunk is still a single short write
+        int deleted = 0;
+        for (UserDAOImpl shard : shards) {
+            if (deleted >= limit) {
+                break;
+            }
+            deleted += shard.deleteInactiveUsers(cutoff, limit - deleted);
+        }
+        return deleted;
+    }
+
+    @Override
+    public void reclaimSpace() throws SQLException {
+        for (UserDAOImpl shard : shards) {
+            shard.reclaimSpace();
+        }
+    }
+
+    @Override
+    public List<User> getAllUsers() throws SQLException {
+        List<User> users = new ArrayList<>();
+        for (List<User> shardUsers : fanOut((shard, dao) -> toGlobal(dao.getAllUsers(), shard))) {
+            users.addAll(shardUsers);
+        }
+        // Each shard is already newest first; the sort merges those runs
+        users.sort(NEWEST_FIRST);
+        return users;
+    }
+
+    @Override
+    public List<UserRecord> getAllUserRecords() throws SQLException {
+        List<UserRecord> records = new ArrayList<>();
+        for (List<UserRecord> shardRecords : fanOut((shard, dao) -> {
+            List<UserRecord> page = dao.getAllUserRecords();
+            for (int i = 0; i < page.size(); i++) {
+                page.set(i, toGlobal(page.get(i), shard));
+            }
+            return page;
+        })) {
+            records.addAll(shardRecords);
+        }
+        records.sort(Comparator.comparingLong(UserRecord::getCreatedAtMillis).reversed());
+        return records;
+    }
+
+    @Override
+    public List<User> findUsersAfter(long afterId, int limit) throws SQLException {
+        long afterLocal = Math.max(afterId, 0) >>> SHARD_BITS;
+        int afterShard = afterId > 0 ? shardOf(afterId) : -1;
+        List<User> users = new ArrayList<>();
+        for (List<User> page : fanOut((shard, dao) -> {
+            // Global ids order by (local id, shard), so a shard after afterId's own may repeat its local id
+            long bound = shard > afterShard ? afterLocal - 1 : afterLocal;
+            return toGlobal(dao.findUsersAfter(bound, limit), shard);
+        })) {
+            users.addAll(page);
+        }
+        users.sort(Comparator.comparing(User::getId));
+        return users.size() > limit ? new ArrayList<>(users.subList(0, limit)) : users;
+    }
+
+    @Override
+    public List<User> findUsersByPrefix(String prefix, String afterUsername, int limit) throws SQLException {
+        List<User> users = new ArrayList<>();
+        for (List<User> page : fanOut((shard, dao) -> toGlobal(dao.findUsersByPrefix(prefix, afterUsername, limit), shard))) {
+            users.addAll(page);
+        }
+        users.sort(Comparator.comparing(user -> UsernameUtil.normalize(user.getUsername())));
+        return users.size() > limit ? new ArrayList<>(users.subList(0, limit)) : users;
+    }
+
+    @Override
+    public List<User> findUsersContaining(String fragment, long afterId, int limit) throws SQLException {
+        long afterLocal = Math.max(afterId, 0) >>> SHARD_BITS;
+        int afterShard = afterId > 0 ? shardOf(afterId) : -1;
+        List<User> users = new ArrayList<>();
+        for (List<User> page : fanOut((shard, dao) -> {
+            long bound = shard > afterShard ? afterLocal - 1 : afterLocal;
+            return toGlobal(dao.findUsersContaining(fragment, bound, limit), shard);
+        })) {
+            users.addAll(page);
+        }
+        users.sort(Comparator.comparing(User::getId));
+        return users.size() > limit ? new ArrayList<>(users.subList(0, limit)) : users;
+    }
+
+    @Override
+    public Optional<UserRecord> findRecordByUsername(String username) throws SQLException {
+        int shard = shardFor(username, shards.length);
+        return shards[shard].findRecordByUsername(username).map(record -> toGlobal(record, shard));
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) throws SQLException {
+        for (Optional<User> found : fanOut((shard, dao) -> dao.findByEmail(email).map(user -> toGlobal(user, shard)))) {
+            if (found.isPresent()) {
+                return found;
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<UserRecord> findRecordByEmail(String email) throws SQLException {
+        for (Optional<UserRecord> found : fanOut((shard, dao) -> dao.findRecordByEmail(email)
+                .map(record -> toGlobal(record, shard)))) {
+            if (found.isPresent()) {
+                return found;
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean emailExists(String email) throws SQLException {
+        return fanOut((shard, dao) -> dao.emailExists(email)).contains(Boolean.TRUE);
+    }
+
+    @Override
+    public boolean usernameExists(String username) throws SQLException {
+        return shards[shardFor(username, shards.length)].usernameExists(username);
+    }
+
+    @Override
+    public void updateLastLogin(String username) throws SQLException {
+        shards[shardFor(username, shards.length)].updateLastLogin(username);
+    }
+
+    @Override
+    public long exportUsers(Path file) throws SQLException, IOException {
+        try (UserSnapshotWriter writer = new UserSnapshotWriter(file)) {
+            for (int shard = 0; shard < shards.length; shard++) {
+                long after = 0;
+                List<User> page;
+                do {
+                    page = shards[shard].findUsersAfter(after, EXPORT_PAGE_SIZE);
+                    for (User user : page) {
+                        after = user.getId();
+                        writer.write(toGlobal(user, shard));
+                    }
+                } while (page.size() == EXPORT_PAGE_SIZE);
+            }
+            writer.commit();
+            return writer.getCount();
+        }
+    }
+
+    /**
+     * Import users exported from a store with the same shard count; ids must carry
+     * the shard their username maps to. Use {@link ShardRebalancer} for anything else.
+     */
+    @Override
+    public long importUsers(Path file) throws SQLException, IOException {
+        Path[] parts = new Path[shards.length];
+        UserSnapshotWriter[] writers = new UserSnapshotWriter[shards.length];
+        try {
+            for (int shard = 0; shard < shards.length; shard++) {
+                parts[shard] = Files.createTempFile("shard-" + shard + "-", ".import");
+                writers[shard] = new UserSnapshotWriter(parts[shard]);
+            }
+            try (UserSnapshotReader reader = new UserSnapshotReader(file)) {
+                User user;
+                while ((user = reader.next()) != null) {
+                    int shard = shardFor(user.getUsername(), shards.length);
+                    if (!isValidId(user.getId()) || shardOf(user.getId()) != shard) {
+                        throw new SQLException("User id " + user.getId() + " does not belong to shard " + shard
+                                + " of " + shards.length);
+                    }
+                    user.setId(localId(user.getId()));
+                    writers[shard].write(user);
+                }
+            }
+            for (UserSnapshotWriter writer : writers) {
+                writer.commit();
+            }
+
+            long imported = 0;
+            for (int shard = 0; shard < shards.length; shard++) {
+                imported += shards[shard].importUsers(parts[shard]);
+            }
+            return imported;
+        } finally {
+            for (int shard = 0; shard < shards.length; shard++) {
+                if (writers[shard] != null) {
+                    writers[shard].close();
+                }
+                if (parts[shard] != null) {
+                    Files.deleteIfExists(parts[shard]);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        fanOutExecutor.shutdown();
+        for (Database database : databases) {
+            database.close();
+        }
+    }
+
+    /**
+     * Reject an email already held on another shard; the target shard's own index covers the rest
+     */
+    private void checkEmailFree(String email, int targetShard) throws SQLException {
+        if (EmailUtil.normalize(email) == null) {
+            return;
+        }
+        for (int shard = 0; shard < shards.length; shard++) {
+            if (shard != targetShard && shards[shard].emailExists(email)) {
+                throw new SQLException("UNIQUE constraint failed: users.email_key");
+            }
+        }
+    }
+
+    private boolean isValidId(Long id) {
+        return id != null && id > 0 && shardOf(id) < shards.length;
+    }
+
+    private <T> List<T> fanOut(ShardQuery<T> query) throws SQLException {
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            int shard = i;
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return query.apply(shard, shards[shard]);
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            }, fanOutExecutor));
+        }
+
+        List<T> results = new ArrayList<>(shards.length);
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    private static User toGlobal(User user, int shard) {
+        user.setId(globalId(user.getId(), shard));
+        return user;
+    }
+
+    private static List<User> toGlobal(List<User> users, int shard) {
+        for (User user : users) {
+            toGlobal(user, shard);
+        }
+        return users;
+    }
+
+    private static UserRecord toGlobal(UserRecord record, int shard) {
+        return new UserRecord(globalId(record.getId(), shard), record.getVersion(), record.getUsername(),
+                record.getEmail(), record.getCreatedAtMillis(), record.getLastLoginMillis(), record.getPasswordHash());
+    }
+}
@@ -0,0 +1,290 @@
+package com.login.dao.impl;
+
+import com.login.dao.ChangePositionExpiredException;
+import com.login.model.UserChangeEvent;
+import com.login.util.Database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Publishes the user_changes outbox of one database as an ordered stream of
+ * {@link UserChangeEvent}s.
+ * <p>
+ * Every UserDAOImpl mutation appends its event in the same transaction as the change,
+ * so the feed never shows a change that was rolled back and never misses one that
+ * committed. Subscribers start after a sequence number of their choosing (resume from
+ * the last one they processed) and receive no more events than they have requested.
+ * The outbox is polled; any process with access to the database file can subscribe.
+ * The outbox is trimmed, so a position can fall behind the oldest retained event; the
+ * subscriber then gets a {@link ChangePositionExpiredException} instead of silently
+ * skipping the events in between, and has to resynchronize.
+ * With the sharded backend each shard has its own feed and sequence; open them with
+ * {@link ShardedUserDAO#openChangeFeed} so events carry the same global ids as the DAO.
+ */
+public class UserChangeFeed implements Flow.Publisher<UserChangeEvent>, AutoCloseable {
+
+    private static final int MAX_FETCH = 500;
+    private static final String FETCH_SQL = "SELECT seq, change_type, user_id, username, version, changed_at " +
+            "FROM user_changes WHERE seq > ? ORDER BY seq LIMIT ?";
+    private static final String OLDEST_SQL = "SELECT MIN(seq) FROM user_changes";
+
+    private final Database database;
+    private final LongUnaryOperator idMapper;
+    private final Set<ChangeSubscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService poller;
+    private final ExecutorService deliveryExecutor;
+
+    /**
+     * Create a feed and start polling the outbox
+     * @param database the database whose changes are published
+     * @param pollIntervalMillis how often to look for new events
+     */
+    public UserChangeFeed(Database database, long pollIntervalMillis) {
+        this(database, pollIntervalMillis, LongUnaryOperator.identity());
+    }
+
+    /**
+     * Create a feed whose events carry ids translated from the ones stored in the outbox
+     * @param database the database whose changes are published
+     * @param pollIntervalMillis how often to look for new events
+     * @param idMapper turns a stored user id into the id callers know the user by
+     */
+    public UserChangeFeed(Database database, long pollIntervalMillis, LongUnaryOperator idMapper) {
+        this.database = database;
+        this.idMapper = idMapper;
+        this.poller = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "user-change-poller"));
+        this.deliveryExecutor = Executors.newCachedThreadPool(r -> daemon(r, "user-change-delivery"));
+        poller.scheduleWithFixedDelay(() -> {
+            for (ChangeSubscription subscription : subscriptions) {
+                subscription.schedule(false);
+            }
+        }, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Subscribe from the start of the retained outbox
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super UserChangeEvent> subscriber) {
+        subscribe(subscriber, 0);
+    }
+
+    /**
+     * Subscribe to events with a sequence number greater than the given one
+     * @param subscriber receives the events
+     * @param afterSequence the last sequence number already processed; 0 for everything retained.
+     *        If events after it have already been trimmed, the subscriber gets
+     *        {@link ChangePositionExpiredException} through onError.
+     */
+    public void subscribe(Flow.Subscriber<? super UserChangeEvent> subscriber, long afterSequence) {
+        ChangeSubscription subscription = new ChangeSubscription(subscriber, afterSequence);
+        subscriptions.add(subscription);
+        subscriber.onSubscribe(subscription);
+        // Check the position now rather than on the first request
+        subscription.schedule(true);
+    }
+
+    /**
+     * Get the sequence number of the newest event
+     * @return the latest sequence number, or 0 if the outbox is empty
+     * @throws SQLException if the query fails
+     */
+    public long getLatestSequence() throws SQLException {
+        try (Connection conn = database.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT COALESCE(MAX(seq), 0) FROM user_changes");
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Delete events every consumer has processed; sequence numbers are never reused
+     * @param throughSequence delete events up to and including this sequence number
+     * @return the number of events deleted
+     * @throws SQLException if the delete fails
+     */
+    public int purgeThrough(long throughSequence) throws SQLException {
+        return database.getWriteQueue().execute(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM user_changes WHERE seq <= ?")) {
+                stmt.setLong(1, throughSequence);
+                return stmt.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Stop polling and complete every open subscription
+     */
+    @Override
+    public void close() {
+        poller.shutdownNow();
+        for (ChangeSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+        deliveryExecutor.shutdown();
+    }
+
+    private List<UserChangeEvent> fetch(long afterSequence, int limit) throws SQLException {
+        List<UserChangeEvent> events = new ArrayList<>();
+        try (Connection conn = database.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(FETCH_SQL)) {
+            checkPosition(conn, afterSequence);
+            stmt.setLong(1, afterSequence);
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    events.add(new UserChangeEvent(rs.getLong(1), UserChangeEvent.Type.valueOf(rs.getString(2)),
+                            idMapper.applyAsLong(rs.getLong(3)), rs.getString(4), rs.getLong(5), rs.getLong(6)));
+                }
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Fail if events right after the position have been trimmed. An empty outbox gives
+     * nothing to compare against, and 0 asks for whatever is retained.
+     */
+    private static void checkPosition(Connection conn, long afterSequence) throws SQLException {
+        if (afterSequence <= 0) {
+            return;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(OLDEST_SQL);
+             ResultSet rs = stmt.executeQuery()) {
+            long oldest = rs.next() ? rs.getLong(1) : 0;
+            if (oldest > afterSequence + 1) {
+                throw new ChangePositionExpiredException(afterSequence, oldest);
+            }
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * One subscriber's position and outstanding demand. Every signal to the subscriber
+     * after onSubscribe, completion included, is made while holding the draining flag, so
+     * signals never overlap and events arrive strictly in order.
+     */
+    private class ChangeSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super UserChangeEvent> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean cancelled;
+        private volatile boolean completing;
+        private long lastSequence;
+
+        ChangeSubscription(Flow.Subscriber<? super UserChangeEvent> subscriber, long afterSequence) {
+            this.subscriber = subscriber;
+            this.lastSequence = afterSequence;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("Requested " + n + " events; must be positive"));
+                return;
+            }
+            // Saturate at Long.MAX_VALUE, which means unbounded
+            demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            schedule(false);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        void schedule(boolean checkPosition) {
+            if (!cancelled && (checkPosition || demand.get() > 0) && !draining.get()) {
+                try {
+                    deliveryExecutor.execute(() -> drain(checkPosition));
+                } catch (RejectedExecutionException e) {
+                    // Feed is closing
+                }
+            }
+        }
+
+        void complete() {
+            completing = true;
+            completeIfIdle();
+        }
+
+        /**
+         * Signal onComplete unless a drain holds the flag; that drain does it when it finishes
+         */
+        private void completeIfIdle() {
+            if (!draining.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                if (!cancelled) {
+                    cancel();
+                    subscriber.onComplete();
+                }
+            } finally {
+                draining.set(false);
+            }
+        }
+
+        private void drain(boolean checkPosition) {
+            if (!draining.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                if (checkPosition && !completing) {
+                    try (Connection conn = database.getReadConnection()) {
+                        checkPosition(conn, lastSequence);
+                    }
+                }
+                while (!cancelled && !completing && demand.get() > 0) {
+                    List<UserChangeEvent> events = fetch(lastSequence, (int) Math.min(demand.get(), MAX_FETCH));
+                    if (events.isEmpty()) {
+                        break;
+                    }
+                    for (UserChangeEvent event : events) {
+                        if (cancelled || completing) {
+                            break;
+                        }
+                        lastSequence = event.getSequence();
+                        if (demand.get() != Long.MAX_VALUE) {
+                            demand.decrementAndGet();
+                        }
+                        subscriber.onNext(event);
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!cancelled) {
+                    cancel();
+                    subscriber.onError(e);
+                }
+            } finally {
+                draining.set(false);
+            }
+            if (completing) {
+                completeIfIdle();
+            }
+        }
+    }
+}
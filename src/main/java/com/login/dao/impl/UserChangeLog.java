@@ -0,0 +1,152 @@
+package com.login.dao.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of user changes.
+ * <p>
+ * Each entry is {@code [int length][int crc32][byte op][body]}, where length and
+ * checksum cover the op byte and the body. A torn or corrupt tail left by a crash
+ * is detected on replay and cut off before new entries are appended.
+ */
+class UserChangeLog implements Closeable {
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+    static final byte LAST_LOGIN = 3;
+    // Body is the largest id assigned so far, for files that no longer hold that user
+    static final byte HIGH_WATER_ID = 4;
+
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    /**
+     * Receives log entries during replay
+     */
+    @FunctionalInterface
+    interface EntryVisitor {
+        /**
+         * @param offset file offset of the entry header
+         * @param op the entry type
+         * @param body the entry body, positioned at its start
+         */
+        void visit(long offset, byte op, ByteBuffer body) throws IOException;
+    }
+
+    private final FileChannel channel;
+    private final CRC32 crc = new CRC32();
+    private long size;
+
+    /**
+     * Open a log for appending, discarding anything past the last valid entry
+     * @param file the log file, created if missing
+     * @param validLength the length returned by {@link #replay(Path, EntryVisitor)}
+     * @throws IOException if the file cannot be opened
+     */
+    UserChangeLog(Path file, long validLength) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (channel.size() > validLength) {
+            channel.truncate(validLength);
+        }
+        this.size = validLength;
+    }
+
+    /**
+     * Append an entry; it is durable only after the next {@link #sync()}
+     * @param op the entry type
+     * @param body the entry body
+     * @return the file offset of the new entry
+     * @throws IOException if writing fails
+     */
+    synchronized long append(byte op, byte[] body) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(HEADER_BYTES + 1 + body.length);
+        entry.putInt(1 + body.length);
+        entry.putInt(0);
+        entry.put(op).put(body);
+        crc.reset();
+        crc.update(entry.array(), HEADER_BYTES, 1 + body.length);
+        entry.putInt(Integer.BYTES, (int) crc.getValue());
+        entry.flip();
+
+        long offset = size;
+        while (entry.hasRemaining()) {
+            channel.write(entry, size + entry.position());
+        }
+        size += entry.limit();
+        return offset;
+    }
+
+    /**
+     * Force appended entries to disk
+     * @throws IOException if syncing fails
+     */
+    synchronized void sync() throws IOException {
+        channel.force(false);
+    }
+
+    synchronized long size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Read every valid entry of a log in order
+     * @param file the log file; a missing file is treated as empty
+     * @param visitor receives each entry
+     * @return the length of the valid prefix of the file
+     * @throws IOException if reading fails
+     */
+    static long replay(Path file, EntryVisitor visitor) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = in.size();
+            long offset = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            CRC32 checksum = new CRC32();
+            while (offset + HEADER_BYTES <= fileSize) {
+                header.clear();
+                readFully(in, header, offset);
+                header.flip();
+                int length = header.getInt();
+                int expectedCrc = header.getInt();
+                if (length < 1 || offset + HEADER_BYTES + length > fileSize) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(in, payload, offset + HEADER_BYTES);
+                checksum.reset();
+                checksum.update(payload.array(), 0, length);
+                if ((int) checksum.getValue() != expectedCrc) {
+                    break;
+                }
+                payload.flip();
+                byte op = payload.get();
+                visitor.visit(offset, op, payload);
+                offset += HEADER_BYTES + length;
+            }
+            return offset;
+        }
+    }
+
+    static void readFully(FileChannel in, ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            int read = in.read(target, position + target.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of log");
+            }
+        }
+    }
+}
@@ -1,109 +1,319 @@
 package com.login.dao.impl;
 
 import com.login.dao.UserDAO;
+import com.login.dao.VersionConflictException;
 import com.login.model.User;
+import com.login.model.UserChangeEvent;
+import com.login.model.UserRecord;
+import com.login.util.ConfigUtil;
+import com.login.util.Database;
 import com.login.util.DatabaseUtil;
+import com.login.util.EmailUtil;
+import com.login.util.FlightEvents;
+import com.login.util.UsernameUtil;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Implementation of UserDAO interface
+ * <p>
+ * Lookups borrow a read-only connection from the read pool; every mutation
+ * goes through the {@link com.login.util.WriteQueue} so that writes share one
+ * connection and are group-committed instead of contending for the database lock.
+ * Each mutation also appends to the user_changes outbox in the same transaction,
+ * which {@link UserChangeFeed} publishes. The outbox keeps the newest
+ * {@code db.changes.retainEvents} events; older ones are deleted as new ones arrive,
+ * so a consumer that falls further behind than that has to resynchronize.
  */
 public class UserDAOImpl implements UserDAO {
 
+    private static final int EXPORT_FETCH_SIZE = 1000;
+    private static final int IMPORT_BATCH_SIZE = 1000;
+    // Shortest fragment the trigram index in users_search can match
+    private static final int TRIGRAM_LENGTH = 3;
+    // Column order expected by mapResultSetToRecord
+    private static final String RECORD_COLUMNS = "id, version, username, email, created_at, last_login";
+    // Copies the current state of the matching user row into the outbox
+    private static final String RECORD_CHANGE_SQL = "INSERT INTO user_changes " +
+            "(user_id, change_type, username, version, changed_at) " +
+            "SELECT id, ?, username, version, ? FROM users WHERE ";
+    // Deletes by primary key range, so a trim costs about as much as the inserts it follows
+    private static final String TRIM_CHANGES_SQL = "DELETE FROM user_changes " +
+            "WHERE seq <= (SELECT MAX(seq) FROM user_changes) - ?";
+    private static final long TRIM_INTERVAL = 1000;
+
+    private final Database database;
+    private final long retainedChanges;
+    private final AtomicLong changesSinceTrim = new AtomicLong();
+
+    public UserDAOImpl() {
+        this(DatabaseUtil.getDatabase());
+    }
+
+    public UserDAOImpl(Database database) {
+        this(database, ConfigUtil.getLong("db.changes.retainEvents", 1_000_000));
+    }
+
+    /**
+     * Create a DAO with its own outbox retention
+     * @param database the database holding the users table
+     * @param retainedChanges how many of the newest outbox events to keep; 0 keeps them all
+     */
+    public UserDAOImpl(Database database, long retainedChanges) {
+        if (retainedChanges < 0) {
+            throw new IllegalArgumentException("Retained change count cannot be negative");
+        }
+        this.database = database;
+        this.retainedChanges = retainedChanges;
+    }
+
     @Override
     public User createUser(User user) throws SQLException {
-        String sql = "INSERT INTO users (username, password, email, created_at) VALUES (?, ?, ?, ?)";
+        String sql = "INSERT INTO users (username, username_key, password, email, email_key, created_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?)";
+        LocalDateTime now = LocalDateTime.now();
         
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            
-            stmt.setString(1, user.getUsername());
-            stmt.setString(2, user.getPassword());
-            stmt.setString(3, user.getEmail());
-            stmt.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
-            
-            int affectedRows = stmt.executeUpdate();
-            if (affectedRows == 0) {
-                throw new SQLException("Creating user failed, no rows affected.");
-            }
-            
-            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    user.setId(generatedKeys.getLong(1));
-                    user.setCreatedAt(LocalDateTime.now());
-                } else {
-                    throw new SQLException("Creating user failed, no ID obtained.");
+        FlightEvents.DaoQuery event = FlightEvents.DaoQuery.start("createUser");
+        long id;
+        boolean succeeded = false;
+        try {
+            id = database.getWriteQueue().execute(conn -> {
+                try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    
+                    stmt.setString(1, user.getUsername());
+                    stmt.setString(2, UsernameUtil.normalize(user.getUsername()));
+                    stmt.setString(3, user.getPassword());
+                    stmt.setString(4, user.getEmail());
+                    stmt.setString(5, EmailUtil.normalize(user.getEmail()));
+                    stmt.setTimestamp(6, Timestamp.valueOf(now));
+                    
+                    int affectedRows = stmt.executeUpdate();
+                    if (affectedRows == 0) {
+                        throw new SQLException("Creating user failed, no rows affected.");
+                    }
+                    
+                    try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                        if (generatedKeys.next()) {
+                            long newId = generatedKeys.getLong(1);
+                            recordChange(conn, UserChangeEvent.Type.CREATED, "id", newId);
+                            return newId;
+                        }
+                        throw new SQLException("Creating user failed, no ID obtained.");
+                    }
                 }
-            }
+            });
+            succeeded = true;
+        } finally {
+            event.finish(user.getUsername(), succeeded ? 1 : 0, succeeded);
         }
+        user.setId(id);
+        user.setCreatedAt(now);
         return user;
     }
 
     @Override
     public Optional<User> findByUsername(String username) throws SQLException {
-        String sql = "SELECT * FROM users WHERE username = ?";
+        String sql = "SELECT * FROM users WHERE username_key = ?";
+        
+        FlightEvents.DaoQuery event = FlightEvents.DaoQuery.start("findByUsername");
+        Optional<User> result = Optional.empty();
+        boolean succeeded = false;
+        try (Connection conn = database.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setString(1, UsernameUtil.normalize(username));
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    result = Optional.of(mapResultSetToUser(rs));
+                }
+            }
+            succeeded = true;
+        } finally {
+            event.finish(username, result.isPresent() ? 1 : 0, succeeded);
+        }
+        return result;
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) throws SQLException {
+        String key = EmailUtil.normalize(email);
+        if (key == null) {
+            return Optional.empty();
+        }
+        String sql = "SELECT * FROM users WHERE email_key = ?";
         
-        try (Connection conn = DatabaseUtil.getConnection();
+        FlightEvents.DaoQuery event = FlightEvents.DaoQuery.start("findByEmail");
+        Optional<User> result = Optional.empty();
+        boolean succeeded = false;
+        try (Connection conn = database.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
-            stmt.setString(1, username);
+            stmt.setString(1, key);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return Optional.of(mapResultSetToUser(rs));
+                    result = Optional.of(mapResultSetToUser(rs));
                 }
             }
+            succeeded = true;
+        } finally {
+            event.finish(email, result.isPresent() ? 1 : 0, succeeded);
         }
-        return Optional.empty();
+        return result;
     }
 
     @Override
     public Optional<User> findById(Long id) throws SQLException {
         String sql = "SELECT * FROM users WHERE id = ?";
         
-        try (Connection conn = DatabaseUtil.getConnection();
+        FlightEvents.DaoQuery event = FlightEvents.DaoQuery.start("findById");
+        Optional<User> result = Optional.empty();
+        boolean succeeded = false;
+        try (Connection conn = database.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setLong(1, id);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return Optional.of(mapResultSetToUser(rs));
+                    result = Optional.of(mapResultSetToUser(rs));
                 }
             }
+            succeeded = true;
+        } finally {
+            event.finish(result.map(User::getUsername).orElse(null), result.isPresent() ? 1 : 0, succeeded);
         }
-        return Optional.empty();
+        return result;
     }
 
     @Override
     public boolean updateUser(User user) throws SQLException {
-        String sql = "UPDATE users SET username = ?, password = ?, email = ? WHERE id = ?";
+        String sql = "UPDATE users SET username = ?, username_key = ?, password = ?, email = ?, email_key = ?, " +
+                "version = version + 1 WHERE id = ? AND version = ?";
+        long expectedVersion = user.getVersion();
         
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setString(1, user.getUsername());
-            stmt.setString(2, user.getPassword());
-            stmt.setString(3, user.getEmail());
-            stmt.setLong(4, user.getId());
-            
-            return stmt.executeUpdate() > 0;
+        FlightEvents.DaoQuery event = FlightEvents.DaoQuery.start("updateUser");
+        boolean updated = false;
+        boolean succeeded = false;
+        try {
+            updated = database.getWriteQueue().execute(conn -> {
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    
+                    stmt.setString(1, user.getUsername());
+                    stmt.setString(2, UsernameUtil.normalize(user.getUsername()));
+                    stmt.setString(3, user.getPassword());
+                    stmt.setString(4, user.getEmail());
+                    stmt.setString(5, EmailUtil.normalize(user.getEmail()));
+                    stmt.setLong(6, user.getId());
+                    stmt.setLong(7, expectedVersion);
+                    
+                    if (stmt.executeUpdate() > 0) {
+                        recordChange(conn, UserChangeEvent.Type.UPDATED, "id", user.getId());
+                        return true;
+                    }
+                }
+                // Nothing matched: either the user is gone or someone else bumped the version
+                try (PreparedStatement stmt = conn.prepareStatement("SELECT version FROM users WHERE id = ?")) {
+                    stmt.setLong(1, user.getId());
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next()) {
+                            throw new VersionConflictException(user.getId(), expectedVersion, rs.getLong(1));
+                        }
+                    }
+                }
+                return false;
+            });
+            succeeded = true;
+        } finally {
+            event.finish(user.getUsername(), updated ? 1 : 0, succeeded);
+        }
+        if (updated) {
+            user.setVersion(expectedVersion + 1);
         }
+        return updated;
     }
 
     @Override
     public boolean deleteUser(Long id) throws SQLException {
         String sql = "DELETE FROM users WHERE id = ?";
         
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            
-            stmt.setLong(1, id);
-            return stmt.executeUpdate() > 0;
+        FlightEvents.DaoQuery event = FlightEvents.DaoQuery.start("deleteUser");
+        boolean deleted = false;
+        boolean succeeded = false;
+        try {
+            deleted = database.getWriteQueue().execute(conn -> {
+                // Recorded first so the event still carries the username
+                recordChange(conn, UserChangeEvent.Type.DELETED, "id", id);
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    
+                    stmt.setLong(1, id);
+                    return stmt.executeUpdate() > 0;
+                }
+            });
+            succeeded = true;
+        } finally {
+            event.finish(null, deleted ? 1 : 0, succeeded);
+        }
+        return deleted;
+    }
+
+    @Override
+    public int deleteInactiveUsers(LocalDateTime cutoff, int limit) throws SQLException {
+        String selectSql = "SELECT id FROM users WHERE last_login < ? " +
+                "UNION ALL SELECT id FROM users WHERE last_login IS NULL AND created_at < ? LIMIT ?";
+        Timestamp before = Timestamp.valueOf(cutoff);
+        
+        FlightEvents.DaoQuery event = FlightEvents.DaoQuery.start("deleteInactiveUsers");
+        int deleted = 0;
+        boolean succeeded = false;
+        try {
+            // One write per chunk: the outbox events and the deletes commit together
+            deleted = database.getWriteQueue().execute(conn -> {
+                List<Long> ids = new ArrayList<>();
+                try (PreparedStatement stmt = conn.prepareStatement(selectSql)) {
+                    stmt.setTimestamp(1, before);
+                    stmt.setTimestamp(2, before);
+                    stmt.setInt(3, limit);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            ids.add(rs.getLong(1));
+                        }
+                    }
+                }
+                try (PreparedStatement change = conn.prepareStatement(RECORD_CHANGE_SQL + "id = ?");
+                     PreparedStatement delete = conn.prepareStatement("DELETE FROM users WHERE id = ?")) {
+                    long now = System.currentTimeMillis();
+                    for (Long id : ids) {
+                        change.setString(1, UserChangeEvent.Type.DELETED.name());
+                        change.setLong(2, now);
+                        change.setLong(3, id);
+                        change.addBatch();
+                        delete.setLong(1, id);
+                        delete.addBatch();
+                    }
+                    change.executeBatch();
+                    delete.executeBatch();
+                }
+                changesRecorded(conn, ids.size());
+                return ids.size();
+            });
+            succeeded = true;
+        } finally {
+            event.finish(null, deleted, succeeded);
         }
+        return deleted;
+    }
+
+    @Override
+    public void reclaimSpace() throws SQLException {
+        database.reclaimSpace();
     }
 
     @Override
@@ -111,45 +321,362 @@ public class UserDAOImpl implements UserDAO {
         List<User> users = new ArrayList<>();
         String sql = "SELECT * FROM users ORDER BY created_at DESC";
         
-        try (Connection conn = DatabaseUtil.getConnection();
+        FlightEvents.DaoQuery event = FlightEvents.DaoQuery.start("getAllUsers");
+        boolean succeeded = false;
+        try (Connection conn = database.getReadConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
             while (rs.next()) {
                 users.add(mapResultSetToUser(rs));
             }
+            succeeded = true;
+        } finally {
+            event.finish(null, users.size(), succeeded);
         }
         return users;
     }
 
     @Override
-    public boolean usernameExists(String username) throws SQLException {
-        String sql = "SELECT COUNT(*) FROM users WHERE username = ?";
+    public List<User> findUsersAfter(long afterId, int limit) throws SQLException {
+        List<User> users = new ArrayList<>();
+        String sql = "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?";
+        
+        FlightEvents.DaoQuery event = FlightEvents.DaoQuery.start("findUsersAfter");
+        boolean succeeded = false;
+        try (Connection conn = database.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setLong(1, afterId);
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    users.add(mapResultSetToUser(rs));
+                }
+            }
+            succeeded = true;
+        } finally {
+            event.finish(null, users.size(), succeeded);
+        }
+        return users;
+    }
+
+    @Override
+    public List<User> findUsersByPrefix(String prefix, String afterUsername, int limit) throws SQLException {
+        // A LIKE pattern without a leading wildcard becomes a range scan of idx_users_username_key
+        String sql = "SELECT * FROM users WHERE username_key LIKE ? ESCAPE '\\' AND username_key > ? " +
+                "ORDER BY username_key LIMIT ?";
+        return queryUsers("findUsersByPrefix", sql, escapeLike(UsernameUtil.normalize(prefix)) + "%",
+                afterUsername == null ? "" : UsernameUtil.normalize(afterUsername), limit);
+    }
+
+    @Override
+    public List<User> findUsersContaining(String fragment, long afterId, int limit) throws SQLException {
+        String key = UsernameUtil.normalize(fragment);
+        if (key.length() < TRIGRAM_LENGTH) {
+            // Too short for the trigram index; walk the table in id order until the page fills
+            return queryUsers("findUsersContaining", "SELECT * FROM users WHERE username_key LIKE ? ESCAPE '\\' AND id > ? " +
+                    "ORDER BY id LIMIT ?", "%" + escapeLike(key) + "%", afterId, limit);
+        }
+        String sql = "SELECT u.* FROM users_search s JOIN users u ON u.id = s.rowid " +
+                "WHERE users_search MATCH ? AND s.rowid > ? ORDER BY s.rowid LIMIT ?";
+        return queryUsers("findUsersContaining", sql, "\"" + key.replace("\"", "\"\"") + "\"", afterId, limit);
+    }
+
+    private List<User> queryUsers(String operation, String sql, String pattern, Object after, int limit) throws SQLException {
+        List<User> users = new ArrayList<>();
+        FlightEvents.DaoQuery event = FlightEvents.DaoQuery.start(operation);
+        boolean succeeded = false;
+        try (Connection conn = database.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setString(1, pattern);
+            stmt.setObject(2, after);
+            stmt.setInt(3, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    users.add(mapResultSetToUser(rs));
+                }
+            }
+            succeeded = true;
+        } finally {
+            event.finish(null, users.size(), succeeded);
+        }
+        return users;
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    @Override
+    public Optional<UserRecord> findRecordByUsername(String username) throws SQLException {
+        String sql = "SELECT " + RECORD_COLUMNS + ", password FROM users WHERE username_key = ?";
         
-        try (Connection conn = DatabaseUtil.getConnection();
+        FlightEvents.DaoQuery event = FlightEvents.DaoQuery.start("findRecordByUsername");
+        Optional<UserRecord> result = Optional.empty();
+        boolean succeeded = false;
+        try (Connection conn = database.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
-            stmt.setString(1, username);
+            stmt.setString(1, UsernameUtil.normalize(username));
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return rs.getInt(1) > 0;
+                    result = Optional.of(mapResultSetToRecord(rs, true));
                 }
             }
+            succeeded = true;
+        } finally {
+            event.finish(username, result.isPresent() ? 1 : 0, succeeded);
         }
-        return false;
+        return result;
     }
 
     @Override
-    public void updateLastLogin(String username) throws SQLException {
-        String sql = "UPDATE users SET last_login = ? WHERE username = ?";
+    public Optional<UserRecord> findRecordByEmail(String email) throws SQLException {
+        String key = EmailUtil.normalize(email);
+        if (key == null) {
+            return Optional.empty();
+        }
+        String sql = "SELECT " + RECORD_COLUMNS + ", password FROM users WHERE email_key = ?";
+        
+        FlightEvents.DaoQuery event = FlightEvents.DaoQuery.start("findRecordByEmail");
+        Optional<UserRecord> result = Optional.empty();
+        boolean succeeded = false;
+        try (Connection conn = database.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setString(1, key);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    result = Optional.of(mapResultSetToRecord(rs, true));
+                }
+            }
+            succeeded = true;
+        } finally {
+            event.finish(email, result.isPresent() ? 1 : 0, succeeded);
+        }
+        return result;
+    }
+
+    @Override
+    public List<UserRecord> getAllUserRecords() throws SQLException {
+        List<UserRecord> records = new ArrayList<>();
+        String sql = "SELECT " + RECORD_COLUMNS + " FROM users ORDER BY created_at DESC";
+        
+        FlightEvents.DaoQuery event = FlightEvents.DaoQuery.start("getAllUserRecords");
+        boolean succeeded = false;
+        try (Connection conn = database.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            
+            while (rs.next()) {
+                records.add(mapResultSetToRecord(rs, false));
+            }
+            succeeded = true;
+        } finally {
+            event.finish(null, records.size(), succeeded);
+        }
+        return records;
+    }
+
+    @Override
+    public boolean usernameExists(String username) throws SQLException {
+        String sql = "SELECT 1 FROM users WHERE username_key = ? LIMIT 1";
+        
+        FlightEvents.DaoQuery event = FlightEvents.DaoQuery.start("usernameExists");
+        boolean exists = false;
+        boolean succeeded = false;
+        try (Connection conn = database.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setString(1, UsernameUtil.normalize(username));
+            try (ResultSet rs = stmt.executeQuery()) {
+                exists = rs.next();
+            }
+            succeeded = true;
+        } finally {
+            event.finish(username, exists ? 1 : 0, succeeded);
+        }
+        return exists;
+    }
+
+    @Override
+    public boolean emailExists(String email) throws SQLException {
+        String key = EmailUtil.normalize(email);
+        if (key == null) {
+            return false;
+        }
+        String sql = "SELECT 1 FROM users WHERE email_key = ? LIMIT 1";
         
-        try (Connection conn = DatabaseUtil.getConnection();
+        FlightEvents.DaoQuery event = FlightEvents.DaoQuery.start("emailExists");
+        boolean exists = false;
+        boolean succeeded = false;
+        try (Connection conn = database.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
-            stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
-            stmt.setString(2, username);
+            stmt.setString(1, key);
+            try (ResultSet rs = stmt.executeQuery()) {
+                exists = rs.next();
+            }
+            succeeded = true;
+        } finally {
+            event.finish(email, exists ? 1 : 0, succeeded);
+        }
+        return exists;
+    }
+
+    @Override
+    public void updateLastLogin(String username) throws SQLException {
+        String sql = "UPDATE users SET last_login = ? WHERE username_key = ?";
+        String key = UsernameUtil.normalize(username);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        
+        FlightEvents.DaoQuery event = FlightEvents.DaoQuery.start("updateLastLogin");
+        int rows = 0;
+        boolean succeeded = false;
+        try {
+            rows = database.getWriteQueue().execute(conn -> {
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    
+                    stmt.setTimestamp(1, now);
+                    stmt.setString(2, key);
+                    int updated = stmt.executeUpdate();
+                    if (updated > 0) {
+                        recordChange(conn, UserChangeEvent.Type.LAST_LOGIN, "username_key", key);
+                    }
+                    return updated;
+                }
+            });
+            succeeded = true;
+        } finally {
+            event.finish(username, rows, succeeded);
+        }
+    }
+
+    @Override
+    public long exportUsers(Path file) throws SQLException, IOException {
+        String sql = "SELECT * FROM users ORDER BY id";
+        
+        // One read transaction, so the snapshot is consistent even while writes continue
+        try (Connection conn = database.getReadConnection();
+             Statement stmt = conn.createStatement();
+             UserSnapshotWriter writer = new UserSnapshotWriter(file)) {
+            
+            stmt.setFetchSize(EXPORT_FETCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    writer.write(mapResultSetToUser(rs));
+                }
+            }
+            writer.commit();
+            return writer.getCount();
+        }
+    }
+
+    @Override
+    public long importUsers(Path file) throws SQLException, IOException {
+        long imported = 0;
+        // Keep one batch in flight while the next one is read from disk
+        CompletableFuture<Integer> inFlight = null;
+        
+        try (UserSnapshotReader reader = new UserSnapshotReader(file)) {
+            List<User> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+            User user;
+            do {
+                user = reader.next();
+                if (user != null) {
+                    batch.add(user);
+                }
+                if (batch.size() == IMPORT_BATCH_SIZE || (user == null && !batch.isEmpty())) {
+                    imported += awaitBatch(inFlight);
+                    List<User> toInsert = batch;
+                    inFlight = database.getWriteQueue().submit(conn -> insertBatch(conn, toInsert));
+                    batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+                }
+            } while (user != null);
+        } finally {
+            imported += awaitBatch(inFlight);
+        }
+        return imported;
+    }
+
+    private int insertBatch(Connection conn, List<User> users) throws SQLException {
+        String sql = "INSERT INTO users (id, username, username_key, password, email, email_key, " +
+                "created_at, last_login, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        
+        long now = System.currentTimeMillis();
+        
+        try (PreparedStatement stmt = conn.prepareStatement(sql);
+             PreparedStatement change = conn.prepareStatement(RECORD_CHANGE_SQL + "id = ?")) {
+            for (User user : users) {
+                change.setString(1, UserChangeEvent.Type.CREATED.name());
+                change.setLong(2, now);
+                change.setLong(3, user.getId());
+                change.addBatch();
+                stmt.setLong(1, user.getId());
+                stmt.setString(2, user.getUsername());
+                stmt.setString(3, UsernameUtil.normalize(user.getUsername()));
+                stmt.setString(4, user.getPassword());
+                stmt.setString(5, user.getEmail());
+                stmt.setString(6, EmailUtil.normalize(user.getEmail()));
+                stmt.setTimestamp(7, user.getCreatedAt() != null ? Timestamp.valueOf(user.getCreatedAt()) : null);
+                stmt.setTimestamp(8, user.getLastLogin() != null ? Timestamp.valueOf(user.getLastLogin()) : null);
+                stmt.setLong(9, user.getVersion());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            change.executeBatch();
+        }
+        changesRecorded(conn, users.size());
+        return users.size();
+    }
+
+    /**
+     * Append the current state of the user matching {@code column = key} to the outbox.
+     * Runs on the writer connection, inside the mutation's own transaction.
+     */
+    private void recordChange(Connection conn, UserChangeEvent.Type type, String column, Object key)
+            throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(RECORD_CHANGE_SQL + column + " = ?")) {
+            stmt.setString(1, type.name());
+            stmt.setLong(2, System.currentTimeMillis());
+            stmt.setObject(3, key);
             stmt.executeUpdate();
         }
+        changesRecorded(conn, 1);
+    }
+
+    /**
+     * Trim the outbox to the retained size once enough events were added since the last trim.
+     * Runs on the writer connection, inside the transaction that added them.
+     */
+    private void changesRecorded(Connection conn, int added) throws SQLException {
+        if (retainedChanges == 0 || changesSinceTrim.addAndGet(added) < Math.min(TRIM_INTERVAL, retainedChanges)) {
+            return;
+        }
+        changesSinceTrim.set(0);
+        try (PreparedStatement stmt = conn.prepareStatement(TRIM_CHANGES_SQL)) {
+            stmt.setLong(1, retainedChanges);
+            stmt.executeUpdate();
+        }
+    }
+
+    private int awaitBatch(CompletableFuture<Integer> batch) throws SQLException {
+        if (batch == null) {
+            return 0;
+        }
+        try {
+            return batch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while importing users", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Importing users failed", e.getCause());
+        }
     }
 
     /**
@@ -171,7 +698,31 @@ public class UserDAOImpl implements UserDAO {
         if (lastLogin != null) {
             user.setLastLogin(lastLogin.toLocalDateTime());
         }
+        user.setVersion(rs.getLong("version"));
         
         return user;
     }
+
+    /**
+     * Map a row selected with RECORD_COLUMNS (and optionally password) to a UserRecord
+     * <p>
+     * Columns are read by position, and timestamps as the epoch milliseconds the driver
+     * stores for setTimestamp, so no Timestamp or LocalDateTime is created per row.
+     */
+    private UserRecord mapResultSetToRecord(ResultSet rs, boolean withPassword) throws SQLException {
+        long id = rs.getLong(1);
+        long version = rs.getLong(2);
+        String username = rs.getString(3);
+        String email = rs.getString(4);
+        long createdAt = rs.getLong(5);
+        if (rs.wasNull()) {
+            createdAt = UserRecord.NO_TIME;
+        }
+        long lastLogin = rs.getLong(6);
+        if (rs.wasNull()) {
+            lastLogin = UserRecord.NO_TIME;
+        }
+        byte[] passwordHash = withPassword ? rs.getBytes(7) : null;
+        return new UserRecord(id, version, username, email, createdAt, lastLogin, passwordHash);
+    }
 }
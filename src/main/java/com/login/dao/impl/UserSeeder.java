@@ -0,0 +1,266 @@
+package com.login.dao.impl;
+
+import com.login.util.Database;
+import com.login.util.EmailUtil;
+import com.login.util.PasswordUtil;
+import com.login.util.UsernameUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Offline tool that fills an empty database with synthetic users for benchmarks and
+ * capacity tests.
+ * <p>
+ * Users are generated from a seeded RNG, so a given seed and count always produce the
+ * same usernames, emails and timestamps. Hashing every password at the configured BCrypt
+ * cost would take days for millions of users, so a small pool of passwords is hashed once
+ * and reused; {@link #passwordFor} gives the password of any seeded user so benchmarks can
+ * log in. Rows are inserted on a dedicated connection as multi-row INSERTs in large
+ * transactions, with {@code synchronous = OFF} and the journal switched off; the previous
+ * journal mode is restored at the end. The secondary indexes and the search triggers on
+ * users are dropped for the load and rebuilt once at the end, which is far cheaper than
+ * keeping them up to date row by row. Without a journal a crash or failure mid-load can
+ * leave the file incomplete, which is acceptable for a file that can be seeded again.
+ * Seeded users are not written to the change outbox.
+ * <p>
+ * Run it with the application stopped. Usage: {@code UserSeeder <db-url> <count> [seed]}
+ */
+public class UserSeeder {
+
+    public static final int HASH_POOL_SIZE = 16;
+
+    private static final int ROWS_PER_TRANSACTION = 50_000;
+    private static final int ROWS_PER_STATEMENT = 200;
+    private static final int COLUMNS = 7;
+    // FTS5's default
+    private static final int FTS_AUTOMERGE = 4;
+    // Accounts are created over the two years before this instant
+    private static final long EPOCH_MILLIS = LocalDateTime.of(2025, 1, 1, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+    private static final long CREATION_SPAN_MILLIS = TimeUnit.DAYS.toMillis(730);
+    private static final String[] SYLLABLES = {
+        "ka", "lo", "mi", "ren", "tor", "vy", "sa", "del", "qu", "ix", "an", "bo", "che", "dru", "el", "fyn"
+    };
+    private static final String[] DOMAINS = {"example.com", "example.org", "example.net", "test.example"};
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: UserSeeder <db-url> <count> [seed]");
+            System.exit(2);
+        }
+        long count = Long.parseLong(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        Database database = Database.fromConfig(args[0]);
+        try {
+            long started = System.nanoTime();
+            seed(database, count, seed);
+            double seconds = (System.nanoTime() - started) / 1e9;
+            System.out.printf("Seeded %d users in %.1f s (%.0f users/s)%n", count, seconds, count / seconds);
+        } finally {
+            database.close();
+        }
+    }
+
+    /**
+     * Insert synthetic users into an empty users table
+     * @param database the database to fill; nothing else may write to it meanwhile
+     * @param count how many users to create
+     * @param seed RNG seed; the same seed and count give the same users
+     * @throws IllegalArgumentException if the count is negative
+     * @throws SQLException if a database operation fails or the users table is not empty
+     */
+    public static void seed(Database database, long count, long seed) throws SQLException {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count cannot be negative");
+        }
+        String[] hashes = IntStream.range(0, HASH_POOL_SIZE).parallel()
+                .mapToObj(i -> PasswordUtil.hashPassword(passwordFor(i)))
+                .toArray(String[]::new);
+
+        try (Connection conn = database.getConnection()) {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT 1 FROM users LIMIT 1")) {
+                if (rs.next()) {
+                    throw new SQLException("Users table in " + database.getUrl() + " is not empty");
+                }
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA synchronous = OFF");
+                stmt.execute("PRAGMA cache_size = -262144");
+                stmt.execute("PRAGMA temp_store = MEMORY");
+            }
+            String journalMode = setJournalMode(conn, "OFF");
+
+            List<String> deferred = dropDeferredSchema(conn);
+            SplittableRandom random = new SplittableRandom(seed);
+            StringBuilder name = new StringBuilder(32);
+            conn.setAutoCommit(false);
+            PreparedStatement stmt = null;
+            int statementRows = 0;
+            try {
+                for (long index = 0; index < count; index++) {
+                    int row = (int) (index % ROWS_PER_STATEMENT);
+                    if (row == 0) {
+                        int rows = (int) Math.min(ROWS_PER_STATEMENT, count - index);
+                        if (rows != statementRows) {
+                            if (stmt != null) {
+                                stmt.close();
+                            }
+                            stmt = conn.prepareStatement(insertSql(rows));
+                            statementRows = rows;
+                        }
+                    }
+                    name.setLength(0);
+                    int syllables = 2 + random.nextInt(3);
+                    for (int i = 0; i < syllables; i++) {
+                        name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+                    }
+                    // The index keeps usernames unique however the syllables fall
+                    String username = name.append('_').append(index).toString();
+                    String email = username + "@" + DOMAINS[random.nextInt(DOMAINS.length)];
+                    long createdAt = EPOCH_MILLIS - CREATION_SPAN_MILLIS + random.nextLong(CREATION_SPAN_MILLIS);
+                    // One in five users never logged in
+                    boolean loggedIn = random.nextInt(5) != 0;
+                    long lastLogin = createdAt + random.nextLong(EPOCH_MILLIS - createdAt);
+
+                    int column = row * COLUMNS;
+                    stmt.setString(column + 1, username);
+                    stmt.setString(column + 2, UsernameUtil.normalize(username));
+                    stmt.setString(column + 3, hashes[(int) (index % HASH_POOL_SIZE)]);
+                    stmt.setString(column + 4, email);
+                    stmt.setString(column + 5, EmailUtil.normalize(email));
+                    stmt.setTimestamp(column + 6, new Timestamp(createdAt));
+                    stmt.setTimestamp(column + 7, loggedIn ? new Timestamp(lastLogin) : null);
+
+                    long inserted = index + 1;
+                    if (row == statementRows - 1) {
+                        stmt.executeUpdate();
+                    }
+                    if (inserted % ROWS_PER_TRANSACTION == 0 || inserted == count) {
+                        conn.commit();
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                // Put the schema back even though the load failed, without hiding why it failed
+                try {
+                    if (stmt != null) {
+                        stmt.close();
+                        stmt = null;
+                    }
+                    conn.rollback();
+                    finishLoad(conn, deferred, journalMode);
+                } catch (SQLException restoreFailure) {
+                    e.addSuppressed(restoreFailure);
+                }
+                throw e;
+            } finally {
+                if (stmt != null) {
+                    stmt.close();
+                }
+            }
+            finishLoad(conn, deferred, journalMode);
+        }
+    }
+
+    /**
+     * Build an INSERT of the given number of rows
+     */
+    private static String insertSql(int rows) {
+        StringBuilder sql = new StringBuilder("INSERT INTO users (username, username_key, password, email, " +
+                "email_key, created_at, last_login, version) VALUES ");
+        for (int row = 0; row < rows; row++) {
+            sql.append(row == 0 ? "" : ", ").append("(?, ?, ?, ?, ?, ?, ?, 0)");
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Switch the journal mode
+     * @return the mode before the switch
+     */
+    private static String setJournalMode(Connection conn, String mode) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            String previous;
+            try (ResultSet rs = stmt.executeQuery("PRAGMA journal_mode")) {
+                rs.next();
+                previous = rs.getString(1);
+            }
+            stmt.execute("PRAGMA journal_mode = " + mode);
+            return previous;
+        }
+    }
+
+    /**
+     * Leave the load transaction, rebuild the deferred schema and put the journal back
+     */
+    private static void finishLoad(Connection conn, List<String> deferred, String journalMode) throws SQLException {
+        conn.setAutoCommit(true);
+        restoreDeferredSchema(conn, deferred);
+        setJournalMode(conn, journalMode);
+    }
+
+    /**
+     * Drop the indexes and triggers on users that can be rebuilt after the load
+     * @return the statements that create them again
+     */
+    private static List<String> dropDeferredSchema(Connection conn) throws SQLException {
+        List<String> names = new ArrayList<>();
+        List<String> creates = new ArrayList<>();
+        // Indexes without sql back UNIQUE constraints and cannot be dropped
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT type, name, sql FROM sqlite_master " +
+                     "WHERE tbl_name = 'users' AND type IN ('index', 'trigger') AND sql IS NOT NULL")) {
+            while (rs.next()) {
+                names.add("DROP " + rs.getString(1).toUpperCase() + " " + rs.getString(2));
+                creates.add(rs.getString(3));
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            for (String drop : names) {
+                stmt.execute(drop);
+            }
+        }
+        return creates;
+    }
+
+    /**
+     * Recreate what {@link #dropDeferredSchema} dropped and rebuild the search index
+     */
+    private static void restoreDeferredSchema(Connection conn, List<String> creates) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String create : creates) {
+                stmt.execute(create);
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM sqlite_master WHERE name = 'users_search'")) {
+                if (!rs.next()) {
+                    return;
+                }
+            }
+            // Build the index in one pass and merge it once, instead of merging as segments fill
+            stmt.execute("INSERT INTO users_search (users_search, rank) VALUES ('automerge', 0)");
+            stmt.execute("INSERT INTO users_search (users_search) VALUES ('rebuild')");
+            stmt.execute("INSERT INTO users_search (users_search) VALUES ('optimize')");
+            stmt.execute("INSERT INTO users_search (users_search, rank) VALUES ('automerge', " + FTS_AUTOMERGE + ")");
+        }
+    }
+
+    /**
+     * Get the password of a seeded user
+     * @param index the user's position in seeding order, from 0
+     * @return the plain text password
+     */
+    public static String passwordFor(long index) {
+        return "seeded" + (index % HASH_POOL_SIZE) + "pass";
+    }
+}
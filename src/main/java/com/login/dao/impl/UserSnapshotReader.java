@@ -0,0 +1,154 @@
+package com.login.dao.impl;
+
+import com.login.model.User;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Reads users back from a snapshot written by {@link UserSnapshotWriter}, one record at a time
+ */
+public class UserSnapshotReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long count;
+    private long highWaterId;
+    private boolean finished;
+
+    /**
+     * Open a snapshot file
+     * @param file the snapshot file
+     * @throws IOException if the file cannot be read or is not a user snapshot
+     */
+    public UserSnapshotReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        buffer.flip();
+        try {
+            require(2 * Integer.BYTES);
+            if (buffer.getInt() != UserSnapshotWriter.MAGIC) {
+                throw new IOException("Not a user snapshot: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != UserSnapshotWriter.FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot format version " + version);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Read the next user
+     * @return the next user, or null once all records have been read
+     * @throws IOException if the file is truncated or corrupt
+     */
+    public User next() throws IOException {
+        if (finished) {
+            return null;
+        }
+        require(Integer.BYTES);
+        int length = buffer.getInt();
+        if (length == UserSnapshotWriter.END_OF_RECORDS) {
+            require(2 * Long.BYTES);
+            long expected = buffer.getLong();
+            if (expected != count) {
+                throw new IOException("Snapshot trailer expects " + expected + " users but " + count + " were read");
+            }
+            highWaterId = buffer.getLong();
+            finished = true;
+            return null;
+        }
+        require(length);
+
+        User user = decodeRecord(buffer);
+        count++;
+        return user;
+    }
+
+    /**
+     * Get the largest id the snapshot's source had assigned
+     * @return the id high-water mark; complete only once {@link #next()} has returned null
+     */
+    public long getHighWaterId() {
+        return highWaterId;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Decode one user record body written by {@link UserSnapshotWriter#encodeRecord(User)}
+     * @param record a buffer positioned at the start of the record
+     * @return the decoded user; the buffer is left positioned after the record
+     */
+    static User decodeRecord(ByteBuffer record) {
+        User user = new User();
+        user.setId(record.getLong());
+        user.setVersion(record.getLong());
+        user.setCreatedAt(toLocalDateTime(record.getLong()));
+        user.setLastLogin(toLocalDateTime(record.getLong()));
+        user.setUsername(getString(record));
+        user.setPassword(getString(record));
+        user.setEmail(getString(record));
+        return user;
+    }
+
+    static LocalDateTime toLocalDateTime(long epochMillis) {
+        if (epochMillis == UserSnapshotWriter.NULL_TIME) {
+            return null;
+        }
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    /**
+     * Make sure the buffer holds at least the given number of unread bytes
+     */
+    private void require(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        if (buffer.capacity() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(bytes);
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            buffer.compact();
+        }
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of snapshot");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static String getString(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (record.hasArray()) {
+            String value = new String(record.array(), record.arrayOffset() + record.position(), length, StandardCharsets.UTF_8);
+            record.position(record.position() + length);
+            return value;
+        }
+        // Direct or mapped buffer: decode straight out of it
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,188 @@
+package com.login.dao.impl;
+
+import com.login.model.User;
+import com.login.model.UserRecord;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Streams users into a compact binary snapshot file.
+ * <p>
+ * Layout: a header (magic, format version) followed by length-prefixed records and
+ * a trailer holding the record count and the id high-water mark, the largest id the
+ * source has ever assigned, so a store reloaded from the snapshot does not hand out the
+ * ids of users deleted before it was taken. A record is
+ * {@code id, version, createdAt, lastLogin} as longs (timestamps as epoch milliseconds,
+ * {@link #NULL_TIME} when absent) followed by {@code username, password, email} as
+ * UTF-8 strings with an int byte-length prefix (-1 for null). Records are encoded into
+ * a reusable buffer and written through a {@link FileChannel}, so memory use does not
+ * depend on the number of users.
+ * <p>
+ * Records go to a temporary file next to the target. Only {@link #commit()} writes the
+ * trailer and moves the file into place, so a snapshot that failed halfway never replaces
+ * the previous one and can never be read as complete; closing without committing
+ * deletes the temporary file.
+ */
+public class UserSnapshotWriter implements Closeable {
+
+    static final int MAGIC = 0x4C535531; // "LSU1"
+    static final int FORMAT_VERSION = 1;
+    static final int END_OF_RECORDS = -1;
+    static final long NULL_TIME = UserRecord.NO_TIME;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path target;
+    private final Path temp;
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long count;
+    private long highWaterId;
+    private boolean committed;
+
+    /**
+     * Start a snapshot that replaces the given file once committed
+     * @param file the snapshot file
+     * @throws IOException if the temporary file cannot be created
+     */
+    public UserSnapshotWriter(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        this.target = absolute;
+        this.temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        this.channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION);
+    }
+
+    /**
+     * Append a user to the snapshot
+     * @param user the user to write
+     * @throws IOException if writing fails
+     */
+    public void write(User user) throws IOException {
+        byte[] record = encodeRecord(user);
+        ensureCapacity(Integer.BYTES + record.length);
+        buffer.putInt(record.length).put(record);
+        count++;
+        if (user.getId() != null) {
+            highWaterId = Math.max(highWaterId, user.getId());
+        }
+    }
+
+    /**
+     * Record that ids up to the given one were assigned, even if those users are gone
+     * @param id the largest id the source has assigned; the largest id written counts anyway
+     */
+    public void setHighWaterId(long id) {
+        highWaterId = Math.max(highWaterId, id);
+    }
+
+    /**
+     * Get the number of users written so far
+     * @return record count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Write the trailer, force the file to disk and move it over the target
+     * @throws IOException if writing or moving fails; the target is then left as it was
+     */
+    public void commit() throws IOException {
+        if (!channel.isOpen()) {
+            throw new IOException("Snapshot writer is closed");
+        }
+        try {
+            ensureCapacity(Integer.BYTES + 2 * Long.BYTES);
+            buffer.putInt(END_OF_RECORDS).putLong(count).putLong(highWaterId);
+            flush();
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        committed = true;
+    }
+
+    /**
+     * Discard the snapshot unless it was committed; later calls do nothing
+     * @throws IOException if the temporary file cannot be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            if (!committed) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Encode one user record body, without its length prefix
+     * @param user the user to encode
+     * @return the encoded record
+     */
+    static byte[] encodeRecord(User user) {
+        byte[] username = encode(user.getUsername());
+        byte[] password = encode(user.getPassword());
+        byte[] email = encode(user.getEmail());
+        ByteBuffer record = ByteBuffer.allocate(4 * Long.BYTES + 3 * Integer.BYTES
+                + length(username) + length(password) + length(email));
+        record.putLong(user.getId() != null ? user.getId() : 0L);
+        record.putLong(user.getVersion());
+        record.putLong(toEpochMillis(user.getCreatedAt()));
+        record.putLong(toEpochMillis(user.getLastLogin()));
+        putString(record, username);
+        putString(record, password);
+        putString(record, email);
+        return record.array();
+    }
+
+    static long toEpochMillis(LocalDateTime time) {
+        return time == null ? NULL_TIME : time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private void ensureCapacity(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocate(bytes);
+            }
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static void putString(ByteBuffer target, byte[] bytes) {
+        if (bytes == null) {
+            target.putInt(-1);
+        } else {
+            target.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+}
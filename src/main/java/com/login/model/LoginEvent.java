@@ -0,0 +1,59 @@
+package com.login.model;
+
+/**
+ * One login attempt in the audit trail
+ */
+public final class LoginEvent {
+
+    /**
+     * Result of a login attempt
+     */
+    public enum Outcome {
+        SUCCESS, UNKNOWN_USER, BAD_PASSWORD
+    }
+
+    private final String username;
+    private final Outcome outcome;
+    private final String client;
+    private final long occurredAtMillis;
+
+    /**
+     * Create a login event
+     * @param username the username as entered
+     * @param outcome the result of the attempt
+     * @param client where the attempt came from, may be null
+     * @param occurredAtMillis when it happened, in epoch milliseconds
+     */
+    public LoginEvent(String username, Outcome outcome, String client, long occurredAtMillis) {
+        this.username = username;
+        this.outcome = outcome;
+        this.client = client;
+        this.occurredAtMillis = occurredAtMillis;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public String getClient() {
+        return client;
+    }
+
+    public long getOccurredAtMillis() {
+        return occurredAtMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "LoginEvent{" +
+                "username='" + username + '\'' +
+                ", outcome=" + outcome +
+                ", client='" + client + '\'' +
+                ", occurredAt=" + occurredAtMillis +
+                '}';
+    }
+}
@@ -12,6 +12,7 @@ public class User {
     private String email;
     private LocalDateTime createdAt;
     private LocalDateTime lastLogin;
+    private long version;
 
     // Default constructor
     public User() {}
@@ -80,6 +81,14 @@ public class User {
         this.lastLogin = lastLogin;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "User{" +
@@ -88,6 +97,7 @@ public class User {
                 ", email='" + email + '\'' +
                 ", createdAt=" + createdAt +
                 ", lastLogin=" + lastLogin +
+                ", version=" + version +
                 '}';
     }
 
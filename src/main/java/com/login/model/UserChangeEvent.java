@@ -0,0 +1,76 @@
+package com.login.model;
+
+/**
+ * One entry of the user change feed: which user changed, how, and at which position.
+ * Sequence numbers increase strictly in commit order within one database.
+ */
+public final class UserChangeEvent {
+
+    /**
+     * Kind of change
+     */
+    public enum Type {
+        CREATED, UPDATED, DELETED, LAST_LOGIN
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final long userId;
+    private final String username;
+    private final long version;
+    private final long changedAtMillis;
+
+    /**
+     * Create an event
+     * @param sequence position in the feed
+     * @param type kind of change
+     * @param userId the changed user's id
+     * @param username the username at the time of the change
+     * @param version the row version after the change
+     * @param changedAtMillis when the change was made, in epoch milliseconds
+     */
+    public UserChangeEvent(long sequence, Type type, long userId, String username, long version, long changedAtMillis) {
+        this.sequence = sequence;
+        this.type = type;
+        this.userId = userId;
+        this.username = username;
+        this.version = version;
+        this.changedAtMillis = changedAtMillis;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getChangedAtMillis() {
+        return changedAtMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "UserChangeEvent{" +
+                "sequence=" + sequence +
+                ", type=" + type +
+                ", userId=" + userId +
+                ", username='" + username + '\'' +
+                ", version=" + version +
+                ", changedAt=" + changedAtMillis +
+                '}';
+    }
+}
@@ -0,0 +1,155 @@
+package com.login.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Compact, immutable view of a user for read-heavy paths.
+ * <p>
+ * Unlike {@link User} it holds a primitive id, timestamps as epoch milliseconds
+ * ({@link #NO_TIME} when absent) and the password hash as raw ASCII bytes, which may be
+ * left out entirely when the caller does not need it. {@link #toUser()} and
+ * {@link #from(User)} convert to and from the mutable model for existing callers.
+ */
+public final class UserRecord {
+
+    /** Timestamp value meaning "not set" */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private final long id;
+    private final long version;
+    private final String username;
+    private final String email;
+    private final long createdAtMillis;
+    private final long lastLoginMillis;
+    private final byte[] passwordHash;
+
+    /**
+     * Create a record
+     * @param id the user id
+     * @param version the optimistic-locking version
+     * @param username the username as entered
+     * @param email the email address, may be null
+     * @param createdAtMillis creation time in epoch milliseconds, or {@link #NO_TIME}
+     * @param lastLoginMillis last login time in epoch milliseconds, or {@link #NO_TIME}
+     * @param passwordHash the ASCII bytes of the password hash, or null if not loaded
+     */
+    public UserRecord(long id, long version, String username, String email,
+                      long createdAtMillis, long lastLoginMillis, byte[] passwordHash) {
+        this.id = id;
+        this.version = version;
+        this.username = username;
+        this.email = email;
+        this.createdAtMillis = createdAtMillis;
+        this.lastLoginMillis = lastLoginMillis;
+        this.passwordHash = passwordHash;
+    }
+
+    /**
+     * Convert a User into a record
+     * @param user the user
+     * @return the equivalent record, including the password hash if the user has one
+     */
+    public static UserRecord from(User user) {
+        return new UserRecord(user.getId() != null ? user.getId() : 0L, user.getVersion(), user.getUsername(),
+                user.getEmail(), toEpochMillis(user.getCreatedAt()), toEpochMillis(user.getLastLogin()),
+                user.getPassword() != null ? user.getPassword().getBytes(StandardCharsets.US_ASCII) : null);
+    }
+
+    /**
+     * Convert this record into a mutable User for callers of the classic model
+     * @return a new User; its password is null if the hash was not loaded
+     */
+    public User toUser() {
+        User user = new User();
+        user.setId(id);
+        user.setVersion(version);
+        user.setUsername(username);
+        user.setEmail(email);
+        user.setPassword(passwordHash != null ? new String(passwordHash, StandardCharsets.US_ASCII) : null);
+        user.setCreatedAt(toLocalDateTime(createdAtMillis));
+        user.setLastLogin(toLocalDateTime(lastLoginMillis));
+        return user;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    public long getLastLoginMillis() {
+        return lastLoginMillis;
+    }
+
+    /**
+     * Get the password hash; the array is shared, so callers must not modify it
+     * @return the hash bytes, or null if not loaded
+     */
+    public byte[] getPasswordHash() {
+        return passwordHash;
+    }
+
+    /**
+     * Get the creation time in the system time zone
+     * @return creation time, or null if not set
+     */
+    public LocalDateTime getCreatedAt() {
+        return toLocalDateTime(createdAtMillis);
+    }
+
+    /**
+     * Get the last login time in the system time zone
+     * @return last login time, or null if never logged in
+     */
+    public LocalDateTime getLastLogin() {
+        return toLocalDateTime(lastLoginMillis);
+    }
+
+    /**
+     * Convert a local date-time in the system time zone to epoch milliseconds
+     * @param time the time, may be null
+     * @return epoch milliseconds, or {@link #NO_TIME} for null
+     */
+    public static long toEpochMillis(LocalDateTime time) {
+        return time == null ? NO_TIME : time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Convert epoch milliseconds to a local date-time in the system time zone
+     * @param epochMillis epoch milliseconds, or {@link #NO_TIME}
+     * @return the local date-time, or null for {@link #NO_TIME}
+     */
+    public static LocalDateTime toLocalDateTime(long epochMillis) {
+        return epochMillis == NO_TIME ? null
+                : LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    @Override
+    public String toString() {
+        return "UserRecord{" +
+                "id=" + id +
+                ", username='" + username + '\'' +
+                ", email='" + email + '\'' +
+                ", createdAt=" + getCreatedAt() +
+                ", lastLogin=" + getLastLogin() +
+                ", version=" + version +
+                '}';
+    }
+}
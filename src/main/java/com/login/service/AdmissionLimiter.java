@@ -0,0 +1,215 @@
+package com.login.service;
+
+import com.login.util.ConfigUtil;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adaptive bound on how many service operations run at once.
+ * <p>
+ * The limit follows AIMD: each operation that finishes within the target latency while
+ * the limit was in use raises it by 1/limit (about one per round of requests), and each
+ * slow or failed one multiplies it by the backoff factor. When BCrypt saturates the cores
+ * or SQLite stalls, latency climbs, the limit falls and excess work is rejected at once
+ * with a {@link ServiceOverloadedException} instead of piling up.
+ * <p>
+ * High-priority work (logins) may wait briefly in a short queue for a slot. Low-priority
+ * work (registrations, password changes) never waits and only gets a share of the limit,
+ * and none while logins are queued, so logins keep getting through.
+ */
+public class AdmissionLimiter {
+
+    /**
+     * How urgently an operation needs a slot
+     */
+    public enum Priority {
+        HIGH, LOW
+    }
+
+    private static AdmissionLimiter instance;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+    private final double backoff;
+    private final double lowPriorityShare;
+    private final int maxQueue;
+    private final long queueTimeoutNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+    private final LongAdder rejected = new LongAdder();
+    private double limit;
+    private int inFlight;
+    private int queued;
+
+    /**
+     * Create a limiter
+     * @param initialLimit operations allowed at once to begin with
+     * @param minLimit lowest the limit may fall to
+     * @param maxLimit highest the limit may rise to
+     * @param targetLatencyMillis operations slower than this lower the limit
+     * @param backoff factor applied to the limit on a slow or failed operation, below 1
+     * @param lowPriorityShare share of the limit low-priority work may use, from 0 to 1
+     * @param maxQueue how many high-priority callers may wait for a slot
+     * @param queueTimeoutMillis how long a high-priority caller waits before being rejected
+     * @throws IllegalArgumentException if the settings are inconsistent
+     */
+    public AdmissionLimiter(int initialLimit, int minLimit, int maxLimit, long targetLatencyMillis,
+                            double backoff, double lowPriorityShare, int maxQueue, long queueTimeoutMillis) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Need 1 <= min <= initial <= max limit");
+        }
+        if (targetLatencyMillis <= 0 || backoff <= 0 || backoff >= 1) {
+            throw new IllegalArgumentException("Need a positive target latency and a backoff between 0 and 1");
+        }
+        if (lowPriorityShare < 0 || lowPriorityShare > 1 || maxQueue < 0 || queueTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Need a low-priority share from 0 to 1 and a non-negative queue");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.backoff = backoff;
+        this.lowPriorityShare = lowPriorityShare;
+        this.maxQueue = maxQueue;
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+    }
+
+    /**
+     * Get the limiter configured by service.limit.* in database.properties, creating it on first use
+     * @return the shared limiter, or null if service.limit.enabled is false
+     */
+    public static synchronized AdmissionLimiter getInstance() {
+        if (instance == null && ConfigUtil.getBoolean("service.limit.enabled", true)) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            int maxLimit = ConfigUtil.getInt("service.limit.max", 64);
+            instance = new AdmissionLimiter(Math.min(maxLimit, ConfigUtil.getInt("service.limit.initial", cores * 2)),
+                    ConfigUtil.getInt("service.limit.min", 1), maxLimit,
+                    ConfigUtil.getLong("service.limit.targetLatencyMs", 1000),
+                    Double.parseDouble(ConfigUtil.get("service.limit.backoff", "0.9")),
+                    Double.parseDouble(ConfigUtil.get("service.limit.lowPriorityShare", "0.5")),
+                    ConfigUtil.getInt("service.limit.maxQueue", 32),
+                    ConfigUtil.getLong("service.limit.queueTimeoutMs", 100));
+        }
+        return instance;
+    }
+
+    /**
+     * Take a slot for an operation, waiting briefly for one if it is high priority
+     * @param priority how urgently the operation needs a slot
+     * @param operation name of the operation, for the rejection message
+     * @return the start time to pass to {@link #release}
+     * @throws ServiceOverloadedException if no slot is free in time
+     */
+    public long acquire(Priority priority, String operation) throws ServiceOverloadedException {
+        lock.lock();
+        try {
+            if (priority == Priority.LOW) {
+                if (queued > 0 || inFlight >= Math.max(1, (int) (limit * lowPriorityShare))) {
+                    throw reject(operation);
+                }
+            } else if (inFlight >= (int) limit) {
+                if (queued >= maxQueue) {
+                    throw reject(operation);
+                }
+                queued++;
+                try {
+                    long remaining = queueTimeoutNanos;
+                    while (inFlight >= (int) limit) {
+                        if (remaining <= 0) {
+                            throw reject(operation);
+                        }
+                        remaining = slotFreed.awaitNanos(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw reject(operation);
+                } finally {
+                    queued--;
+                }
+            }
+            inFlight++;
+            return System.nanoTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Give back a slot and adjust the limit by how the operation went
+     * @param startedNanos what {@link #acquire} returned
+     * @param overloaded true if the operation failed in a way that suggests overload,
+     *                   e.g. a database timeout
+     */
+    public void release(long startedNanos, boolean overloaded) {
+        long elapsed = System.nanoTime() - startedNanos;
+        lock.lock();
+        try {
+            if (overloaded || elapsed > targetLatencyNanos) {
+                limit = Math.max(minLimit, limit * backoff);
+            } else if (inFlight >= limit / 2) {
+                // Only a limit that is being used has shown it can be raised
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            inFlight--;
+            slotFreed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get how many operations may currently run at once
+     * @return the current limit
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get how many operations hold a slot
+     * @return operations in flight
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get how many high-priority callers are waiting for a slot
+     * @return queue depth
+     */
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get how many operations have been rejected since the limiter was created
+     * @return rejection count
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    private ServiceOverloadedException reject(String operation) {
+        rejected.increment();
+        return new ServiceOverloadedException(operation, (int) limit, inFlight);
+    }
+}
@@ -0,0 +1,34 @@
+package com.login.service;
+
+import java.sql.SQLTransientException;
+
+/**
+ * Thrown when a request is shed because the service is already running as much
+ * work as it can take; retrying after a short pause may succeed
+ */
+public class ServiceOverloadedException extends SQLTransientException {
+
+    private final String operation;
+    private final int limit;
+    private final int inFlight;
+
+    public ServiceOverloadedException(String operation, int limit, int inFlight) {
+        super("Too many requests in progress, " + operation + " rejected (limit "
+                + limit + ", in flight " + inFlight + "); please try again shortly");
+        this.operation = operation;
+        this.limit = limit;
+        this.inFlight = inFlight;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+}
@@ -1,11 +1,23 @@
 package com.login.service;
 
 import com.login.dao.UserDAO;
-import com.login.dao.impl.UserDAOImpl;
+import com.login.dao.UserDAOFactory;
+import com.login.dao.VersionConflictException;
+import com.login.dao.impl.ActiveUserAnalytics;
+import com.login.dao.impl.LoginAuditLog;
+import com.login.model.LoginEvent;
 import com.login.model.User;
+import com.login.model.UserRecord;
+import com.login.util.ConfigUtil;
+import com.login.util.FlightEvents;
 import com.login.util.PasswordUtil;
+import com.login.util.UsernameUtil;
 
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -13,14 +25,93 @@ import java.util.Optional;
  */
 public class UserService {
     
+    private static final int MAX_UPDATE_ATTEMPTS = 5;
+    // SQLite primary result codes for a database held by another connection
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+    // Shorter queries only match prefixes; substrings that short have no index to use
+    private static final int MIN_SUBSTRING_QUERY = 3;
+    private static final String BREACHED_PASSWORD_MESSAGE =
+            "This password is too common or has appeared in a data breach; please choose another";
+    
     private final UserDAO userDAO;
+    private final LoginAuditLog auditLog;
+    private final ActiveUserAnalytics analytics;
+    private final AdmissionLimiter limiter;
+
+    /**
+     * A change applied to a user before it is saved
+     */
+    @FunctionalInterface
+    public interface UserModification {
+        void apply(User user);
+    }
+
+    /**
+     * Work run while holding an admission slot
+     */
+    @FunctionalInterface
+    private interface Work<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * Told how far a purge has got after each chunk
+     */
+    @FunctionalInterface
+    public interface PurgeProgress {
+        void onProgress(long deletedSoFar);
+    }
     
     public UserService() {
-        this.userDAO = new UserDAOImpl();
+        this(UserDAOFactory.getUserDAO(), LoginAuditLog.getInstance(), ActiveUserAnalytics.getInstance(),
+                AdmissionLimiter.getInstance());
     }
     
     public UserService(UserDAO userDAO) {
+        this(userDAO, null);
+    }
+
+    /**
+     * Create a service that records login attempts
+     * @param userDAO the user store
+     * @param auditLog where login attempts are recorded, or null to not record them
+     */
+    public UserService(UserDAO userDAO, LoginAuditLog auditLog) {
+        this(userDAO, auditLog, null);
+    }
+
+    /**
+     * Create a service that records login attempts and counts active users
+     * @param userDAO the user store
+     * @param auditLog where login attempts are recorded, or null to not record them
+     * @param analytics where successful logins are counted, or null to not count them
+     */
+    public UserService(UserDAO userDAO, LoginAuditLog auditLog, ActiveUserAnalytics analytics) {
+        this(userDAO, auditLog, analytics, null);
+    }
+
+    /**
+     * Create a service whose logins, registrations and password changes are admitted by a limiter
+     * @param userDAO the user store
+     * @param auditLog where login attempts are recorded, or null to not record them
+     * @param analytics where successful logins are counted, or null to not count them
+     * @param limiter bounds the operations in flight, or null for no bound
+     */
+    public UserService(UserDAO userDAO, LoginAuditLog auditLog, ActiveUserAnalytics analytics,
+                       AdmissionLimiter limiter) {
         this.userDAO = userDAO;
+        this.auditLog = auditLog;
+        this.analytics = analytics;
+        this.limiter = limiter;
+    }
+
+    /**
+     * Get the limiter admitting this service's operations, for its limit and queue depth
+     * @return the limiter, or null if operations are not limited
+     */
+    public AdmissionLimiter getAdmissionLimiter() {
+        return limiter;
     }
 
     /**
@@ -30,27 +121,48 @@ public class UserService {
      * @param email the email address
      * @return the created user
      * @throws IllegalArgumentException if validation fails
+     * @throws ServiceOverloadedException if the service is too busy to take a registration
      * @throws SQLException if database operation fails
      */
     public User registerUser(String username, String password, String email) 
             throws IllegalArgumentException, SQLException {
-        
-        // Validate input
-        validateUserInput(username, password, email);
-        
-        // Check if username already exists
-        if (userDAO.usernameExists(username)) {
-            throw new IllegalArgumentException("Username already exists");
+        return admit(AdmissionLimiter.Priority.LOW, "registerUser", () -> register(username, password, email));
+    }
+
+    private User register(String username, String password, String email) throws SQLException {
+        FlightEvents.ServiceOperation event = FlightEvents.ServiceOperation.start("registerUser");
+        String outcome = "ERROR";
+        try {
+            // Validate input
+            validateUserInput(username, password, email);
+            username = username.trim();
+            
+            // Check if username already exists (case-insensitively)
+            if (userDAO.usernameExists(username)) {
+                throw new IllegalArgumentException("Username already exists");
+            }
+            
+            // Check if email is already registered (case-insensitively)
+            if (userDAO.emailExists(email)) {
+                throw new IllegalArgumentException("Email already registered");
+            }
+            
+            // Hash the password
+            String hashedPassword = PasswordUtil.hashPassword(password);
+            
+            // Create user object
+            User user = new User(username, hashedPassword, email);
+            
+            // Save to database
+            User created = userDAO.createUser(user);
+            outcome = "SUCCESS";
+            return created;
+        } catch (IllegalArgumentException e) {
+            outcome = "REJECTED";
+            throw e;
+        } finally {
+            event.finish(username, outcome);
         }
-        
-        // Hash the password
-        String hashedPassword = PasswordUtil.hashPassword(password);
-        
-        // Create user object
-        User user = new User(username, hashedPassword, email);
-        
-        // Save to database
-        return userDAO.createUser(user);
     }
 
     /**
@@ -63,33 +175,132 @@ public class UserService {
      */
     public User authenticateUser(String username, String password) 
             throws IllegalArgumentException, SQLException {
-        
-        if (username == null || username.trim().isEmpty()) {
-            throw new IllegalArgumentException("Username cannot be empty");
+        return authenticate(username, password).toUser();
+    }
+
+    /**
+     * Authenticate a user, returning the compact record used on the login hot path
+     * @param username the username
+     * @param password the plain text password
+     * @return the authenticated user's record, as it was before this login
+     * @throws IllegalArgumentException if authentication fails
+     * @throws SQLException if database operation fails
+     */
+    public UserRecord authenticate(String username, String password) 
+            throws IllegalArgumentException, SQLException {
+        return authenticate(username, password, null);
+    }
+
+    /**
+     * Authenticate a user and record the attempt in the login audit trail
+     * @param username the username, or the email address the user registered with
+     * @param password the plain text password
+     * @param client where the attempt came from, e.g. a host or application name; may be null
+     * @return the authenticated user's record, as it was before this login
+     * @throws IllegalArgumentException if authentication fails
+     * @throws ServiceOverloadedException if the service is too busy to take a login
+     * @throws SQLException if database operation fails
+     */
+    public UserRecord authenticate(String username, String password, String client) 
+            throws IllegalArgumentException, SQLException {
+        return admit(AdmissionLimiter.Priority.HIGH, "authenticate", () -> login(username, password, client));
+    }
+
+    private UserRecord login(String username, String password, String client) throws SQLException {
+        FlightEvents.ServiceOperation event = FlightEvents.ServiceOperation.start("authenticate");
+        String outcome = "ERROR";
+        try {
+            if (username == null || username.trim().isEmpty()) {
+                outcome = "REJECTED";
+                throw new IllegalArgumentException("Username cannot be empty");
+            }
+            
+            if (password == null || password.trim().isEmpty()) {
+                outcome = "REJECTED";
+                throw new IllegalArgumentException("Password cannot be empty");
+            }
+            
+            // Find user by username, falling back to email for identifiers that look like one
+            username = username.trim();
+            Optional<UserRecord> recordOptional = userDAO.findRecordByUsername(username);
+            if (recordOptional.isEmpty() && username.indexOf('@') >= 0) {
+                recordOptional = userDAO.findRecordByEmail(username);
+            }
+            
+            if (recordOptional.isEmpty()) {
+                outcome = LoginEvent.Outcome.UNKNOWN_USER.name();
+                audit(username, LoginEvent.Outcome.UNKNOWN_USER, client);
+                throw new IllegalArgumentException("Invalid username or password");
+            }
+            
+            UserRecord record = recordOptional.get();
+            
+            // Verify password
+            if (!PasswordUtil.verifyPassword(password, record.getPasswordHash())) {
+                outcome = LoginEvent.Outcome.BAD_PASSWORD.name();
+                audit(username, LoginEvent.Outcome.BAD_PASSWORD, client);
+                throw new IllegalArgumentException("Invalid username or password");
+            }
+            
+            // Update last login time
+            userDAO.updateLastLogin(record.getUsername());
+            audit(username, LoginEvent.Outcome.SUCCESS, client);
+            if (analytics != null) {
+                analytics.recordLogin(record.getId());
+            }
+            
+            outcome = LoginEvent.Outcome.SUCCESS.name();
+            return record;
+        } finally {
+            event.finish(username, outcome);
         }
-        
-        if (password == null || password.trim().isEmpty()) {
-            throw new IllegalArgumentException("Password cannot be empty");
+    }
+
+    /**
+     * Run work once the limiter admits it. Failures caused by load (see
+     * {@link #isOverload}) lower the limit; rejected requests do not.
+     */
+    private <T> T admit(AdmissionLimiter.Priority priority, String operation, Work<T> work) throws SQLException {
+        if (limiter == null) {
+            return work.run();
         }
-        
-        // Find user by username
-        Optional<User> userOptional = userDAO.findByUsername(username.trim());
-        
-        if (userOptional.isEmpty()) {
-            throw new IllegalArgumentException("Invalid username or password");
+        long started = limiter.acquire(priority, operation);
+        boolean overloaded = false;
+        try {
+            return work.run();
+        } catch (SQLException e) {
+            overloaded = isOverload(e);
+            throw e;
+        } finally {
+            limiter.release(started, overloaded);
         }
-        
-        User user = userOptional.get();
-        
-        // Verify password
-        if (!PasswordUtil.verifyPassword(password, user.getPassword())) {
-            throw new IllegalArgumentException("Invalid username or password");
+    }
+
+    /**
+     * Whether a failure means the database could not keep up: a timeout (a pooled
+     * connection, a statement) or SQLite reporting busy or locked, possibly wrapped by the
+     * write queue. Constraint violations, version conflicts and requests shed by another
+     * limiter are answers about the request, not signs of load.
+     */
+    static boolean isOverload(SQLException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTimeoutException) {
+                return true;
+            }
+            if (cause instanceof SQLException) {
+                int code = ((SQLException) cause).getErrorCode();
+                if (code == SQLITE_BUSY || code == SQLITE_LOCKED) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void audit(String username, LoginEvent.Outcome outcome, String client) {
+        if (auditLog != null) {
+            auditLog.record(username, outcome, client);
         }
-        
-        // Update last login time
-        userDAO.updateLastLogin(username);
-        
-        return user;
     }
 
     /**
@@ -99,25 +310,138 @@ public class UserService {
      * @param newPassword the new password
      * @return true if password was changed successfully
      * @throws IllegalArgumentException if validation fails
+     * @throws ServiceOverloadedException if the service is too busy to take a password change
      * @throws SQLException if database operation fails
      */
     public boolean changePassword(String username, String oldPassword, String newPassword) 
             throws IllegalArgumentException, SQLException {
-        
-        // Authenticate with old password first
-        User user = authenticateUser(username, oldPassword);
-        
-        // Validate new password
-        if (!PasswordUtil.isValidPassword(newPassword)) {
-            throw new IllegalArgumentException(PasswordUtil.getPasswordRequirements());
+        return admit(AdmissionLimiter.Priority.LOW, "changePassword",
+                () -> replacePassword(username, oldPassword, newPassword));
+    }
+
+    private boolean replacePassword(String username, String oldPassword, String newPassword) throws SQLException {
+        FlightEvents.ServiceOperation event = FlightEvents.ServiceOperation.start("changePassword");
+        String outcome = "ERROR";
+        try {
+            // Authenticate with old password first
+            User user = login(username, oldPassword, null).toUser();
+            String verifiedHash = user.getPassword();
+            
+            // Validate new password
+            if (!PasswordUtil.isValidPassword(newPassword)) {
+                throw new IllegalArgumentException(PasswordUtil.getPasswordRequirements());
+            }
+            if (PasswordUtil.isBreached(newPassword)) {
+                throw new IllegalArgumentException(BREACHED_PASSWORD_MESSAGE);
+            }
+            
+            // Hash new password
+            String hashedNewPassword = PasswordUtil.hashPassword(newPassword);
+            
+            // Update in database; if the password changed under us, the old one must still match
+            boolean changed = updateWithRetry(user, current -> {
+                if (!verifiedHash.equals(current.getPassword())
+                        && !PasswordUtil.verifyPassword(oldPassword, current.getPassword())) {
+                    throw new IllegalArgumentException("Invalid username or password");
+                }
+                current.setPassword(hashedNewPassword);
+            });
+            outcome = changed ? "SUCCESS" : "NOT_FOUND";
+            return changed;
+        } catch (IllegalArgumentException e) {
+            outcome = "REJECTED";
+            throw e;
+        } finally {
+            event.finish(username, outcome);
+        }
+    }
+
+    /**
+     * Apply a modification to a user and save it with optimistic concurrency.
+     * When the stored version has moved on, the user is re-read and the
+     * modification re-applied to the fresh copy, up to a bounded number of attempts.
+     * @param user the user as last read
+     * @param modification the change to apply; may throw IllegalArgumentException to abort
+     * @return true if the update was saved, false if the user no longer exists
+     * @throws VersionConflictException if every attempt lost to a concurrent update
+     * @throws SQLException if database operation fails
+     */
+    public boolean updateWithRetry(User user, UserModification modification) throws SQLException {
+        User current = user;
+        for (int attempt = 1; ; attempt++) {
+            modification.apply(current);
+            try {
+                return userDAO.updateUser(current);
+            } catch (VersionConflictException e) {
+                if (attempt >= MAX_UPDATE_ATTEMPTS) {
+                    throw e;
+                }
+                Optional<User> fresh = userDAO.findById(current.getId());
+                if (fresh.isEmpty()) {
+                    return false;
+                }
+                current = fresh.get();
+            }
+        }
+    }
+
+    /**
+     * Delete users who have not logged in since the cutoff, with the chunk size and pause
+     * from db.purge.* in database.properties
+     * @param cutoff users last active before this time are deleted
+     * @param progress told the running total after each chunk; may be null
+     * @return the number of users deleted
+     * @throws SQLException if database operation fails
+     */
+    public long purgeInactiveUsers(LocalDateTime cutoff, PurgeProgress progress) throws SQLException {
+        return purgeInactiveUsers(cutoff, ConfigUtil.getInt("db.purge.chunkSize", 500),
+                ConfigUtil.getLong("db.purge.pauseMs", 50), progress);
+    }
+
+    /**
+     * Delete users who have not logged in since the cutoff. Each chunk is one short write,
+     * and the purge sleeps between chunks so logins and registrations keep getting through.
+     * Once done the store is asked to give the freed space back. Interrupting the calling
+     * thread stops the purge after the current chunk.
+     * @param cutoff users last active before this time are deleted
+     * @param chunkSize how many users one write deletes
+     * @param pauseMillis how long to wait between chunks
+     * @param progress told the running total after each chunk; may be null
+     * @return the number of users deleted
+     * @throws IllegalArgumentException if the cutoff is missing or the chunk size not positive
+     * @throws SQLException if database operation fails
+     */
+    public long purgeInactiveUsers(LocalDateTime cutoff, int chunkSize, long pauseMillis,
+                                   PurgeProgress progress) throws SQLException {
+        if (cutoff == null) {
+            throw new IllegalArgumentException("Cutoff cannot be empty");
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
         }
         
-        // Hash new password
-        String hashedNewPassword = PasswordUtil.hashPassword(newPassword);
-        user.setPassword(hashedNewPassword);
+        long total = 0;
+        int deleted;
+        do {
+            deleted = userDAO.deleteInactiveUsers(cutoff, chunkSize);
+            total += deleted;
+            if (progress != null) {
+                progress.onProgress(total);
+            }
+            if (deleted == chunkSize && pauseMillis > 0) {
+                try {
+                    Thread.sleep(pauseMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        } while (deleted == chunkSize && !Thread.currentThread().isInterrupted());
         
-        // Update in database
-        return userDAO.updateUser(user);
+        if (total > 0) {
+            userDAO.reclaimSpace();
+        }
+        return total;
     }
 
     /**
@@ -133,6 +457,68 @@ public class UserService {
         return userDAO.findByUsername(username.trim());
     }
 
+    /**
+     * Get user by email address, ignoring case
+     * @param email the email address
+     * @return the user if found
+     * @throws SQLException if database operation fails
+     */
+    public Optional<User> getUserByEmail(String email) throws SQLException {
+        if (email == null || email.trim().isEmpty()) {
+            return Optional.empty();
+        }
+        return userDAO.findByEmail(email);
+    }
+
+    /**
+     * Check if an email address is not yet registered
+     * @param email the email address to check
+     * @return true if the email is available, false otherwise
+     * @throws SQLException if database operation fails
+     */
+    public boolean isEmailAvailable(String email) throws SQLException {
+        if (email == null || email.trim().isEmpty()) {
+            return false;
+        }
+        return !userDAO.emailExists(email);
+    }
+
+    /**
+     * Get one page of users in ascending id order, for browsing without loading every user
+     * @param afterId only users with a greater id are returned; 0 for the first page
+     * @param limit maximum number of users to return
+     * @return the page; pass the last id as afterId to get the next one
+     * @throws SQLException if database operation fails
+     */
+    public List<User> listUsers(long afterId, int limit) throws SQLException {
+        return userDAO.findUsersAfter(afterId, limit);
+    }
+
+    /**
+     * Suggest users for a partly typed username: usernames starting with the query first,
+     * in username order, then usernames containing it elsewhere, oldest account first
+     * @param query the text typed so far
+     * @param limit maximum number of users to return
+     * @return the matching users, best first
+     * @throws SQLException if database operation fails
+     */
+    public List<User> suggestUsers(String query, int limit) throws SQLException {
+        if (query == null || query.trim().isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        String key = UsernameUtil.normalize(query);
+        List<User> users = userDAO.findUsersByPrefix(key, null, limit);
+        if (users.size() < limit && key.length() >= MIN_SUBSTRING_QUERY) {
+            // At most users.size() of these are prefix matches already listed
+            for (User user : userDAO.findUsersContaining(key, 0, limit)) {
+                if (users.size() < limit && !UsernameUtil.normalize(user.getUsername()).startsWith(key)) {
+                    users.add(user);
+                }
+            }
+        }
+        return users;
+    }
+
     /**
      * Check if username is available
      * @param username the username to check
@@ -168,10 +554,19 @@ public class UserService {
             throw new IllegalArgumentException("Username cannot be longer than 50 characters");
         }
         
+        // Login treats identifiers with '@' as emails, so a username must not look like one
+        if (username.indexOf('@') >= 0) {
+            throw new IllegalArgumentException("Username cannot contain '@'");
+        }
+        
         if (!PasswordUtil.isValidPassword(password)) {
             throw new IllegalArgumentException(PasswordUtil.getPasswordRequirements());
         }
         
+        if (PasswordUtil.isBreached(password)) {
+            throw new IllegalArgumentException(BREACHED_PASSWORD_MESSAGE);
+        }
+        
         if (email != null && !email.trim().isEmpty() && !isValidEmail(email)) {
             throw new IllegalArgumentException("Invalid email format");
         }
@@ -0,0 +1,118 @@
+package com.login.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Utility class for reading settings from database.properties
+ * <p>
+ * {@link ConfigWatcher} swaps in a new set of properties when the file changes;
+ * each read sees either the old or the new file, never a mix.
+ */
+public class ConfigUtil {
+
+    private static final String DB_PROPERTIES_FILE = "database.properties";
+    private static volatile Properties properties = loadProperties();
+
+    /**
+     * Load the configuration file named by -Dconfig.file, or else from the classpath
+     */
+    private static Properties loadProperties() {
+        Properties props = new Properties();
+        String override = System.getProperty("config.file");
+        try (InputStream input = override != null ? Files.newInputStream(Paths.get(override))
+                : ConfigUtil.class.getClassLoader().getResourceAsStream(DB_PROPERTIES_FILE)) {
+            if (input != null) {
+                props.load(input);
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading database properties: " + e.getMessage());
+            // Fall through to default values
+        }
+        return props;
+    }
+
+    /**
+     * Get a string setting
+     * @param key the property name
+     * @param defaultValue value used when the property is not set
+     * @return the configured or default value
+     */
+    public static String get(String key, String defaultValue) {
+        return properties.getProperty(key, defaultValue).trim();
+    }
+
+    /**
+     * Get an integer setting
+     * @param key the property name
+     * @param defaultValue value used when the property is not set
+     * @return the configured or default value
+     */
+    public static int getInt(String key, int defaultValue) {
+        return Integer.parseInt(get(key, String.valueOf(defaultValue)));
+    }
+
+    /**
+     * Get a long setting
+     * @param key the property name
+     * @param defaultValue value used when the property is not set
+     * @return the configured or default value
+     */
+    public static long getLong(String key, long defaultValue) {
+        return Long.parseLong(get(key, String.valueOf(defaultValue)));
+    }
+
+    /**
+     * Get a boolean setting
+     * @param key the property name
+     * @param defaultValue value used when the property is not set
+     * @return the configured or default value
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(get(key, String.valueOf(defaultValue)));
+    }
+
+    /**
+     * Get a copy of every setting currently in effect
+     * @return the properties
+     */
+    public static Properties getAll() {
+        Properties copy = new Properties();
+        copy.putAll(properties);
+        return copy;
+    }
+
+    /**
+     * Locate database.properties on the file system, for watching it
+     * @return the file, or null if it is packaged in a jar or missing
+     */
+    public static Path getPropertiesFile() {
+        String override = System.getProperty("config.file");
+        if (override != null) {
+            return Paths.get(override);
+        }
+        URL url = ConfigUtil.class.getClassLoader().getResource(DB_PROPERTIES_FILE);
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return Paths.get(url.toURI());
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Replace every setting at once
+     * @param replacement the new properties
+     */
+    static void replace(Properties replacement) {
+        properties = replacement;
+    }
+}
@@ -0,0 +1,153 @@
+package com.login.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Reloads database.properties when it changes on disk, without a restart.
+ * <p>
+ * A daemon thread watches the file's directory. After a change the whole file is read
+ * and parsed into a {@link TuningConfig}; if any value is invalid the change is rejected
+ * and the previous settings stay in effect. Otherwise ConfigUtil switches to the new
+ * file in one step and every listener is told, in registration order, so the read pool,
+ * write queue and password hasher pick up new sizes, batch windows and cost. Settings
+ * read when a component is built, such as db.url or db.backend, still need a restart.
+ */
+public class ConfigWatcher implements AutoCloseable {
+
+    private static final long SETTLE_MILLIS = 100;
+    private static ConfigWatcher instance;
+
+    private final Path file;
+    private final WatchService watchService;
+    private final List<Consumer<TuningConfig>> listeners = new CopyOnWriteArrayList<>();
+    private final Thread watcherThread;
+    private volatile TuningConfig effective;
+
+    /**
+     * Start watching a properties file
+     * @param file the file to watch
+     * @throws IOException if the directory cannot be watched
+     */
+    public ConfigWatcher(Path file) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.effective = TuningConfig.current();
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        this.watcherThread = new Thread(this::watch, "config-watcher");
+        this.watcherThread.setDaemon(true);
+        this.watcherThread.start();
+    }
+
+    /**
+     * Get the watcher for database.properties, applying changes to the default database
+     * and the password hasher
+     * @return the shared watcher, or null if the file is not on the file system
+     */
+    public static synchronized ConfigWatcher getInstance() {
+        Path file = ConfigUtil.getPropertiesFile();
+        if (instance == null && file != null) {
+            try {
+                instance = new ConfigWatcher(file);
+                instance.addListener(config -> PasswordUtil.setBcryptRounds(config.getBcryptRounds()));
+                instance.addListener(DatabaseUtil.getDatabase()::applyTuning);
+            } catch (IOException e) {
+                System.err.println("Cannot watch " + file + ": " + e.getMessage());
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Register a component to be told about every accepted change
+     * @param listener receives the new settings
+     */
+    public void addListener(Consumer<TuningConfig> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Get the settings currently in effect
+     * @return the last accepted settings
+     */
+    public TuningConfig getEffective() {
+        return effective;
+    }
+
+    /**
+     * Read the file now and apply it if it is valid and different
+     * @return true if new settings were applied
+     */
+    public synchronized boolean reload() {
+        Properties props = new Properties();
+        TuningConfig config;
+        try (InputStream input = Files.newInputStream(file)) {
+            props.load(input);
+            config = TuningConfig.from(props);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Ignoring change to " + file + ": " + e.getMessage());
+            return false;
+        }
+        if (props.equals(ConfigUtil.getAll())) {
+            return false;
+        }
+        ConfigUtil.replace(props);
+        effective = config;
+        for (Consumer<TuningConfig> listener : listeners) {
+            try {
+                listener.accept(config);
+            } catch (RuntimeException e) {
+                System.err.println("Error applying configuration: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stop watching
+     */
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("Error closing config watcher: " + e.getMessage());
+        }
+        watcherThread.interrupt();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                do {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        changed |= file.getFileName().equals(event.context());
+                    }
+                    key.reset();
+                    // Editors often write a file in several steps; wait for them to finish
+                    Thread.sleep(SETTLE_MILLIS);
+                } while ((key = watchService.poll()) != null);
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.login.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Opens new physical database connections
+ */
+@FunctionalInterface
+public interface ConnectionFactory {
+
+    /**
+     * Open a new connection
+     * @return the connection
+     * @throws SQLException if the connection cannot be opened
+     */
+    Connection open() throws SQLException;
+}
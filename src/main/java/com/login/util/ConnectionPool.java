@@ -0,0 +1,196 @@
+package com.login.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of reusable database connections.
+ * <p>
+ * Connections are opened lazily up to the configured size. A borrowed connection
+ * is handed out behind a proxy whose {@code close()} returns it to the pool, so
+ * callers keep using try-with-resources exactly as with a plain connection.
+ */
+public class ConnectionPool {
+
+    private final ConnectionFactory connectionFactory;
+    private volatile int maxSize;
+    private volatile long acquireTimeoutMillis;
+    private final BlockingQueue<Connection> idle = new LinkedBlockingQueue<>();
+    private final AtomicInteger opened = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+
+    /**
+     * Create a connection pool
+     * @param connectionFactory opens new physical connections
+     * @param maxSize maximum number of physical connections
+     * @param acquireTimeoutMillis how long to wait for a free connection
+     */
+    public ConnectionPool(ConnectionFactory connectionFactory, int maxSize, long acquireTimeoutMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.connectionFactory = connectionFactory;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+
+    /**
+     * Borrow a connection from the pool
+     * @return a connection that is returned to the pool when closed
+     * @throws SQLException if no connection becomes available in time or opening one fails
+     */
+    public Connection getConnection() throws SQLException {
+        FlightEvents.ConnectionAcquire event = FlightEvents.ConnectionAcquire.start();
+        Connection physical = idle.poll();
+        if (physical == null) {
+            try {
+                physical = openOrWait();
+            } catch (SQLException | RuntimeException e) {
+                event.finish(true, inUse.get(), false);
+                throw e;
+            }
+        }
+        event.finish(true, inUse.incrementAndGet(), true);
+        return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new PooledConnectionHandler(physical));
+    }
+
+    /**
+     * Get the maximum number of connections
+     * @return pool size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Resize the pool. Growing takes effect at once; when shrinking, surplus connections
+     * are closed as they are returned instead of being kept idle.
+     * @param maxSize maximum number of physical connections
+     * @param acquireTimeoutMillis how long to wait for a free connection
+     */
+    public void resize(int maxSize, long acquireTimeoutMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        Connection conn;
+        while (opened.get() > maxSize && (conn = idle.poll()) != null) {
+            opened.decrementAndGet();
+            Database.closeConnection(conn);
+        }
+    }
+
+    /**
+     * Get the number of connections currently borrowed
+     * @return connections in use
+     */
+    public int getInUse() {
+        return inUse.get();
+    }
+
+    /**
+     * Close all idle connections; borrowed connections are closed when returned
+     */
+    public void close() {
+        Connection conn;
+        while ((conn = idle.poll()) != null) {
+            opened.decrementAndGet();
+            Database.closeConnection(conn);
+        }
+    }
+
+    private Connection openOrWait() throws SQLException {
+        while (true) {
+            int current = opened.get();
+            if (current < maxSize) {
+                if (opened.compareAndSet(current, current + 1)) {
+                    try {
+                        return connectionFactory.open();
+                    } catch (SQLException | RuntimeException e) {
+                        opened.decrementAndGet();
+                        throw e;
+                    }
+                }
+                continue;
+            }
+            try {
+                Connection conn = idle.poll(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+                if (conn == null) {
+                    throw new SQLTimeoutException("Timed out waiting for a pooled connection");
+                }
+                return conn;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a pooled connection", e);
+            }
+        }
+    }
+
+    private void release(Connection physical) {
+        inUse.decrementAndGet();
+        boolean reusable;
+        try {
+            reusable = !physical.isClosed() && physical.getAutoCommit();
+        } catch (SQLException e) {
+            reusable = false;
+        }
+        if (reusable && opened.get() <= maxSize) {
+            idle.add(physical);
+        } else {
+            opened.decrementAndGet();
+            Database.closeConnection(physical);
+        }
+    }
+
+    /**
+     * Forwards calls to the physical connection and intercepts close()
+     */
+    private class PooledConnectionHandler implements InvocationHandler {
+        private final Connection physical;
+        private boolean closed;
+
+        PooledConnectionHandler(Connection physical) {
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(physical);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + physical;
+                default:
+                    if (closed) {
+                        throw new SQLException("Connection is closed");
+                    }
+                    try {
+                        return method.invoke(physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package com.login.util;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.sqlite.SQLiteConfig;
+
+/**
+ * One SQLite database file with its schema, single-writer queue and read-only pool.
+ * <p>
+ * {@link DatabaseUtil} holds the instance configured by {@code db.url}; the sharded
+ * backend opens one instance per shard file.
+ */
+public class Database {
+
+    private static final int INCREMENTAL_VACUUM = 2;
+
+    /**
+     * Schema migrations applied in order on top of the base users table.
+     * PRAGMA user_version records how many have run; append new entries, never edit old ones.
+     */
+    private static final Migration[] MIGRATIONS = {
+        // 1: row version for optimistic concurrency on updateUser
+        sql("ALTER TABLE users ADD COLUMN version INTEGER NOT NULL DEFAULT 0"),
+        // 2: normalized, case-insensitive username key
+        Database::addUsernameKey,
+        // 3: change-data-capture outbox, written in the same transaction as each user change
+        sql("CREATE TABLE user_changes (" +
+                "seq INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "user_id INTEGER NOT NULL, " +
+                "change_type TEXT NOT NULL, " +
+                "username TEXT, " +
+                "version INTEGER NOT NULL, " +
+                "changed_at INTEGER NOT NULL)"),
+        // 4: login audit trail, appended in batches and trimmed by occurred_at
+        sql("CREATE TABLE login_events (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "username TEXT NOT NULL COLLATE NOCASE, " +
+                "outcome TEXT NOT NULL, " +
+                "client TEXT, " +
+                "occurred_at INTEGER NOT NULL)",
+            "CREATE INDEX idx_login_events_occurred_at ON login_events (occurred_at)",
+            "CREATE INDEX idx_login_events_username ON login_events (username, occurred_at)"),
+        // 5: per-day active user sketches, and the last_login index behind the exact count
+        sql("CREATE TABLE active_user_sketches (" +
+                "day INTEGER PRIMARY KEY, " +
+                "registers BLOB NOT NULL)",
+            "CREATE INDEX idx_users_last_login ON users (last_login)"),
+        // 6: lets the newest-first listings walk an index instead of sorting the whole table
+        sql("CREATE INDEX idx_users_created_at ON users (created_at)"),
+        // 7: normalized email key, unique where present, for lookups and login by email
+        Database::addEmailKey,
+        // 8: trigram index over username_key for substring search, kept in step by triggers
+        sql("CREATE VIRTUAL TABLE users_search USING fts5(" +
+                "username_key, content='users', content_rowid='id', tokenize='trigram')",
+            "CREATE TRIGGER users_search_insert AFTER INSERT ON users BEGIN " +
+                "INSERT INTO users_search (rowid, username_key) VALUES (new.id, new.username_key); END",
+            "CREATE TRIGGER users_search_delete AFTER DELETE ON users BEGIN " +
+                "INSERT INTO users_search (users_search, rowid, username_key) " +
+                "VALUES ('delete', old.id, old.username_key); END",
+            "CREATE TRIGGER users_search_update AFTER UPDATE OF username_key ON users BEGIN " +
+                "INSERT INTO users_search (users_search, rowid, username_key) " +
+                "VALUES ('delete', old.id, old.username_key); " +
+                "INSERT INTO users_search (rowid, username_key) VALUES (new.id, new.username_key); END",
+            "INSERT INTO users_search (users_search) VALUES ('rebuild')"),
+    };
+
+    /**
+     * A single schema migration step, run inside its own transaction
+     */
+    @FunctionalInterface
+    private interface Migration {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final WriteQueue writeQueue;
+    private final ConnectionPool readPool;
+
+    /**
+     * Open a database, creating and migrating the schema as needed
+     * @param url the JDBC url
+     * @param user the database user
+     * @param password the database password
+     * @param journalMode the SQLite journal mode, normally WAL
+     * @param writeBatchWindowMillis how long the writer waits for more mutations to group
+     * @param writeMaxBatchSize how many mutations the writer commits at once
+     * @param readPoolSize number of read-only connections
+     * @param readPoolTimeoutMillis how long to wait for a free read connection
+     */
+    public Database(String url, String user, String password, String journalMode,
+                    long writeBatchWindowMillis, int writeMaxBatchSize,
+                    int readPoolSize, long readPoolTimeoutMillis) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        initialize(journalMode);
+        this.writeQueue = new WriteQueue(this::getConnection, writeBatchWindowMillis, writeMaxBatchSize);
+        this.readPool = new ConnectionPool(this::openReadOnlyConnection, readPoolSize, readPoolTimeoutMillis);
+    }
+
+    /**
+     * Open a database with the pool and writer settings from database.properties
+     * @param url the JDBC url
+     * @return the opened database
+     */
+    public static Database fromConfig(String url) {
+        return new Database(url,
+                ConfigUtil.get("db.user", ""),
+                ConfigUtil.get("db.password", ""),
+                ConfigUtil.get("db.journalMode", "WAL"),
+                ConfigUtil.getLong("db.write.batchWindowMs", 2),
+                ConfigUtil.getInt("db.write.maxBatchSize", 256),
+                ConfigUtil.getInt("db.pool.readers", 4),
+                ConfigUtil.getLong("db.pool.acquireTimeoutMs", 5000));
+    }
+
+    /**
+     * Get the JDBC url of this database
+     * @return the url
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Get a new read-write connection
+     * @return Connection object
+     * @throws SQLException if connection fails
+     */
+    public Connection getConnection() throws SQLException {
+        loadDriver();
+        FlightEvents.ConnectionAcquire event = FlightEvents.ConnectionAcquire.start();
+        boolean succeeded = false;
+        try {
+            Connection conn = DriverManager.getConnection(url, user, password);
+            succeeded = true;
+            return conn;
+        } finally {
+            event.finish(false, 0, succeeded);
+        }
+    }
+
+    /**
+     * Get a pooled read-only connection for lookups.
+     * Closing the returned connection hands it back to the pool.
+     * @return Connection object
+     * @throws SQLException if no connection is available
+     */
+    public Connection getReadConnection() throws SQLException {
+        return readPool.getConnection();
+    }
+
+    /**
+     * Get the pool serving read-only connections
+     * @return the read pool
+     */
+    public ConnectionPool getReadPool() {
+        return readPool;
+    }
+
+    /**
+     * Get the single-writer queue that all mutations go through
+     * @return the write queue
+     */
+    public WriteQueue getWriteQueue() {
+        return writeQueue;
+    }
+
+    /**
+     * Apply new pool and write batching settings to the running database
+     * @param config the settings
+     */
+    public void applyTuning(TuningConfig config) {
+        readPool.resize(config.getPoolReaders(), config.getPoolAcquireTimeoutMillis());
+        writeQueue.setBatching(config.getWriteBatchWindowMillis(), config.getWriteMaxBatchSize());
+    }
+
+    /**
+     * Shrink the file after large deletes. A database in incremental auto-vacuum mode
+     * releases its free pages through the write queue; any other database gets a full
+     * VACUUM, which also switches it to incremental mode for next time. The full VACUUM
+     * rewrites the whole file and blocks writers while it runs, so call this off-peak.
+     * @throws SQLException if vacuuming fails
+     */
+    public void reclaimSpace() throws SQLException {
+        int autoVacuum;
+        try (Connection conn = getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA auto_vacuum")) {
+            autoVacuum = rs.next() ? rs.getInt(1) : 0;
+        }
+        if (autoVacuum == INCREMENTAL_VACUUM) {
+            writeQueue.execute(conn -> {
+                try (Statement stmt = conn.createStatement()) {
+                    // Each step frees one page; executeUpdate steps to the end, execute would stop after one
+                    return stmt.executeUpdate("PRAGMA incremental_vacuum");
+                }
+            });
+            return;
+        }
+        // VACUUM cannot run inside the write queue's transaction
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            stmt.execute("VACUUM");
+        }
+    }
+
+    /**
+     * Stop the writer and close idle read connections
+     */
+    public void close() {
+        writeQueue.shutdown();
+        readPool.close();
+    }
+
+    /**
+     * Close database connection safely
+     * @param connection the connection to close
+     */
+    public static void closeConnection(Connection connection) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing database connection: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Open a connection with SQLITE_OPEN_READONLY and query_only set,
+     * so a routing mistake fails loudly instead of writing around the writer
+     */
+    private Connection openReadOnlyConnection() throws SQLException {
+        loadDriver();
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        Properties props = config.toProperties();
+        props.setProperty("user", user);
+        props.setProperty("password", password);
+        Connection conn = DriverManager.getConnection(url, props);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA query_only = ON");
+        } catch (SQLException e) {
+            closeConnection(conn);
+            throw e;
+        }
+        return conn;
+    }
+
+    private static void loadDriver() throws SQLException {
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("SQLite JDBC driver not found", e);
+        }
+    }
+
+    /**
+     * Initialize the database with required tables
+     */
+    private void initialize(String journalMode) {
+        String createUsersTable = "CREATE TABLE IF NOT EXISTS users (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "username VARCHAR(50) UNIQUE NOT NULL, " +
+                "password VARCHAR(255) NOT NULL, " +
+                "email VARCHAR(100), " +
+                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "last_login TIMESTAMP" +
+                ")";
+
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
+            // Only takes effect on a new file; lets reclaimSpace free pages without a full VACUUM
+            stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            // WAL lets the read-only pool run lookups while the writer commits
+            stmt.execute("PRAGMA journal_mode = " + journalMode);
+            stmt.execute(createUsersTable);
+            applyMigrations(conn);
+            System.out.println("Database initialized successfully");
+        } catch (SQLException e) {
+            System.err.println("Error initializing database: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Bring the schema up to date by running every migration newer than PRAGMA user_version
+     * @param conn the connection to migrate through
+     * @throws SQLException if a migration fails; that migration is rolled back
+     */
+    private static void applyMigrations(Connection conn) throws SQLException {
+        int current;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            current = rs.next() ? rs.getInt(1) : 0;
+        }
+
+        for (int version = current; version < MIGRATIONS.length; version++) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                MIGRATIONS[version].apply(conn);
+                stmt.execute("PRAGMA user_version = " + (version + 1));
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw new SQLException("Schema migration " + (version + 1) + " failed", e);
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static Migration sql(String... statements) {
+        return conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                for (String sql : statements) {
+                    stmt.execute(sql);
+                }
+            }
+        };
+    }
+
+    /**
+     * Add users.username_key, backfill it with UsernameUtil.normalize and index it.
+     * The backfill runs in Java so existing rows get exactly the key the DAO will look up.
+     */
+    private static void addUsernameKey(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE users ADD COLUMN username_key TEXT COLLATE NOCASE");
+        }
+
+        Map<String, Long> seen = new HashMap<>();
+        try (Statement select = conn.createStatement();
+             ResultSet rs = select.executeQuery("SELECT id, username FROM users");
+             PreparedStatement update = conn.prepareStatement("UPDATE users SET username_key = ? WHERE id = ?")) {
+            while (rs.next()) {
+                long id = rs.getLong(1);
+                String key = UsernameUtil.normalize(rs.getString(2));
+                Long other = seen.putIfAbsent(key, id);
+                if (other != null) {
+                    throw new SQLException("Users " + other + " and " + id
+                            + " differ only in case or whitespace (\"" + key + "\"); rename one before upgrading");
+                }
+                update.setString(1, key);
+                update.setLong(2, id);
+                update.addBatch();
+            }
+            update.executeBatch();
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE UNIQUE INDEX IF NOT EXISTS idx_users_username_key ON users (username_key COLLATE NOCASE)");
+        }
+    }
+
+    /**
+     * Add users.email_key, backfill it with EmailUtil.normalize and index it uniquely where set.
+     * Emails were never unique before, so when several users share one only the oldest
+     * account gets the key; the others keep their email but cannot be found or log in by it.
+     */
+    private static void addEmailKey(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE users ADD COLUMN email_key TEXT");
+        }
+
+        Map<String, Long> seen = new HashMap<>();
+        int shared = 0;
+        try (Statement select = conn.createStatement();
+             ResultSet rs = select.executeQuery("SELECT id, email FROM users WHERE email IS NOT NULL ORDER BY id");
+             PreparedStatement update = conn.prepareStatement("UPDATE users SET email_key = ? WHERE id = ?")) {
+            while (rs.next()) {
+                long id = rs.getLong(1);
+                String key = EmailUtil.normalize(rs.getString(2));
+                if (key == null) {
+                    continue;
+                }
+                if (seen.putIfAbsent(key, id) != null) {
+                    shared++;
+                    continue;
+                }
+                update.setString(1, key);
+                update.setLong(2, id);
+                update.addBatch();
+            }
+            update.executeBatch();
+        }
+        if (shared > 0) {
+            System.err.println(shared + " users share an email with an older account; only the oldest can use it to log in");
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE UNIQUE INDEX idx_users_email_key ON users (email_key) WHERE email_key IS NOT NULL");
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.login.util;
+
+import java.util.Locale;
+
+/**
+ * Utility class for email normalization
+ */
+public class EmailUtil {
+
+    /**
+     * Get the lookup key for an email address: trimmed and lower-cased, so that
+     * "Alice@Example.com " and "alice@example.com" belong to the same account
+     * @param email the email as entered or stored
+     * @return the normalized key, or null if email is null or blank
+     */
+    public static String normalize(String email) {
+        if (email == null || email.trim().isEmpty()) {
+            return null;
+        }
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,230 @@
+package com.login.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JDK Flight Recorder events for the login pipeline.
+ * <p>
+ * Each stage of a login or registration (connection acquire, DAO query, BCrypt and the
+ * service call around them) is timed by its own event, so a slow login in a recording
+ * can be attributed to one of them. Events carry a hash of the normalized username
+ * rather than the name itself. Fields are only filled in when the event will be
+ * committed, so with recording off an event costs a constructor the JIT removes.
+ * <p>
+ * Enable them with the bundled profile, e.g.
+ * {@code -XX:StartFlightRecording:settings=default,settings=src/main/resources/login.jfc}.
+ */
+public final class FlightEvents {
+
+    private static final String CATEGORY = "Login System";
+
+    private FlightEvents() {
+    }
+
+    /**
+     * Hash a username for correlating events without recording it
+     * @param username the username as entered; may be null
+     * @return 64-bit FNV-1a hash of the normalized username, or 0 for null
+     */
+    public static long usernameHash(String username) {
+        String key = UsernameUtil.normalize(username);
+        if (key == null) {
+            return 0;
+        }
+        return HashUtil.fnv1a(key);
+    }
+
+    /**
+     * Time spent getting a database connection, including waiting for the pool
+     */
+    @Name("com.login.ConnectionAcquire")
+    @Label("Connection Acquire")
+    @Category({CATEGORY, "Database"})
+    @Threshold("1 ms")
+    @StackTrace(false)
+    public static final class ConnectionAcquire extends Event {
+        @Label("Pooled")
+        @Description("Whether the connection came from the read pool rather than being opened directly")
+        boolean pooled;
+
+        @Label("Connections In Use")
+        int inUse;
+
+        @Label("Succeeded")
+        boolean succeeded;
+
+        /**
+         * Start timing an acquire
+         * @return the running event
+         */
+        public static ConnectionAcquire start() {
+            ConnectionAcquire event = new ConnectionAcquire();
+            event.begin();
+            return event;
+        }
+
+        /**
+         * Stop timing and commit if the recording wants the event
+         * @param pooled whether the connection came from the read pool
+         * @param inUse connections borrowed from the pool afterwards
+         * @param succeeded whether a connection was obtained
+         */
+        public void finish(boolean pooled, int inUse, boolean succeeded) {
+            end();
+            if (shouldCommit()) {
+                this.pooled = pooled;
+                this.inUse = inUse;
+                this.succeeded = succeeded;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * One UserDAO call against the database
+     */
+    @Name("com.login.DaoQuery")
+    @Label("DAO Query")
+    @Category({CATEGORY, "Database"})
+    @Threshold("1 ms")
+    @StackTrace(false)
+    public static final class DaoQuery extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Username Hash")
+        long usernameHash;
+
+        @Label("Row Count")
+        @Description("Rows returned or changed")
+        int rowCount;
+
+        @Label("Succeeded")
+        boolean succeeded;
+
+        /**
+         * Start timing a DAO call
+         * @param operation the UserDAO method name
+         * @return the running event
+         */
+        public static DaoQuery start(String operation) {
+            DaoQuery event = new DaoQuery();
+            event.operation = operation;
+            event.begin();
+            return event;
+        }
+
+        /**
+         * Stop timing and commit if the recording wants the event
+         * @param username the username the call was about; may be null
+         * @param rowCount rows returned or changed
+         * @param succeeded false if the call threw
+         */
+        public void finish(String username, int rowCount, boolean succeeded) {
+            end();
+            if (shouldCommit()) {
+                this.usernameHash = usernameHash(username);
+                this.rowCount = rowCount;
+                this.succeeded = succeeded;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * One BCrypt hash or verify
+     */
+    @Name("com.login.PasswordOperation")
+    @Label("Password Operation")
+    @Category({CATEGORY, "Security"})
+    @Threshold("0 ms")
+    @StackTrace(false)
+    public static final class PasswordOperation extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Rounds")
+        @Description("BCrypt log2 cost of the hash")
+        int rounds;
+
+        @Label("Outcome")
+        String outcome;
+
+        /**
+         * Start timing a password operation
+         * @param operation "hash" or "verify"
+         * @return the running event
+         */
+        public static PasswordOperation start(String operation) {
+            PasswordOperation event = new PasswordOperation();
+            event.operation = operation;
+            event.begin();
+            return event;
+        }
+
+        /**
+         * Stop timing and commit if the recording wants the event
+         * @param rounds BCrypt cost used
+         * @param outcome e.g. HASHED, MATCH, MISMATCH or ERROR
+         */
+        public void finish(int rounds, String outcome) {
+            end();
+            if (shouldCommit()) {
+                this.rounds = rounds;
+                this.outcome = outcome;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * One UserService call, spanning the events above
+     */
+    @Name("com.login.ServiceOperation")
+    @Label("Service Operation")
+    @Category({CATEGORY, "Service"})
+    @Threshold("0 ms")
+    @StackTrace(false)
+    public static final class ServiceOperation extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Username Hash")
+        long usernameHash;
+
+        @Label("Outcome")
+        String outcome;
+
+        /**
+         * Start timing a service call
+         * @param operation the UserService method name
+         * @return the running event
+         */
+        public static ServiceOperation start(String operation) {
+            ServiceOperation event = new ServiceOperation();
+            event.operation = operation;
+            event.begin();
+            return event;
+        }
+
+        /**
+         * Stop timing and commit if the recording wants the event
+         * @param username the username the call was about; may be null
+         * @param outcome e.g. SUCCESS, a rejection reason or ERROR
+         */
+        public void finish(String username, String outcome) {
+            end();
+            if (shouldCommit()) {
+                this.usernameHash = usernameHash(username);
+                this.outcome = outcome;
+                commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.login.util;
+
+/**
+ * Utility class for the non-cryptographic 64-bit hashes used by sketches, filters and events
+ */
+public class HashUtil {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Hash the chars of a string with 64-bit FNV-1a. Persisted structures such as the
+     * password filter depend on the exact values, so this must never change.
+     * @param value the string to hash
+     * @return the hash
+     */
+    public static long fnv1a(CharSequence value) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Spread the bits of a value with the 64-bit MurmurHash3 finalizer, so that
+     * every input bit affects every output bit
+     * @param value the value to mix
+     * @return the mixed value
+     */
+    public static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,109 @@
+package com.login.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Health and diagnostics probe for a {@link Database}.
+ * <p>
+ * A check borrows one pooled read connection, runs a trivial query and three PRAGMAs,
+ * and reads counters the application keeps anyway; it never hashes a password or
+ * touches the write queue, so it is cheap enough to poll every second. Run the class
+ * to print the report for db.url as JSON; the exit code is 0 when healthy.
+ */
+public class HealthProbe {
+
+    private static final String SQLITE_PREFIX = "jdbc:sqlite:";
+
+    /**
+     * Check a database, with the verification latency limit from health.maxVerifyMs
+     * @param database the database to check
+     * @return the report; unhealthy rather than an exception if the database cannot be reached
+     */
+    public static HealthReport check(Database database) {
+        return check(database, ConfigUtil.getLong("health.maxVerifyMs", 2000));
+    }
+
+    /**
+     * Check a database
+     * @param database the database to check
+     * @param maxVerifyMillis recent average password verification time above which the
+     *        report is unhealthy; 0 for no limit
+     * @return the report; unhealthy rather than an exception if the database cannot be reached
+     */
+    public static HealthReport check(Database database, long maxVerifyMillis) {
+        long checkedAt = System.currentTimeMillis();
+        ConnectionPool pool = database.getReadPool();
+        int inUse = pool.getInUse();
+        String error = null;
+        long acquireMicros = -1;
+        long roundTripMicros = -1;
+        long[] pages = {-1, -1, -1};
+
+        long start = System.nanoTime();
+        try (Connection conn = database.getReadConnection()) {
+            acquireMicros = (System.nanoTime() - start) / 1000;
+            try (Statement stmt = conn.createStatement()) {
+                start = System.nanoTime();
+                try (ResultSet rs = stmt.executeQuery("SELECT 1")) {
+                    rs.next();
+                }
+                roundTripMicros = (System.nanoTime() - start) / 1000;
+                String[] pragmas = {"page_size", "page_count", "freelist_count"};
+                for (int i = 0; i < pragmas.length; i++) {
+                    try (ResultSet rs = stmt.executeQuery("PRAGMA " + pragmas[i])) {
+                        pages[i] = rs.next() ? rs.getLong(1) : -1;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            error = e.getMessage() != null ? e.getMessage() : e.toString();
+        }
+
+        return new HealthReport(checkedAt, error, acquireMicros, roundTripMicros,
+                walBytes(database.getUrl()), pages[0], pages[1], pages[2],
+                inUse, pool.getMaxSize(), database.getWriteQueue().getQueueDepth(),
+                PasswordUtil.getBcryptRounds(), PasswordUtil.getVerifyCount(), PasswordUtil.getRecentVerifyNanos(),
+                maxVerifyMillis);
+    }
+
+    /**
+     * Print the health report of the db.url database as JSON
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        HealthReport report = check(DatabaseUtil.getDatabase());
+        System.out.println(report.toJson());
+        System.exit(report.isHealthy() ? 0 : 1);
+    }
+
+    /**
+     * Size of the write-ahead log next to the database file
+     * @return bytes, 0 if there is none, -1 for in-memory or non-SQLite databases
+     */
+    private static long walBytes(String url) {
+        if (!url.startsWith(SQLITE_PREFIX)) {
+            return -1;
+        }
+        String file = url.substring(SQLITE_PREFIX.length());
+        int query = file.indexOf('?');
+        if (query >= 0) {
+            file = file.substring(0, query);
+        }
+        if (file.isEmpty() || file.startsWith(":memory:") || file.startsWith("file:")) {
+            return -1;
+        }
+        Path wal = Paths.get(file + "-wal");
+        try {
+            return Files.exists(wal) ? Files.size(wal) : 0;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
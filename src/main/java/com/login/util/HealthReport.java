@@ -0,0 +1,201 @@
+package com.login.util;
+
+import java.util.Locale;
+
+/**
+ * Point-in-time health and diagnostics of one database, as produced by {@link HealthProbe}.
+ * Timings are in microseconds; values that could not be measured are -1.
+ */
+public final class HealthReport {
+
+    private final long checkedAtMillis;
+    private final String error;
+    private final long acquireMicros;
+    private final long roundTripMicros;
+    private final long walBytes;
+    private final long pageSize;
+    private final long pageCount;
+    private final long freelistCount;
+    private final int poolInUse;
+    private final int poolMaxSize;
+    private final int writeQueueDepth;
+    private final int bcryptRounds;
+    private final long verifyCount;
+    private final long recentVerifyNanos;
+    private final long maxVerifyMillis;
+
+    HealthReport(long checkedAtMillis, String error, long acquireMicros, long roundTripMicros,
+                 long walBytes, long pageSize, long pageCount, long freelistCount,
+                 int poolInUse, int poolMaxSize, int writeQueueDepth,
+                 int bcryptRounds, long verifyCount, long recentVerifyNanos, long maxVerifyMillis) {
+        this.checkedAtMillis = checkedAtMillis;
+        this.error = error;
+        this.acquireMicros = acquireMicros;
+        this.roundTripMicros = roundTripMicros;
+        this.walBytes = walBytes;
+        this.pageSize = pageSize;
+        this.pageCount = pageCount;
+        this.freelistCount = freelistCount;
+        this.poolInUse = poolInUse;
+        this.poolMaxSize = poolMaxSize;
+        this.writeQueueDepth = writeQueueDepth;
+        this.bcryptRounds = bcryptRounds;
+        this.verifyCount = verifyCount;
+        this.recentVerifyNanos = recentVerifyNanos;
+        this.maxVerifyMillis = maxVerifyMillis;
+    }
+
+    /**
+     * Whether a connection could be acquired and a query answered, and recent password
+     * verifications are within the latency limit
+     * @return true if the service is usable
+     */
+    public boolean isHealthy() {
+        return error == null && !isVerifySlow();
+    }
+
+    /**
+     * Whether recent password verifications average more than the configured limit
+     * @return true if logins are too slow; always false when no limit is set
+     */
+    public boolean isVerifySlow() {
+        return maxVerifyMillis > 0 && getAverageVerifyMillis() > maxVerifyMillis;
+    }
+
+    public long getCheckedAtMillis() {
+        return checkedAtMillis;
+    }
+
+    /**
+     * Get why the check failed
+     * @return the error message, or null if healthy
+     */
+    public String getError() {
+        return error;
+    }
+
+    public long getAcquireMicros() {
+        return acquireMicros;
+    }
+
+    public long getRoundTripMicros() {
+        return roundTripMicros;
+    }
+
+    public long getWalBytes() {
+        return walBytes;
+    }
+
+    public long getPageSize() {
+        return pageSize;
+    }
+
+    public long getPageCount() {
+        return pageCount;
+    }
+
+    public long getFreelistCount() {
+        return freelistCount;
+    }
+
+    public int getPoolInUse() {
+        return poolInUse;
+    }
+
+    public int getPoolMaxSize() {
+        return poolMaxSize;
+    }
+
+    /**
+     * Get the share of read connections that were busy before the probe took one
+     * @return 0.0 to 1.0
+     */
+    public double getPoolSaturation() {
+        return poolMaxSize > 0 ? (double) poolInUse / poolMaxSize : 0;
+    }
+
+    public int getWriteQueueDepth() {
+        return writeQueueDepth;
+    }
+
+    public int getBcryptRounds() {
+        return bcryptRounds;
+    }
+
+    public long getVerifyCount() {
+        return verifyCount;
+    }
+
+    /**
+     * Get the exponentially weighted average time of recent password verifications,
+     * so a slowdown shows within a few dozen logins however long the process has run
+     * @return milliseconds, or -1 if no password has been verified yet
+     */
+    public double getAverageVerifyMillis() {
+        return recentVerifyNanos >= 0 ? recentVerifyNanos / 1e6 : -1;
+    }
+
+    /**
+     * Get the verification latency above which the report is unhealthy
+     * @return milliseconds, or 0 if there is no limit
+     */
+    public long getMaxVerifyMillis() {
+        return maxVerifyMillis;
+    }
+
+    /**
+     * Render the report as a single JSON object
+     * @return the JSON text
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(512);
+        json.append('{');
+        json.append("\"status\":\"").append(isHealthy() ? "UP" : "DOWN").append('"');
+        json.append(",\"checkedAt\":").append(checkedAtMillis);
+        if (error != null) {
+            json.append(",\"error\":");
+            appendString(json, error);
+        }
+        json.append(",\"connection\":{\"acquireMicros\":").append(acquireMicros)
+                .append(",\"roundTripMicros\":").append(roundTripMicros).append('}');
+        json.append(",\"storage\":{\"walBytes\":").append(walBytes)
+                .append(",\"pageSize\":").append(pageSize)
+                .append(",\"pageCount\":").append(pageCount)
+                .append(",\"freelistCount\":").append(freelistCount).append('}');
+        json.append(",\"pool\":{\"inUse\":").append(poolInUse)
+                .append(",\"maxSize\":").append(poolMaxSize)
+                .append(",\"saturation\":").append(format(getPoolSaturation()))
+                .append(",\"writeQueueDepth\":").append(writeQueueDepth).append('}');
+        json.append(",\"bcrypt\":{\"rounds\":").append(bcryptRounds)
+                .append(",\"verifyCount\":").append(verifyCount)
+                .append(",\"averageVerifyMillis\":").append(format(getAverageVerifyMillis()))
+                .append(",\"maxVerifyMillis\":").append(maxVerifyMillis)
+                .append(",\"slow\":").append(isVerifySlow()).append('}');
+        json.append('}');
+        return json.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
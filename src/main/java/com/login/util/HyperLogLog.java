@@ -0,0 +1,145 @@
+package com.login.util;
+
+import java.util.Arrays;
+
+/**
+ * HyperLogLog sketch for estimating the number of distinct items in fixed memory.
+ * <p>
+ * With precision p the sketch keeps 2^p one-byte registers and has a standard error
+ * of about 1.04 / sqrt(2^p), e.g. 1.6% at p = 12 (4 KB). Sketches of the same
+ * precision can be merged, which estimates the size of the union. Not thread-safe.
+ */
+public class HyperLogLog {
+
+    private final int precision;
+    private final byte[] registers;
+
+    /**
+     * Create an empty sketch
+     * @param precision number of index bits, 4 to 18
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("Precision must be between 4 and 18");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Restore a sketch written by {@link #toBytes()}
+     * @param bytes the serialized registers
+     * @return the sketch
+     */
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("Missing HyperLogLog registers");
+        }
+        int precision = Integer.numberOfTrailingZeros(bytes.length);
+        if (bytes.length != 1 << precision) {
+            throw new IllegalArgumentException("Invalid HyperLogLog size: " + bytes.length);
+        }
+        HyperLogLog sketch = new HyperLogLog(precision);
+        System.arraycopy(bytes, 0, sketch.registers, 0, bytes.length);
+        return sketch;
+    }
+
+    /**
+     * Add an item identified by a long, e.g. a user id
+     * @param value the item
+     */
+    public void add(long value) {
+        addHash(HashUtil.mix(value));
+    }
+
+    /**
+     * Add an item identified by a string
+     * @param value the item
+     */
+    public void add(String value) {
+        addHash(HashUtil.mix(HashUtil.fnv1a(value)));
+    }
+
+    /**
+     * Fold another sketch into this one
+     * @param other a sketch of the same precision
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches of different precision");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * Estimate the number of distinct items added
+     * @return the estimate
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // Linear counting is more accurate while many registers are still empty
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Get the precision
+     * @return number of index bits
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Serialize the registers
+     * @return a copy of the 2^p register bytes
+     */
+    public byte[] toBytes() {
+        return Arrays.copyOf(registers, registers.length);
+    }
+
+    /**
+     * Create an independent copy
+     * @return the copy
+     */
+    public HyperLogLog copy() {
+        return fromBytes(registers);
+    }
+
+    private void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // Rank of the first set bit in the remaining bits, capped when they are all zero
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << precision), 64 - precision) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+}
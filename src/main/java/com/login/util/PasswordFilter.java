@@ -0,0 +1,189 @@
+package com.login.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Bloom filter of known breached or common passwords, read through a memory-mapped file.
+ * <p>
+ * The filter is built offline from a text list with {@link #build} or by running this
+ * class, and only ever mapped read-only at run time, so a corpus of hundreds of millions
+ * of passwords costs no heap: the operating system pages in the parts that are probed.
+ * A lookup hashes the password once and tests a handful of bits. Answers are "definitely
+ * not listed" or "probably listed", with the false positive rate chosen at build time.
+ * <p>
+ * File layout: magic, format version, number of bits (long), number of probes (int),
+ * then the bit array. A single mapping limits the filter to 2 GB, about 1.7 billion
+ * passwords at a 1% false positive rate.
+ */
+public class PasswordFilter {
+
+    private static final int MAGIC = 0x50574246; // "PWBF"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+    private static PasswordFilter instance;
+    private static boolean instanceLoaded;
+
+    private final MappedByteBuffer bits;
+    private final long bitCount;
+    private final int probes;
+
+    private PasswordFilter(MappedByteBuffer bits, long bitCount, int probes) {
+        this.bits = bits;
+        this.bitCount = bitCount;
+        this.probes = probes;
+    }
+
+    /**
+     * Map a filter file read-only
+     * @param file the filter written by {@link #build}
+     * @return the filter
+     * @throws IOException if the file cannot be mapped or is not a filter
+     */
+    public static PasswordFilter open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not a password filter: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            long bitCount = buffer.getLong(8);
+            int probes = buffer.getInt(16);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || bitCount <= 0
+                    || probes <= 0 || HEADER_SIZE + (bitCount + 7) / 8 > channel.size()) {
+                throw new IOException("Not a password filter: " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            return new PasswordFilter(buffer, bitCount, probes);
+        }
+    }
+
+    /**
+     * Get the filter named by password.breachFilter in database.properties
+     * @return the shared filter, or null if none is configured or it cannot be opened
+     */
+    public static synchronized PasswordFilter getInstance() {
+        if (!instanceLoaded) {
+            instanceLoaded = true;
+            String file = ConfigUtil.get("password.breachFilter", "");
+            if (!file.isEmpty()) {
+                try {
+                    instance = open(Paths.get(file));
+                } catch (IOException e) {
+                    System.err.println("Breached password screening disabled: " + e.getMessage());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Check whether a password is probably in the list the filter was built from
+     * @param password the plain text password
+     * @return false if it is definitely not listed
+     */
+    public boolean mightContain(String password) {
+        long hash = HashUtil.fnv1a(password);
+        long h1 = HashUtil.mix(hash);
+        long h2 = HashUtil.mix(hash ^ 0x9e3779b97f4a7c15L) | 1;
+        for (int i = 0; i < probes; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((bits.get(HEADER_SIZE + (int) (bit >>> 3)) & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Build a filter file from a text list with one password per line
+     * @param list the password list, UTF-8
+     * @param file the filter file to create, or to replace atomically once the new one is complete
+     * @param expectedCount number of passwords in the list, or 0 to count them first
+     * @param falsePositiveRate the share of unlisted passwords that may be reported as listed
+     * @return the number of passwords added
+     * @throws IOException if reading the list or writing the filter fails
+     */
+    public static long build(Path list, Path file, long expectedCount, double falsePositiveRate) throws IOException {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+        }
+        if (expectedCount <= 0) {
+            try (BufferedReader reader = Files.newBufferedReader(list, StandardCharsets.UTF_8)) {
+                expectedCount = Math.max(1, reader.lines().filter(line -> !line.isEmpty()).count());
+            }
+        }
+        long bitCount = (long) Math.ceil(-expectedCount * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int probes = Math.max(1, (int) Math.round((double) bitCount / expectedCount * Math.log(2)));
+        long size = HEADER_SIZE + (bitCount + 7) / 8;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Filter would exceed 2 GB; raise the false positive rate");
+        }
+
+        // Built next to the target and moved over it once complete, so readers (including
+        // processes that have the old filter mapped) never see a partly written file
+        Path absolute = file.toAbsolutePath();
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        long added = 0;
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 BufferedReader reader = Files.newBufferedReader(list, StandardCharsets.UTF_8)) {
+                // Built straight into the mapped file so the bit array never lives on the heap
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, bitCount).putInt(16, probes);
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        add(buffer, bitCount, probes, line);
+                        added++;
+                    }
+                }
+                buffer.force();
+            }
+            Files.move(temp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return added;
+    }
+
+    /**
+     * Build a filter from the command line:
+     * PasswordFilter &lt;passwords.txt&gt; &lt;filter.bin&gt; [false-positive-rate] [expected-count]
+     * @param args the list, the output file and optionally the rate (default 0.001) and count
+     * @throws IOException if reading or writing fails
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: PasswordFilter <passwords.txt> <filter.bin> [false-positive-rate] [expected-count]");
+            System.exit(2);
+        }
+        double rate = args.length > 2 ? Double.parseDouble(args[2]) : 0.001;
+        long expected = args.length > 3 ? Long.parseLong(args[3]) : 0;
+        long start = System.nanoTime();
+        long added = build(Paths.get(args[0]), Paths.get(args[1]), expected, rate);
+        System.out.printf("Added %d passwords to %s (%d bytes) in %d ms%n", added, args[1],
+                Files.size(Paths.get(args[1])), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void add(ByteBuffer buffer, long bitCount, int probes, String password) {
+        long hash = HashUtil.fnv1a(password);
+        long h1 = HashUtil.mix(hash);
+        long h2 = HashUtil.mix(hash ^ 0x9e3779b97f4a7c15L) | 1;
+        for (int i = 0; i < probes; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            int index = HEADER_SIZE + (int) (bit >>> 3);
+            buffer.put(index, (byte) (buffer.get(index) | (1 << (bit & 7))));
+        }
+    }
+}
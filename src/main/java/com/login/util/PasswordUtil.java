@@ -2,12 +2,21 @@ package com.login.util;
 
 import org.mindrot.jbcrypt.BCrypt;
 
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * Utility class for password operations
  */
 public class PasswordUtil {
     
-    private static final int BCRYPT_ROUNDS = 12;
+    private static volatile int bcryptRounds = ConfigUtil.getInt("password.bcryptRounds", 12);
+    private static final LongAdder VERIFY_COUNT = new LongAdder();
+    private static final LongAdder VERIFY_NANOS = new LongAdder();
+    // Each verification moves this average an eighth of the way towards its own time; -1 until the first
+    private static final AtomicLong RECENT_VERIFY_NANOS = new AtomicLong(-1);
+    private static final int VERIFY_EWMA_DIVISOR = 8;
 
     /**
      * Hash a password using BCrypt
@@ -18,7 +27,16 @@ public class PasswordUtil {
         if (plainPassword == null || plainPassword.trim().isEmpty()) {
             throw new IllegalArgumentException("Password cannot be null or empty");
         }
-        return BCrypt.hashpw(plainPassword, BCrypt.gensalt(BCRYPT_ROUNDS));
+        int rounds = bcryptRounds;
+        FlightEvents.PasswordOperation event = FlightEvents.PasswordOperation.start("hash");
+        String outcome = "ERROR";
+        try {
+            String hash = BCrypt.hashpw(plainPassword, BCrypt.gensalt(rounds));
+            outcome = "HASHED";
+            return hash;
+        } finally {
+            event.finish(rounds, outcome);
+        }
     }
 
     /**
@@ -31,11 +49,102 @@ public class PasswordUtil {
         if (plainPassword == null || hashedPassword == null) {
             return false;
         }
+        FlightEvents.PasswordOperation event = FlightEvents.PasswordOperation.start("verify");
+        String outcome = "ERROR";
+        long start = System.nanoTime();
         try {
-            return BCrypt.checkpw(plainPassword, hashedPassword);
+            boolean matches = BCrypt.checkpw(plainPassword, hashedPassword);
+            outcome = matches ? "MATCH" : "MISMATCH";
+            return matches;
         } catch (Exception e) {
             return false;
+        } finally {
+            recordVerify(System.nanoTime() - start);
+            event.finish(roundsOf(hashedPassword), outcome);
+        }
+    }
+
+    private static void recordVerify(long nanos) {
+        VERIFY_NANOS.add(nanos);
+        VERIFY_COUNT.increment();
+        RECENT_VERIFY_NANOS.getAndUpdate(average -> average < 0 ? nanos : average + (nanos - average) / VERIFY_EWMA_DIVISOR);
+    }
+
+    /**
+     * Read the cost out of a "$2a$12$..." hash without allocating
+     */
+    private static int roundsOf(String hash) {
+        if (hash.length() < 7 || hash.charAt(3) != '$') {
+            return 0;
+        }
+        return (hash.charAt(4) - '0') * 10 + (hash.charAt(5) - '0');
+    }
+
+    /**
+     * Get the BCrypt cost used for new hashes
+     * @return log2 of the number of rounds
+     */
+    public static int getBcryptRounds() {
+        return bcryptRounds;
+    }
+
+    /**
+     * Set the BCrypt cost for new hashes; existing hashes keep verifying with their own cost
+     * @param rounds log2 of the number of rounds, 4 to 31
+     */
+    public static void setBcryptRounds(int rounds) {
+        if (rounds < 4 || rounds > 31) {
+            throw new IllegalArgumentException("BCrypt rounds must be between 4 and 31");
         }
+        bcryptRounds = rounds;
+    }
+
+    /**
+     * Get the number of password verifications since startup
+     * @return verification count
+     */
+    public static long getVerifyCount() {
+        return VERIFY_COUNT.sum();
+    }
+
+    /**
+     * Get the total time spent verifying passwords since startup
+     * @return nanoseconds
+     */
+    public static long getVerifyNanos() {
+        return VERIFY_NANOS.sum();
+    }
+
+    /**
+     * Get the exponentially weighted average time of recent password verifications,
+     * dominated by roughly the last 10 to 20 of them
+     * @return nanoseconds, or -1 if no password has been verified yet
+     */
+    public static long getRecentVerifyNanos() {
+        return RECENT_VERIFY_NANOS.get();
+    }
+
+    /**
+     * Verify a password against a hash held as ASCII bytes
+     * @param plainPassword the plain text password
+     * @param hashedPassword the hashed password bytes
+     * @return true if the password matches, false otherwise
+     */
+    public static boolean verifyPassword(String plainPassword, byte[] hashedPassword) {
+        if (hashedPassword == null) {
+            return false;
+        }
+        return verifyPassword(plainPassword, new String(hashedPassword, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Check a password against the breached password filter, if one is configured
+     * @param password the plain text password
+     * @return true if the password is probably in a breached or common password list
+     */
+    public static boolean isBreached(String password) {
+        PasswordFilter filter = PasswordFilter.getInstance();
+        return filter != null && password != null && filter.mightContain(password);
     }
 
     /**
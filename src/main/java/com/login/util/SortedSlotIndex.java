@@ -0,0 +1,186 @@
+package com.login.util;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Slots of a column store kept in ascending order of their String key, for range scans.
+ * <p>
+ * The order is a flat int array searched by binary search; keys are read from the owner's
+ * columns through the key function, so there are no per-entry objects. A single add or
+ * remove shifts the tail of the array. Bulk loads call {@link #defer()} first: adds are then
+ * collected unsorted and {@link #resume()} sorts and merges them in one pass. Keys must be
+ * unique among live slots. Not thread-safe.
+ */
+public class SortedSlotIndex {
+
+    private final IntFunction<String> keyOf;
+    private int[] order = new int[16];
+    private int size;
+    private int[] pending = new int[16];
+    private int pendingCount;
+    private boolean deferred;
+
+    /**
+     * @param keyOf the current key of a slot, or null once the slot is free
+     */
+    public SortedSlotIndex(IntFunction<String> keyOf) {
+        this.keyOf = keyOf;
+    }
+
+    /**
+     * Insert a slot at the position of its current key
+     * @param slot the slot, which must not be in the index already
+     */
+    public void add(int slot) {
+        if (deferred) {
+            pending = ensureCapacity(pending, pendingCount + 1);
+            pending[pendingCount++] = slot;
+            return;
+        }
+        int position = ceiling(keyOf.apply(slot));
+        order = ensureCapacity(order, size + 1);
+        System.arraycopy(order, position, order, position + 1, size - position);
+        order[position] = slot;
+        size++;
+    }
+
+    /**
+     * Remove a slot; call before its key changes or is cleared
+     * @param slot the slot
+     */
+    public void remove(int slot) {
+        String key = keyOf.apply(slot);
+        if (key == null) {
+            return;
+        }
+        // A slot added while deferred is not in the order yet; resume() drops it if it was freed
+        int position = ceiling(key);
+        if (position < size && order[position] == slot) {
+            System.arraycopy(order, position + 1, order, position, size - position - 1);
+            size--;
+        }
+    }
+
+    /**
+     * Collect further adds unsorted until {@link #resume()}
+     */
+    public void defer() {
+        deferred = true;
+    }
+
+    /**
+     * Sort the slots added since {@link #defer()} and merge them into the order
+     */
+    public void resume() {
+        deferred = false;
+        // Drop slots freed since they were added, then duplicates left by slot reuse
+        int live = 0;
+        for (int i = 0; i < pendingCount; i++) {
+            if (keyOf.apply(pending[i]) != null) {
+                pending[live++] = pending[i];
+            }
+        }
+        sort(pending, live);
+        int unique = 0;
+        for (int i = 0; i < live; i++) {
+            if (unique == 0 || pending[unique - 1] != pending[i]) {
+                pending[unique++] = pending[i];
+            }
+        }
+
+        int[] merged = new int[Math.max(16, size + unique)];
+        int a = 0;
+        int b = 0;
+        int n = 0;
+        while (a < size && b < unique) {
+            merged[n++] = keyOf.apply(order[a]).compareTo(keyOf.apply(pending[b])) <= 0 ? order[a++] : pending[b++];
+        }
+        while (a < size) {
+            merged[n++] = order[a++];
+        }
+        while (b < unique) {
+            merged[n++] = pending[b++];
+        }
+        order = merged;
+        size = n;
+        pending = new int[16];
+        pendingCount = 0;
+    }
+
+    /**
+     * Position of the first slot whose key is at least the given key
+     * @param key the key
+     * @return a position between 0 and {@link #size()}
+     */
+    public int ceiling(String key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keyOf.apply(order[mid]).compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Position of the first slot whose key is greater than the given key
+     * @param key the key
+     * @return a position between 0 and {@link #size()}
+     */
+    public int higher(String key) {
+        int position = ceiling(key);
+        return position < size && keyOf.apply(order[position]).equals(key) ? position + 1 : position;
+    }
+
+    /**
+     * Get the slot at a position in key order
+     * @param position between 0 and {@link #size()} - 1
+     * @return the slot
+     */
+    public int slotAt(int position) {
+        return order[position];
+    }
+
+    /**
+     * Get the number of slots in order, not counting deferred adds
+     * @return slot count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Merge sort by key, with one scratch array
+     */
+    private void sort(int[] slots, int length) {
+        int[] scratch = new int[length];
+        for (int width = 1; width < length; width *= 2) {
+            for (int low = 0; low < length - width; low += 2 * width) {
+                int mid = low + width;
+                int high = Math.min(low + 2 * width, length);
+                int a = low;
+                int b = mid;
+                int n = low;
+                while (a < mid && b < high) {
+                    scratch[n++] = keyOf.apply(slots[a]).compareTo(keyOf.apply(slots[b])) <= 0 ? slots[a++] : slots[b++];
+                }
+                while (a < mid) {
+                    scratch[n++] = slots[a++];
+                }
+                while (b < high) {
+                    scratch[n++] = slots[b++];
+                }
+                System.arraycopy(scratch, low, slots, low, high - low);
+            }
+        }
+    }
+
+    private static int[] ensureCapacity(int[] array, int needed) {
+        return needed <= array.length ? array : Arrays.copyOf(array, Math.max(needed, array.length * 2));
+    }
+}
@@ -0,0 +1,126 @@
+package com.login.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from String keys to non-negative int values.
+ * <p>
+ * Same layout as {@link LongIntHashMap}: a flat key array and a flat value array,
+ * linear probing and backward-shift deletion, no per-entry node objects.
+ * Relies on String's cached hash code. Not thread-safe.
+ */
+public class StringIntHashMap {
+
+    private static final int NO_VALUE = -1;
+
+    private String[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    public StringIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Get the value for a key
+     * @param key the key
+     * @return the value, or -1 if the key is absent
+     */
+    public int get(String key) {
+        int index = indexOf(key);
+        return index < 0 ? NO_VALUE : values[index];
+    }
+
+    /**
+     * Associate a value with a key
+     * @param key the key, not null
+     * @param value the value, must be non-negative
+     */
+    public void put(String key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Values must be non-negative");
+        }
+        int index = slot(key);
+        while (keys[index] != null) {
+            if (keys[index].equals(key)) {
+                values[index] = value;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+    }
+
+    /**
+     * Remove a key
+     * @param key the key
+     * @return the removed value, or -1 if the key was absent
+     */
+    public int remove(String key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return NO_VALUE;
+        }
+        int removed = values[index];
+        int hole = index;
+        int next = (hole + 1) & mask;
+        while (keys[next] != null) {
+            int home = slot(keys[next]);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = null;
+        values[hole] = NO_VALUE;
+        size--;
+        return removed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int indexOf(String key) {
+        int index = slot(key);
+        while (keys[index] != null) {
+            if (keys[index].equals(key)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int slot(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) * 0x9E3779B9 & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, NO_VALUE);
+        mask = capacity - 1;
+    }
+
+    private void resize(int capacity) {
+        String[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.login.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The settings that can change while the application runs, parsed and validated
+ * from database.properties. Instances are immutable; {@link ConfigWatcher} publishes
+ * a new one whenever the file changes and every value in it is valid.
+ */
+public final class TuningConfig {
+
+    private final int poolReaders;
+    private final long poolAcquireTimeoutMillis;
+    private final long writeBatchWindowMillis;
+    private final int writeMaxBatchSize;
+    private final int bcryptRounds;
+    private final int purgeChunkSize;
+    private final long purgePauseMillis;
+
+    private TuningConfig(Properties props) {
+        this.poolReaders = intValue(props, "db.pool.readers", 4, 1, 256);
+        this.poolAcquireTimeoutMillis = longValue(props, "db.pool.acquireTimeoutMs", 5000, 0);
+        this.writeBatchWindowMillis = longValue(props, "db.write.batchWindowMs", 2, 0);
+        this.writeMaxBatchSize = intValue(props, "db.write.maxBatchSize", 256, 1, 100000);
+        this.bcryptRounds = intValue(props, "password.bcryptRounds", 12, 4, 31);
+        this.purgeChunkSize = intValue(props, "db.purge.chunkSize", 500, 1, 100000);
+        this.purgePauseMillis = longValue(props, "db.purge.pauseMs", 50, 0);
+    }
+
+    /**
+     * Parse and validate the tunable settings
+     * @param props the properties to read
+     * @return the settings
+     * @throws IllegalArgumentException naming the first setting that is not a valid value
+     */
+    public static TuningConfig from(Properties props) {
+        return new TuningConfig(props);
+    }
+
+    /**
+     * Get the settings currently in ConfigUtil
+     * @return the settings
+     */
+    public static TuningConfig current() {
+        return from(ConfigUtil.getAll());
+    }
+
+    public int getPoolReaders() {
+        return poolReaders;
+    }
+
+    public long getPoolAcquireTimeoutMillis() {
+        return poolAcquireTimeoutMillis;
+    }
+
+    public long getWriteBatchWindowMillis() {
+        return writeBatchWindowMillis;
+    }
+
+    public int getWriteMaxBatchSize() {
+        return writeMaxBatchSize;
+    }
+
+    public int getBcryptRounds() {
+        return bcryptRounds;
+    }
+
+    public int getPurgeChunkSize() {
+        return purgeChunkSize;
+    }
+
+    public long getPurgePauseMillis() {
+        return purgePauseMillis;
+    }
+
+    /**
+     * Get every effective value by its property name, for inspection
+     * @return the values in a stable order
+     */
+    public Map<String, String> toMap() {
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put("db.pool.readers", String.valueOf(poolReaders));
+        values.put("db.pool.acquireTimeoutMs", String.valueOf(poolAcquireTimeoutMillis));
+        values.put("db.write.batchWindowMs", String.valueOf(writeBatchWindowMillis));
+        values.put("db.write.maxBatchSize", String.valueOf(writeMaxBatchSize));
+        values.put("password.bcryptRounds", String.valueOf(bcryptRounds));
+        values.put("db.purge.chunkSize", String.valueOf(purgeChunkSize));
+        values.put("db.purge.pauseMs", String.valueOf(purgePauseMillis));
+        return values;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TuningConfig && toMap().equals(((TuningConfig) o).toMap());
+    }
+
+    @Override
+    public int hashCode() {
+        return toMap().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "TuningConfig" + toMap();
+    }
+
+    private static int intValue(Properties props, String key, int defaultValue, int min, int max) {
+        long value = longValue(props, key, defaultValue, min);
+        if (value > max) {
+            throw new IllegalArgumentException(key + " must be at most " + max + ", was " + value);
+        }
+        return (int) value;
+    }
+
+    private static long longValue(Properties props, String key, long defaultValue, long min) {
+        String text = props.getProperty(key);
+        long value;
+        try {
+            value = text == null ? defaultValue : Long.parseLong(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " is not a number: " + text);
+        }
+        if (value < min) {
+            throw new IllegalArgumentException(key + " must be at least " + min + ", was " + value);
+        }
+        return value;
+    }
+}
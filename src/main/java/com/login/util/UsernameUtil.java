@@ -0,0 +1,22 @@
+package com.login.util;
+
+import java.util.Locale;
+
+/**
+ * Utility class for username normalization
+ */
+public class UsernameUtil {
+
+    /**
+     * Get the lookup key for a username: trimmed and lower-cased, so that
+     * " Alice" and "alice" map to the same account
+     * @param username the username as entered or stored
+     * @return the normalized key, or null if username is null
+     */
+    public static String normalize(String username) {
+        if (username == null) {
+            return null;
+        }
+        return username.trim().toLowerCase(Locale.ROOT);
+    }
+}
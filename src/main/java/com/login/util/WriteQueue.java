@@ -0,0 +1,271 @@
+package com.login.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-writer queue that serializes all database mutations onto one connection.
+ * <p>
+ * A dedicated thread drains submitted mutations and commits them in groups: after the
+ * first mutation arrives it waits up to the configured batch window for more work, runs
+ * every mutation of the group inside one transaction (each under its own savepoint, so a
+ * failing mutation does not take the rest of the group down) and commits once. Each
+ * caller's future completes only after that commit, i.e. once its write is durable.
+ * Submitting and shutting down are serialized, so every mutation either runs or fails
+ * with "Write queue is shut down"; none is left waiting.
+ */
+public class WriteQueue {
+
+    /**
+     * A unit of write work executed on the writer connection
+     * @param <T> the result type
+     */
+    @FunctionalInterface
+    public interface Mutation<T> {
+        T apply(Connection conn) throws SQLException;
+    }
+
+    private final ConnectionFactory connectionFactory;
+    private volatile Batching batching;
+    private final BlockingQueue<Pending<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    // Guards running against submit, so nothing is queued after the writer decided to stop
+    private final Object lifecycle = new Object();
+    private volatile boolean running = true;
+    private Connection connection;
+
+    /**
+     * Create and start a write queue
+     * @param connectionFactory opens the writer connection
+     * @param batchWindowMillis how long to wait for more mutations after the first one of a group
+     * @param maxBatchSize maximum number of mutations committed together
+     */
+    public WriteQueue(ConnectionFactory connectionFactory, long batchWindowMillis, int maxBatchSize) {
+        this.connectionFactory = connectionFactory;
+        setBatching(batchWindowMillis, maxBatchSize);
+        this.writerThread = new Thread(this::runWriter, "sqlite-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Submit a mutation to the writer thread
+     * @param mutation the mutation to run
+     * @return a future completed once the mutation has been committed
+     */
+    public <T> CompletableFuture<T> submit(Mutation<T> mutation) {
+        Pending<T> pending = new Pending<>(mutation);
+        synchronized (lifecycle) {
+            if (running) {
+                queue.add(pending);
+                return pending.future;
+            }
+        }
+        pending.fail(new SQLException("Write queue is shut down"));
+        return pending.future;
+    }
+
+    /**
+     * Submit a mutation and wait for it to be committed
+     * @param mutation the mutation to run
+     * @return the mutation result
+     * @throws SQLException if the mutation or the commit fails
+     */
+    public <T> T execute(Mutation<T> mutation) throws SQLException {
+        try {
+            return submit(mutation).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for write", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException("Write failed", cause);
+        }
+    }
+
+    /**
+     * Change how mutations are grouped; takes effect from the next group
+     * @param batchWindowMillis how long to wait for more mutations after the first one of a group
+     * @param maxBatchSize maximum number of mutations committed together
+     */
+    public void setBatching(long batchWindowMillis, int maxBatchSize) {
+        if (batchWindowMillis < 0 || maxBatchSize < 1) {
+            throw new IllegalArgumentException("Invalid write queue settings");
+        }
+        this.batching = new Batching(TimeUnit.MILLISECONDS.toNanos(batchWindowMillis), maxBatchSize);
+    }
+
+    /**
+     * Get the number of mutations waiting for the writer thread
+     * @return queue depth
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Stop the writer thread after the queued mutations have been committed
+     */
+    public void shutdown() {
+        synchronized (lifecycle) {
+            running = false;
+        }
+        writerThread.interrupt();
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runWriter() {
+        List<Pending<?>> batch = new ArrayList<>();
+        try {
+            while (running || !queue.isEmpty()) {
+                Batching current = batching;
+                try {
+                    collectBatch(batch, current);
+                } catch (InterruptedException e) {
+                    // shutdown requested; commit whatever is still queued
+                    queue.drainTo(batch, Math.max(current.maxSize - batch.size(), 0));
+                }
+                if (!batch.isEmpty()) {
+                    commitBatch(batch);
+                    batch.clear();
+                }
+            }
+        } finally {
+            // Also reached if the writer dies; fail whatever it will never run
+            synchronized (lifecycle) {
+                running = false;
+            }
+            queue.drainTo(batch);
+            SQLException shutDown = new SQLException("Write queue is shut down");
+            for (Pending<?> pending : batch) {
+                pending.fail(shutDown);
+            }
+            Database.closeConnection(connection);
+        }
+    }
+
+    private void collectBatch(List<Pending<?>> batch, Batching current) throws InterruptedException {
+        batch.add(queue.take());
+        long deadline = System.nanoTime() + current.windowNanos;
+        while (batch.size() < current.maxSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                queue.drainTo(batch, current.maxSize - batch.size());
+                return;
+            }
+            Pending<?> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void commitBatch(List<Pending<?>> batch) {
+        try {
+            Connection conn = getWriterConnection();
+            for (Pending<?> pending : batch) {
+                pending.run(conn);
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            rollbackQuietly();
+            for (Pending<?> pending : batch) {
+                pending.fail(e);
+            }
+            return;
+        }
+        for (Pending<?> pending : batch) {
+            pending.complete();
+        }
+    }
+
+    private Connection getWriterConnection() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            connection = connectionFactory.open();
+            connection.setAutoCommit(false);
+        }
+        return connection;
+    }
+
+    private void rollbackQuietly() {
+        try {
+            if (connection != null && !connection.isClosed()) {
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            System.err.println("Error rolling back write batch: " + e.getMessage());
+            Database.closeConnection(connection);
+            connection = null;
+        }
+    }
+
+    /**
+     * Grouping settings, replaced as a whole so the writer never sees half a change
+     */
+    private static final class Batching {
+        private final long windowNanos;
+        private final int maxSize;
+
+        Batching(long windowNanos, int maxSize) {
+            this.windowNanos = windowNanos;
+            this.maxSize = maxSize;
+        }
+    }
+
+    /**
+     * A submitted mutation together with its outcome
+     */
+    private static class Pending<T> {
+        private final Mutation<T> mutation;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T result;
+        private Throwable error;
+
+        Pending(Mutation<T> mutation) {
+            this.mutation = mutation;
+        }
+
+        void run(Connection conn) throws SQLException {
+            Savepoint savepoint = conn.setSavepoint();
+            try {
+                result = mutation.apply(conn);
+                conn.releaseSavepoint(savepoint);
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback(savepoint);
+                conn.releaseSavepoint(savepoint);
+                error = e;
+            }
+        }
+
+        void complete() {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        }
+
+        void fail(Throwable e) {
+            future.completeExceptionally(error != null ? error : e);
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.login.view;
 
 import com.login.model.User;
+import com.login.service.ServiceOverloadedException;
 import com.login.service.UserService;
+import com.login.util.ConfigUtil;
+import com.login.util.UsernameUtil;
 
 import javax.swing.*;
 import java.awt.*;
@@ -214,6 +217,8 @@ public class LoginFrame extends JFrame {
             
         } catch (IllegalArgumentException e) {
             showStatus(e.getMessage(), Color.RED);
+        } catch (ServiceOverloadedException e) {
+            showStatus("The server is busy, please try again in a moment", Color.RED);
         } catch (SQLException e) {
             showStatus("Database error: " + e.getMessage(), Color.RED);
         }
@@ -246,6 +251,8 @@ public class LoginFrame extends JFrame {
             
         } catch (IllegalArgumentException e) {
             showStatus(e.getMessage(), Color.RED);
+        } catch (ServiceOverloadedException e) {
+            showStatus("The server is busy, please try again in a moment", Color.RED);
         } catch (SQLException e) {
             showStatus("Database error: " + e.getMessage(), Color.RED);
         }
@@ -273,14 +280,41 @@ public class LoginFrame extends JFrame {
             clearStatus();
         });
         
+        JPanel buttonPanel = new JPanel(new FlowLayout());
+        // The browser lists every user's email, so only administrators get it
+        if (isAdmin(user)) {
+            JButton browseButton = new JButton("Browse Users");
+            browseButton.addActionListener(e -> {
+                UserBrowserFrame browser = new UserBrowserFrame(userService);
+                browser.setLocationRelativeTo(mainFrame);
+                browser.setVisible(true);
+            });
+            buttonPanel.add(browseButton);
+        }
+        buttonPanel.add(logoutButton);
+        
         panel.add(welcomeLabel, BorderLayout.CENTER);
-        panel.add(logoutButton, BorderLayout.SOUTH);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
         
         mainFrame.add(panel);
         mainFrame.setVisible(true);
         this.setVisible(false);
     }
     
+    /**
+     * Whether the user is listed in admin.usernames (comma-separated, case-insensitive)
+     */
+    private static boolean isAdmin(User user) {
+        String key = UsernameUtil.normalize(user.getUsername());
+        for (String admin : ConfigUtil.get("admin.usernames", "").split(",")) {
+            String adminKey = UsernameUtil.normalize(admin);
+            if (!adminKey.isEmpty() && adminKey.equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
     private void showStatus(String message, Color color) {
         statusLabel.setText(message);
         statusLabel.setForeground(color);
@@ -0,0 +1,52 @@
+package com.login.view;
+
+import com.login.service.UserService;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Window listing every user, backed by a {@link UserTableModel} so that only the
+ * pages being looked at are fetched and kept in memory
+ */
+public class UserBrowserFrame extends JFrame {
+
+    private static final int PAGE_SIZE = 200;
+    private static final int MAX_CACHED_PAGES = 10;
+
+    private final UserTableModel model;
+    private final JLabel statusLabel = new JLabel(" ");
+
+    public UserBrowserFrame(UserService userService) {
+        model = new UserTableModel(userService::listUsers, PAGE_SIZE, MAX_CACHED_PAGES);
+        model.setErrorListener(e -> {
+            statusLabel.setText("Database error: " + e.getMessage());
+            statusLabel.setForeground(Color.RED);
+        });
+        model.addTableModelListener(e -> updateStatus());
+
+        JTable table = new JTable(model);
+        table.setFillsViewportHeight(true);
+        // Sorting would need every row; the table is always in id order
+        table.setAutoCreateRowSorter(false);
+
+        JButton refreshButton = new JButton("Refresh");
+        refreshButton.addActionListener(e -> model.refresh());
+
+        JPanel bottomPanel = new JPanel(new BorderLayout());
+        bottomPanel.add(statusLabel, BorderLayout.CENTER);
+        bottomPanel.add(refreshButton, BorderLayout.EAST);
+
+        setLayout(new BorderLayout());
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(bottomPanel, BorderLayout.SOUTH);
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        setTitle("Users");
+        setSize(700, 450);
+    }
+
+    private void updateStatus() {
+        statusLabel.setForeground(Color.BLACK);
+        statusLabel.setText(model.getRowCount() + (model.isEndReached() ? " users" : "+ users, scroll for more"));
+    }
+}
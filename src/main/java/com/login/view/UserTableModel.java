@@ -0,0 +1,212 @@
+package com.login.view;
+
+import com.login.model.User;
+
+import javax.swing.SwingWorker;
+import javax.swing.table.AbstractTableModel;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Table model over every user that fetches pages on demand instead of loading the table.
+ * <p>
+ * Pages are read in id order with keyset pagination on a {@link SwingWorker}, never on
+ * the event dispatch thread. The id each page starts after is remembered (one long per
+ * page), so a page that was evicted is fetched again directly. Only the most recently
+ * used pages are kept. The row count grows as the view nears the end of what is loaded:
+ * looking at the second half of a page prefetches the next one, until a short page marks
+ * the end of the table.
+ * <p>
+ * All methods must be called on the event dispatch thread.
+ */
+public class UserTableModel extends AbstractTableModel {
+
+    /**
+     * Fetches one page of users in ascending id order
+     */
+    @FunctionalInterface
+    public interface PageSource {
+        List<User> fetch(long afterId, int limit) throws SQLException;
+    }
+
+    private static final String[] COLUMNS = {"ID", "Username", "Email", "Created", "Last Login"};
+    private static final String LOADING = "Loading...";
+
+    private final PageSource source;
+    private final int pageSize;
+    private final Map<Integer, Object[][]> pages;
+    private final Set<Integer> loading = new HashSet<>();
+    private Consumer<Exception> errorListener = e -> { };
+    // anchors[p] is the id page p starts after; known for pages below pageCount
+    private long[] anchors = new long[64];
+    private int pageCount;
+    private int rowCount;
+    private boolean endReached;
+    private boolean failed;
+    private int generation;
+
+    /**
+     * Create the model and start fetching the first page
+     * @param source where pages come from
+     * @param pageSize users per page
+     * @param maxPages pages kept in memory at once; at least two screens' worth
+     */
+    public UserTableModel(PageSource source, int pageSize, int maxPages) {
+        if (pageSize < 1 || maxPages < 2) {
+            throw new IllegalArgumentException("Need a page size of at least 1 and at least 2 cached pages");
+        }
+        this.source = source;
+        this.pageSize = pageSize;
+        this.pages = new LinkedHashMap<Integer, Object[][]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> eldest) {
+                return size() > maxPages;
+            }
+        };
+        refresh();
+    }
+
+    /**
+     * Set what to do when a page cannot be fetched; loading stops until {@link #refresh()}
+     * @param errorListener receives the failure on the event dispatch thread
+     */
+    public void setErrorListener(Consumer<Exception> errorListener) {
+        this.errorListener = errorListener;
+    }
+
+    /**
+     * Drop every loaded page and start again from the first one
+     */
+    public void refresh() {
+        generation++;
+        pages.clear();
+        loading.clear();
+        anchors[0] = 0;
+        pageCount = 1;
+        rowCount = 0;
+        endReached = false;
+        failed = false;
+        fireTableDataChanged();
+        load(0);
+    }
+
+    /**
+     * Check whether the last page has been seen, so the row count is final
+     * @return true once the end of the table was reached
+     */
+    public boolean isEndReached() {
+        return endReached;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 0 ? Long.class : Object.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int page = row / pageSize;
+        int offset = row % pageSize;
+        Object[][] rows = pages.get(page);
+        if (rows == null) {
+            load(page);
+            return column == 1 ? LOADING : null;
+        }
+        if (offset >= pageSize / 2) {
+            load(page + 1);
+        }
+        // A page fetched again after deletes can come back shorter
+        return offset < rows.length ? rows[offset][column] : null;
+    }
+
+    int getCachedPageCount() {
+        return pages.size();
+    }
+
+    private void load(int page) {
+        if (failed || page >= pageCount || pages.containsKey(page) || !loading.add(page)) {
+            return;
+        }
+        int requested = generation;
+        long afterId = anchors[page];
+        new SwingWorker<List<User>, Void>() {
+            @Override
+            protected List<User> doInBackground() throws SQLException {
+                return source.fetch(afterId, pageSize);
+            }
+
+            @Override
+            protected void done() {
+                if (requested != generation) {
+                    return;
+                }
+                loading.remove(page);
+                try {
+                    loaded(page, get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    failed = true;
+                    errorListener.accept(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+                }
+            }
+        }.execute();
+    }
+
+    private void loaded(int page, List<User> users) {
+        boolean frontier = page == pageCount - 1 && !endReached;
+        // Users inserted since between two known pages belong to the next one
+        long nextAnchor = page + 1 < pageCount ? anchors[page + 1] : Long.MAX_VALUE;
+        int count = 0;
+        Object[][] rows = new Object[users.size()][];
+        for (User user : users) {
+            if (user.getId() > nextAnchor) {
+                break;
+            }
+            rows[count++] = new Object[] {
+                user.getId(), user.getUsername(), user.getEmail(), user.getCreatedAt(), user.getLastLogin()
+            };
+        }
+        pages.put(page, count == rows.length ? rows : Arrays.copyOf(rows, count));
+
+        int first = page * pageSize;
+        if (!frontier) {
+            fireTableRowsUpdated(first, Math.min(first + pageSize, rowCount) - 1);
+            return;
+        }
+        if (users.size() == pageSize) {
+            if (pageCount == anchors.length) {
+                anchors = Arrays.copyOf(anchors, pageCount * 2);
+            }
+            anchors[pageCount++] = users.get(users.size() - 1).getId();
+        } else {
+            endReached = true;
+        }
+        if (count > 0) {
+            rowCount = first + count;
+            fireTableRowsInserted(first, rowCount - 1);
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.login.dao;
+
+import com.login.model.User;
+import com.login.model.UserRecord;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Behaviour every UserDAO implementation must share.
+ * Subclasses supply the implementation under test.
+ */
+public abstract class UserDAOContract {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    protected UserDAO userDAO;
+
+    /**
+     * Create the DAO under test
+     */
+    protected abstract UserDAO createDAO() throws Exception;
+
+    /**
+     * Release the DAO under test
+     */
+    protected void closeDAO(UserDAO dao) throws Exception {
+    }
+
+    @Before
+    public void setUpDAO() throws Exception {
+        userDAO = createDAO();
+    }
+
+    @After
+    public void tearDownDAO() throws Exception {
+        closeDAO(userDAO);
+    }
+
+    protected static String uniqueName(String prefix) {
+        return prefix + System.nanoTime() + "_" + SEQUENCE.incrementAndGet();
+    }
+
+    protected User newUser(String prefix) {
+        String username = uniqueName(prefix);
+        return new User(username, "$2a$12$notarealhash", username + "@example.com");
+    }
+
+    @Test
+    public void testCreateAssignsIdAndCreatedAt() throws SQLException {
+        User user = userDAO.createUser(newUser("create"));
+
+        assertNotNull(user.getId());
+        assertNotNull(user.getCreatedAt());
+        assertEquals(0, user.getVersion());
+    }
+
+    @Test
+    public void testFindByUsernameAndId() throws SQLException {
+        User user = userDAO.createUser(newUser("Find"));
+
+        Optional<User> byName = userDAO.findByUsername(" " + user.getUsername().toUpperCase() + " ");
+        Optional<User> byId = userDAO.findById(user.getId());
+
+        assertTrue(byName.isPresent());
+        assertEquals(user.getId(), byName.get().getId());
+        assertEquals(user.getUsername(), byName.get().getUsername());
+        assertEquals(user.getEmail(), byName.get().getEmail());
+        assertTrue(byId.isPresent());
+        assertEquals(user.getUsername(), byId.get().getUsername());
+        assertFalse(userDAO.findByUsername(uniqueName("missing")).isPresent());
+        assertFalse(userDAO.findById(-1L).isPresent());
+    }
+
+    @Test(expected = SQLException.class)
+    public void testCreateRejectsCaseVariantDuplicate() throws SQLException {
+        User user = userDAO.createUser(newUser("dup"));
+        userDAO.createUser(new User(user.getUsername().toUpperCase(), "hash"));
+    }
+
+    @Test
+    public void testFindByEmailIgnoresCaseAndRejectsDuplicates() throws SQLException {
+        User user = userDAO.createUser(newUser("Mail"));
+
+        Optional<User> byEmail = userDAO.findByEmail(" " + user.getEmail().toUpperCase() + " ");
+        assertTrue(byEmail.isPresent());
+        assertEquals(user.getId(), byEmail.get().getId());
+        assertTrue(userDAO.emailExists(user.getEmail().toUpperCase()));
+        assertEquals(user.getId().longValue(), userDAO.findRecordByEmail(user.getEmail()).get().getId());
+        assertFalse(userDAO.findByEmail(uniqueName("missing") + "@example.com").isPresent());
+        assertFalse(userDAO.emailExists(null));
+
+        try {
+            userDAO.createUser(new User(uniqueName("mail"), "hash", user.getEmail().toUpperCase()));
+            fail("Expected a unique constraint violation");
+        } catch (SQLException expected) {
+        }
+        User other = userDAO.createUser(newUser("mail"));
+        other.setEmail(user.getEmail());
+        try {
+            userDAO.updateUser(other);
+            fail("Expected a unique constraint violation");
+        } catch (SQLException expected) {
+        }
+
+        // Users without an email never collide
+        userDAO.createUser(new User(uniqueName("noemail"), "hash", null));
+        userDAO.createUser(new User(uniqueName("noemail"), "hash", null));
+
+        // Deleting the holder frees the address
+        assertTrue(userDAO.deleteUser(user.getId()));
+        assertFalse(userDAO.emailExists(user.getEmail()));
+        userDAO.createUser(new User(uniqueName("mail"), "hash", user.getEmail()));
+    }
+
+    @Test
+    public void testUsernameExists() throws SQLException {
+        User user = userDAO.createUser(newUser("exists"));
+
+        assertTrue(userDAO.usernameExists(user.getUsername()));
+        assertTrue(userDAO.usernameExists(user.getUsername().toUpperCase()));
+        assertFalse(userDAO.usernameExists(uniqueName("missing")));
+    }
+
+    @Test
+    public void testUpdateBumpsVersionAndRejectsStaleCopy() throws SQLException {
+        User user = userDAO.createUser(newUser("update"));
+        User stale = userDAO.findById(user.getId()).get();
+
+        user.setEmail("changed." + user.getEmail());
+        assertTrue(userDAO.updateUser(user));
+        assertEquals(1, user.getVersion());
+        assertEquals(user.getEmail(), userDAO.findById(user.getId()).get().getEmail());
+        assertEquals(1, userDAO.findById(user.getId()).get().getVersion());
+
+        stale.setEmail("stale@example.com");
+        try {
+            userDAO.updateUser(stale);
+            fail("Expected a version conflict");
+        } catch (VersionConflictException e) {
+            assertEquals(1, e.getActualVersion());
+        }
+    }
+
+    @Test
+    public void testUpdateOfMissingUserReturnsFalse() throws SQLException {
+        User ghost = newUser("ghost");
+        ghost.setId(-42L);
+        assertFalse(userDAO.updateUser(ghost));
+    }
+
+    @Test
+    public void testDelete() throws SQLException {
+        User user = userDAO.createUser(newUser("delete"));
+
+        assertTrue(userDAO.deleteUser(user.getId()));
+        assertFalse(userDAO.findById(user.getId()).isPresent());
+        assertFalse(userDAO.usernameExists(user.getUsername()));
+        assertFalse(userDAO.deleteUser(user.getId()));
+    }
+
+    @Test
+    public void testDeleteInactiveUsers() throws Exception {
+        User dormant = userDAO.createUser(newUser("dormant"));
+        User alsoDormant = userDAO.createUser(newUser("dormant2"));
+        User loggedIn = userDAO.createUser(newUser("returning"));
+        Thread.sleep(20);
+        LocalDateTime cutoff = LocalDateTime.now();
+        Thread.sleep(20);
+        userDAO.updateLastLogin(loggedIn.getUsername());
+        User fresh = userDAO.createUser(newUser("fresh"));
+
+        int deleted = 0;
+        int batch;
+        while ((batch = userDAO.deleteInactiveUsers(cutoff, 1)) == 1) {
+            // one user per call until none are left
+            deleted += batch;
+        }
+
+        // Other tests may leave inactive users behind in a shared database
+        assertTrue("Deleted " + deleted, deleted >= 2);
+        assertFalse(userDAO.findById(dormant.getId()).isPresent());
+        assertFalse(userDAO.findById(alsoDormant.getId()).isPresent());
+        assertTrue(userDAO.findById(loggedIn.getId()).isPresent());
+        assertTrue(userDAO.findById(fresh.getId()).isPresent());
+        userDAO.reclaimSpace();
+        assertTrue(userDAO.findById(fresh.getId()).isPresent());
+    }
+
+    @Test
+    public void testUpdateLastLogin() throws SQLException {
+        User user = userDAO.createUser(newUser("login"));
+        assertNull(userDAO.findById(user.getId()).get().getLastLogin());
+
+        userDAO.updateLastLogin(user.getUsername().toUpperCase());
+
+        assertNotNull(userDAO.findById(user.getId()).get().getLastLogin());
+    }
+
+    @Test
+    public void testGetAllUsersNewestFirst() throws Exception {
+        User older = userDAO.createUser(newUser("older"));
+        Thread.sleep(5);
+        User newer = userDAO.createUser(newUser("newer"));
+
+        List<User> users = userDAO.getAllUsers();
+
+        int olderIndex = indexOf(users, older.getId());
+        int newerIndex = indexOf(users, newer.getId());
+        assertTrue(olderIndex >= 0 && newerIndex >= 0);
+        assertTrue(newerIndex < olderIndex);
+    }
+
+    @Test
+    public void testExportContainsUsers() throws SQLException, IOException {
+        User user = userDAO.createUser(newUser("export"));
+        Path file = Files.createTempFile("contract", ".snapshot");
+        try {
+            long exported = userDAO.exportUsers(file);
+            assertTrue(exported >= 1);
+            assertTrue(Files.size(file) > 0);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        assertTrue(userDAO.findById(user.getId()).isPresent());
+    }
+
+    @Test
+    public void testFindUsersAfterPagesInIdOrder() throws SQLException {
+        Set<Long> created = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            created.add(userDAO.createUser(newUser("page")).getId());
+        }
+
+        Set<Long> seen = new HashSet<>();
+        long after = Collections.min(created) - 1;
+        List<User> page;
+        do {
+            page = userDAO.findUsersAfter(after, 2);
+            assertTrue(page.size() <= 2);
+            for (User user : page) {
+                assertTrue(user.getId() > after);
+                after = user.getId();
+                seen.add(user.getId());
+            }
+        } while (!page.isEmpty());
+        assertTrue(seen.containsAll(created));
+    }
+
+    @Test
+    public void testSearchByPrefixAndSubstringPages() throws SQLException {
+        String base = uniqueName("search");
+        User alpha = userDAO.createUser(new User(base + "_Alpha", "hash", null));
+        User beta = userDAO.createUser(new User(base + "_beta", "hash", null));
+        User alphabet = userDAO.createUser(new User(base + "_alphabet", "hash", null));
+        User inner = userDAO.createUser(new User("x" + base + "_alpha", "hash", null));
+
+        List<User> first = userDAO.findUsersByPrefix(base.toUpperCase(), null, 2);
+        assertEquals(2, first.size());
+        assertEquals(alpha.getId(), first.get(0).getId());
+        assertEquals(alphabet.getId(), first.get(1).getId());
+        List<User> second = userDAO.findUsersByPrefix(base, first.get(1).getUsername(), 2);
+        assertEquals(1, second.size());
+        assertEquals(beta.getId(), second.get(0).getId());
+
+        List<Long> containing = new ArrayList<>();
+        long after = 0;
+        List<User> page;
+        do {
+            page = userDAO.findUsersContaining(base + "_ALPHA", after, 1);
+            for (User user : page) {
+                containing.add(user.getId());
+                after = user.getId();
+            }
+        } while (!page.isEmpty());
+        // Ascending id order, which need not be creation order
+        List<Long> expected = new ArrayList<>(Arrays.asList(alpha.getId(), alphabet.getId(), inner.getId()));
+        Collections.sort(expected);
+        assertEquals(expected, containing);
+
+        assertTrue(userDAO.deleteUser(alphabet.getId()));
+        assertEquals(2, userDAO.findUsersContaining(base + "_alpha", 0, 10).size());
+        assertTrue(userDAO.findUsersByPrefix(uniqueName("missing"), null, 10).isEmpty());
+    }
+
+    @Test
+    public void testPrefixSearchSkipsDeletedUsers() throws SQLException {
+        String base = uniqueName("sorted");
+        User first = userDAO.createUser(new User(base + "_b", "hash", null));
+        User deleted = userDAO.createUser(new User(base + "_c", "hash", null));
+        User kept = userDAO.createUser(new User(base + "_d", "hash", null));
+        assertTrue(userDAO.deleteUser(deleted.getId()));
+
+        List<User> found = userDAO.findUsersByPrefix(base, null, 10);
+        assertEquals(2, found.size());
+        assertEquals(first.getId(), found.get(0).getId());
+        assertEquals(kept.getId(), found.get(1).getId());
+        // A cursor before the prefix starts at the prefix; one past every match ends the search
+        assertEquals(2, userDAO.findUsersByPrefix(base, base.substring(0, 3), 10).size());
+        assertTrue(userDAO.findUsersByPrefix(base, base + "_z", 10).isEmpty());
+        assertTrue(userDAO.findUsersByPrefix(base + "_c", null, 10).isEmpty());
+    }
+
+    @Test
+    public void testRecordMatchesUser() throws SQLException {
+        User created = userDAO.createUser(newUser("record"));
+        userDAO.updateLastLogin(created.getUsername());
+        User user = userDAO.findById(created.getId()).get();
+
+        UserRecord record = userDAO.findRecordByUsername(user.getUsername().toUpperCase()).get();
+        assertEquals(user.getId().longValue(), record.getId());
+        assertEquals(user.getVersion(), record.getVersion());
+        assertEquals(user.getEmail(), record.getEmail());
+        assertEquals(user.getCreatedAt(), record.getCreatedAt());
+        assertEquals(user.getLastLogin(), record.getLastLogin());
+        assertEquals(user.getPassword(), record.toUser().getPassword());
+        assertFalse(userDAO.findRecordByUsername(uniqueName("missing")).isPresent());
+
+        boolean listed = false;
+        for (UserRecord each : userDAO.getAllUserRecords()) {
+            if (each.getId() == user.getId()) {
+                assertNull(each.getPasswordHash());
+                assertEquals(user.getCreatedAt(), each.getCreatedAt());
+                listed = true;
+            }
+        }
+        assertTrue(listed);
+    }
+
+    private static int indexOf(List<User> users, Long id) {
+        for (int i = 0; i < users.size(); i++) {
+            if (users.get(i).getId().equals(id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,111 @@
+package com.login.dao.impl;
+
+import com.login.model.User;
+import com.login.util.Database;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test class for ActiveUserAnalytics
+ */
+public class ActiveUserAnalyticsTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path directory;
+    private Database database;
+    private ActiveUserAnalytics analytics;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = temporaryFolder.newFolder("active-users").toPath();
+        database = Database.fromConfig("jdbc:sqlite:" + directory.resolve("analytics.db"));
+        analytics = new ActiveUserAnalytics(database, 12, 30, 60000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        analytics.close();
+        database.close();
+    }
+
+    @Test
+    public void testDistinctUsersAcrossDays() {
+        long now = System.currentTimeMillis();
+        // Users 0-2999 every day of the last week, users 3000-3999 only six days ago
+        for (int day = 0; day < 7; day++) {
+            for (long id = 0; id < 3000; id++) {
+                analytics.recordLogin(id, now - day * DAY);
+            }
+        }
+        for (long id = 3000; id < 4000; id++) {
+            analytics.recordLogin(id, now - 6 * DAY);
+        }
+        assertEquals(3000, analytics.estimateActiveUsers(1, now), 3000 * 0.08);
+        assertEquals(4000, analytics.estimateActiveUsers(7, now), 4000 * 0.08);
+        assertEquals(0, analytics.estimateActiveUsers(3, now + 30 * DAY));
+    }
+
+    @Test
+    public void testSketchesSurviveRestart() throws Exception {
+        long now = System.currentTimeMillis();
+        for (long id = 0; id < 500; id++) {
+            analytics.recordLogin(id, now);
+        }
+        long estimate = analytics.estimateActiveUsers(1, now);
+        analytics.close();
+
+        analytics = new ActiveUserAnalytics(database, 12, 30, 60000);
+        assertEquals(estimate, analytics.estimateActiveUsers(1, now));
+    }
+
+    @Test
+    public void testCorruptSketchStartsEmpty() throws Exception {
+        long now = System.currentTimeMillis();
+        for (long id = 0; id < 500; id++) {
+            analytics.recordLogin(id, now);
+            analytics.recordLogin(id, now - DAY);
+        }
+        long yesterday = analytics.estimateActiveUsers(1, now - DAY);
+        analytics.close();
+        database.getWriteQueue().execute(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "UPDATE active_user_sketches SET registers = ? WHERE day = ?")) {
+                stmt.setBytes(1, new byte[] { 1, 2, 3 });
+                stmt.setLong(2, Math.floorDiv(now, DAY));
+                return stmt.executeUpdate();
+            }
+        });
+
+        analytics = new ActiveUserAnalytics(database, 12, 30, 60000);
+        assertEquals(0, analytics.estimateActiveUsers(1, now));
+        assertEquals(yesterday, analytics.estimateActiveUsers(1, now - DAY));
+        analytics.recordLogin(7, now);
+        assertEquals(1, analytics.estimateActiveUsers(1, now));
+    }
+
+    @Test
+    public void testEstimateMatchesExactCount() throws Exception {
+        UserDAOImpl userDAO = new UserDAOImpl(database);
+        for (int i = 0; i < 200; i++) {
+            User user = userDAO.createUser(new User("active" + i, "hash", null));
+            if (i % 2 == 0) {
+                userDAO.updateLastLogin(user.getUsername());
+                analytics.recordLogin(user.getId());
+            }
+        }
+        assertEquals(100, analytics.countActiveUsersExact(1));
+        assertEquals(analytics.countActiveUsersExact(30), analytics.estimateActiveUsers(30), 100 * 0.08);
+    }
+}
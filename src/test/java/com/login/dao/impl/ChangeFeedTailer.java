@@ -0,0 +1,53 @@
+package com.login.dao.impl;
+
+import com.login.model.UserChangeEvent;
+import com.login.util.Database;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+
+/**
+ * Stand-in replica run as a separate process by UserChangeFeedTest: tails the change
+ * feed of the given database and prints each event as {@code seq type username}.
+ * <p>
+ * Usage: {@code ChangeFeedTailer <jdbc-url> <after-seq> <count>}
+ */
+public class ChangeFeedTailer {
+
+    public static void main(String[] args) throws Exception {
+        Database database = Database.fromConfig(args[0]);
+        long afterSequence = Long.parseLong(args[1]);
+        int count = Integer.parseInt(args[2]);
+        CountDownLatch done = new CountDownLatch(count);
+
+        try (UserChangeFeed feed = new UserChangeFeed(database, 20)) {
+            feed.subscribe(new Flow.Subscriber<UserChangeEvent>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.request(count);
+                }
+
+                @Override
+                public void onNext(UserChangeEvent event) {
+                    System.out.println(event.getSequence() + " " + event.getType() + " " + event.getUsername());
+                    System.out.flush();
+                    done.countDown();
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    throwable.printStackTrace();
+                    System.exit(1);
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            }, afterSequence);
+            System.out.println("READY");
+            System.out.flush();
+            done.await();
+        }
+        database.close();
+    }
+}
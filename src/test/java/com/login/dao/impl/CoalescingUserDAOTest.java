@@ -0,0 +1,221 @@
+package com.login.dao.impl;
+
+import com.login.dao.UserDAO;
+import com.login.dao.UserDAOContract;
+import com.login.model.User;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs the UserDAO contract through the coalescing wrapper, plus its sharing of
+ * concurrent lookups
+ */
+public class CoalescingUserDAOTest extends UserDAOContract {
+
+    private static final int CALLERS = 8;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path directory;
+    private GatedUserDAO backing;
+
+    /**
+     * In-memory DAO whose username lookups wait for the test to open the gate
+     */
+    private static class GatedUserDAO extends InMemoryUserDAO {
+        final AtomicInteger queries = new AtomicInteger();
+        volatile CountDownLatch gate = new CountDownLatch(0);
+        volatile boolean failing;
+
+        GatedUserDAO(Path directory) throws IOException {
+            super(directory, 0, false);
+        }
+
+        @Override
+        public Optional<User> findByUsername(String username) throws SQLException {
+            queries.incrementAndGet();
+            try {
+                gate.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failing) {
+                throw new SQLException("database is locked", "HY000", 5);
+            }
+            return super.findByUsername(username);
+        }
+    }
+
+    @Override
+    protected UserDAO createDAO() throws IOException {
+        directory = temporaryFolder.newFolder("coalescing-users").toPath();
+        backing = new GatedUserDAO(directory);
+        return new CoalescingUserDAO(backing);
+    }
+
+    @Override
+    protected void closeDAO(UserDAO dao) throws IOException {
+        backing.close();
+    }
+
+    @Test
+    public void testConcurrentLookupsShareOneQuery() throws Exception {
+        CoalescingUserDAO dao = (CoalescingUserDAO) userDAO;
+        User created = dao.createUser(newUser("shared"));
+        backing.queries.set(0);
+        backing.gate = new CountDownLatch(1);
+
+        List<Future<Optional<User>>> results = lookUpConcurrently(dao, created.getUsername().toUpperCase());
+        List<User> users = new ArrayList<>();
+        for (Future<Optional<User>> result : results) {
+            users.add(result.get(10, TimeUnit.SECONDS).get());
+        }
+
+        assertEquals(1, backing.queries.get());
+        assertEquals(CALLERS, dao.getLookupCount());
+        assertEquals(CALLERS - 1, dao.getCoalescedCount());
+        for (User user : users) {
+            assertEquals(created.getId(), user.getId());
+        }
+        // Callers get their own copies
+        users.get(0).setEmail("changed@example.com");
+        assertEquals(created.getEmail(), users.get(1).getEmail());
+    }
+
+    @Test
+    public void testSharedFailureReachesEveryCaller() throws Exception {
+        CoalescingUserDAO dao = (CoalescingUserDAO) userDAO;
+        User created = dao.createUser(newUser("failing"));
+        backing.failing = true;
+        backing.gate = new CountDownLatch(1);
+
+        List<Future<Optional<User>>> results = lookUpConcurrently(dao, created.getUsername());
+        for (Future<Optional<User>> result : results) {
+            try {
+                result.get(10, TimeUnit.SECONDS);
+                fail("Expected the lookup to fail");
+            } catch (ExecutionException e) {
+                SQLException failure = (SQLException) e.getCause();
+                assertEquals("database is locked", failure.getMessage());
+                assertEquals(5, failure.getErrorCode());
+            }
+        }
+
+        // Nothing is remembered once the query is done
+        backing.failing = false;
+        assertTrue(dao.findByUsername(created.getUsername()).isPresent());
+    }
+
+    @Test
+    public void testLoginStormKeepsLookupsShared() throws Exception {
+        CoalescingUserDAO dao = (CoalescingUserDAO) userDAO;
+        User created = dao.createUser(newUser("storm"));
+        User bystander = dao.createUser(newUser("bystander"));
+        backing.queries.set(0);
+        backing.gate = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2 * CALLERS);
+        try {
+            List<Future<Optional<User>>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(() -> dao.findByUsername(created.getUsername())));
+            }
+            waitFor("callers to join", () -> dao.getCoalescedCount() == CALLERS - 1);
+
+            // Logins stamp the user and other users change while the query is in flight
+            for (int i = 0; i < CALLERS; i++) {
+                dao.updateLastLogin(created.getUsername());
+            }
+            bystander.setEmail("bystander.moved@example.com");
+            assertTrue(dao.updateUser(bystander));
+            dao.createUser(newUser("newcomer"));
+
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(() -> dao.findByUsername(created.getUsername())));
+            }
+            waitFor("late callers to join", () -> dao.getCoalescedCount() == 2 * CALLERS - 1);
+            backing.gate.countDown();
+            for (Future<Optional<User>> result : results) {
+                assertEquals(created.getId(), result.get(10, TimeUnit.SECONDS).get().getId());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, backing.queries.get());
+    }
+
+    @Test
+    public void testWriteDetachesThatUsersLookups() throws Exception {
+        CoalescingUserDAO dao = (CoalescingUserDAO) userDAO;
+        User created = dao.createUser(newUser("detached"));
+        backing.queries.set(0);
+        backing.gate = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS + 1);
+        try {
+            List<Future<Optional<User>>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(() -> dao.findByUsername(created.getUsername())));
+            }
+            waitFor("callers to join", () -> dao.getCoalescedCount() == CALLERS - 1);
+
+            created.setEmail("detached.moved@example.com");
+            assertTrue(dao.updateUser(created));
+            // A lookup after the write runs its own query
+            Future<Optional<User>> after = executor.submit(() -> dao.findByUsername(created.getUsername()));
+            waitFor("a second query", () -> backing.queries.get() == 2);
+            backing.gate.countDown();
+
+            assertEquals("detached.moved@example.com", after.get(10, TimeUnit.SECONDS).get().getEmail());
+            for (Future<Optional<User>> result : results) {
+                assertEquals(created.getId(), result.get(10, TimeUnit.SECONDS).get().getId());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(CALLERS - 1, dao.getCoalescedCount());
+    }
+
+    private List<Future<Optional<User>>> lookUpConcurrently(CoalescingUserDAO dao, String username)
+            throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        List<Future<Optional<User>>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(() -> dao.findByUsername(username)));
+            }
+            // Release the query only once every caller has joined it
+            waitFor("callers", () -> dao.getCoalescedCount() >= CALLERS - 1);
+            backing.gate.countDown();
+        } finally {
+            executor.shutdown();
+        }
+        return results;
+    }
+
+    private static void waitFor(String what, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out waiting for " + what, System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+}
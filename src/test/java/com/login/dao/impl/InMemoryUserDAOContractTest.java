@@ -0,0 +1,186 @@
+package com.login.dao.impl;
+
+import com.login.dao.UserDAO;
+import com.login.dao.UserDAOContract;
+import com.login.model.User;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the UserDAO contract against the in-memory implementation,
+ * plus its snapshot and change-log recovery
+ */
+public class InMemoryUserDAOContractTest extends UserDAOContract {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path directory;
+
+    @Override
+    protected UserDAO createDAO() throws IOException {
+        directory = temporaryFolder.newFolder("inmemory-users").toPath();
+        return new InMemoryUserDAO(directory, 0, false);
+    }
+
+    @Override
+    protected void closeDAO(UserDAO dao) throws IOException {
+        ((InMemoryUserDAO) dao).close();
+    }
+
+    @Test
+    public void testRecoversFromSnapshotAndLog() throws Exception {
+        InMemoryUserDAO dao = (InMemoryUserDAO) userDAO;
+        User kept = dao.createUser(newUser("kept"));
+        User deleted = dao.createUser(newUser("deleted"));
+        dao.takeSnapshot();
+
+        // Changes after the snapshot live only in the change log
+        User afterSnapshot = dao.createUser(newUser("after"));
+        dao.deleteUser(deleted.getId());
+        String originalName = kept.getUsername();
+        kept.setUsername(uniqueName("renamed"));
+        kept.setEmail("updated@example.com");
+        dao.updateUser(kept);
+        dao.updateLastLogin(kept.getUsername());
+        dao.close();
+
+        try (InMemoryUserDAO reopened = new InMemoryUserDAO(directory, 0, false)) {
+            assertEquals(2, reopened.size());
+            User recovered = reopened.findByUsername(kept.getUsername()).get();
+            assertEquals("updated@example.com", recovered.getEmail());
+            assertEquals(1, recovered.getVersion());
+            assertNotNull(recovered.getLastLogin());
+            assertEquals(kept.getId(), reopened.findUsersByPrefix(kept.getUsername(), null, 10).get(0).getId());
+            assertTrue(reopened.findUsersByPrefix(originalName, null, 10).isEmpty());
+            assertTrue(reopened.findById(afterSnapshot.getId()).isPresent());
+            assertFalse(reopened.findById(deleted.getId()).isPresent());
+
+            // New ids continue after the recovered ones
+            User next = reopened.createUser(newUser("next"));
+            assertTrue(next.getId() > afterSnapshot.getId());
+        }
+        userDAO = new InMemoryUserDAO(directory, 0, false);
+    }
+
+    @Test
+    public void testDeletedIdsAreNotReusedAfterSnapshot() throws Exception {
+        InMemoryUserDAO dao = (InMemoryUserDAO) userDAO;
+        dao.createUser(newUser("low"));
+        User highest = dao.createUser(newUser("highest"));
+        dao.deleteUser(highest.getId());
+        // The snapshot drops the log that still mentioned the deleted user
+        dao.takeSnapshot();
+        dao.close();
+
+        try (InMemoryUserDAO reopened = new InMemoryUserDAO(directory, 0, false)) {
+            assertEquals(1, reopened.size());
+            User next = reopened.createUser(newUser("next"));
+            assertTrue("Reused id " + next.getId(), next.getId() > highest.getId());
+        }
+        userDAO = new InMemoryUserDAO(directory, 0, false);
+    }
+
+    @Test
+    public void testHoldsUsersInLessHeapThanUserObjects() throws Exception {
+        int count = 20_000;
+        // The strings are shared by every layout, so only the per-user structure is compared
+        String[][] fields = new String[count][];
+        for (int i = 0; i < count; i++) {
+            fields[i] = new String[] { "heap_user_" + i, "$2a$12$" + i + "abcdefghijklmnopqrstuvwxyzabcdefghijklmnopq", "heap" + i + "@example.com" };
+        }
+        LocalDateTime now = LocalDateTime.now();
+
+        long before = usedHeap();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            User user = new User(fields[i][0], fields[i][1], fields[i][2]);
+            user.setId((long) i + 1);
+            user.setCreatedAt(now.minusDays(i % 700).plusSeconds(i));
+            user.setLastLogin(now.minusDays(i % 30).plusSeconds(i));
+            users.add(user);
+        }
+        long listBytes = (usedHeap() - before) / count;
+        // What the same lookups by id and username need when kept as User objects
+        Map<Long, User> byId = new HashMap<>();
+        Map<String, User> byUsername = new HashMap<>();
+        for (User user : users) {
+            byId.put(user.getId(), user);
+            byUsername.put(user.getUsername(), user);
+        }
+        long indexedBytes = (usedHeap() - before) / count;
+        assertEquals(count, byId.size() + byUsername.size() - users.size());
+        users = null;
+        byId = null;
+        byUsername = null;
+
+        before = usedHeap();
+        try (InMemoryUserDAO dao = new InMemoryUserDAO(temporaryFolder.newFolder("heap").toPath(), 0, false)) {
+            for (int i = 0; i < count; i++) {
+                dao.updateLastLogin(dao.createUser(new User(fields[i][0], fields[i][1], fields[i][2])).getUsername());
+            }
+            long daoBytes = (usedHeap() - before) / count;
+            assertEquals(count, dao.size());
+            String sizes = daoBytes + " bytes per user, List<User> " + listBytes + ", with lookup maps " + indexedBytes;
+            assertTrue(sizes, daoBytes < listBytes);
+            assertTrue(sizes, daoBytes * 4 < indexedBytes * 3);
+        }
+    }
+
+    @Test
+    public void testTornLogTailIsDiscarded() throws Exception {
+        InMemoryUserDAO dao = (InMemoryUserDAO) userDAO;
+        User user = dao.createUser(newUser("torn"));
+        dao.close();
+
+        Path log = directory.resolve("changes-0.log");
+        Files.write(log, new byte[] { 0, 0, 0, 40, 1, 2, 3 }, StandardOpenOption.APPEND);
+
+        try (InMemoryUserDAO reopened = new InMemoryUserDAO(directory, 0, false)) {
+            assertTrue(reopened.findById(user.getId()).isPresent());
+            User second = reopened.createUser(newUser("second"));
+            assertNotNull(second.getId());
+        }
+        try (InMemoryUserDAO reopened = new InMemoryUserDAO(directory, 0, false)) {
+            assertEquals(2, reopened.size());
+        }
+        userDAO = new InMemoryUserDAO(directory, 0, false);
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Test
+    public void testImportFromExport() throws Exception {
+        for (int i = 0; i < 2500; i++) {
+            userDAO.createUser(newUser("bulk"));
+        }
+        Path file = Files.createTempFile("inmemory", ".snapshot");
+        Path otherDirectory = temporaryFolder.newFolder("inmemory-import").toPath();
+        try (InMemoryUserDAO other = new InMemoryUserDAO(otherDirectory, 0, false)) {
+            assertEquals(2500, userDAO.exportUsers(file));
+            assertEquals(2500, other.importUsers(file));
+            assertEquals(2500, other.size());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
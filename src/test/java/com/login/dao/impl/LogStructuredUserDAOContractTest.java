@@ -0,0 +1,142 @@
+package com.login.dao.impl;
+
+import com.login.dao.UserDAO;
+import com.login.dao.UserDAOContract;
+import com.login.model.User;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Runs the UserDAO contract against the log-structured implementation,
+ * plus its recovery and compaction
+ */
+public class LogStructuredUserDAOContractTest extends UserDAOContract {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path directory;
+
+    @Override
+    protected UserDAO createDAO() throws IOException {
+        directory = temporaryFolder.newFolder("log-users").toPath();
+        return open();
+    }
+
+    @Override
+    protected void closeDAO(UserDAO dao) throws IOException {
+        ((LogStructuredUserDAO) dao).close();
+    }
+
+    private LogStructuredUserDAO open() throws IOException {
+        return new LogStructuredUserDAO(directory, SEGMENT_SIZE, false, 0.5, 0);
+    }
+
+    @Test
+    public void testRecoversAfterReopen() throws Exception {
+        LogStructuredUserDAO dao = (LogStructuredUserDAO) userDAO;
+        User kept = dao.createUser(newUser("kept"));
+        User deleted = dao.createUser(newUser("deleted"));
+        dao.deleteUser(deleted.getId());
+        String originalName = kept.getUsername();
+        kept.setUsername(uniqueName("renamed"));
+        kept.setEmail("updated@example.com");
+        dao.updateUser(kept);
+        dao.updateLastLogin(kept.getUsername());
+        dao.close();
+
+        try (LogStructuredUserDAO reopened = open()) {
+            assertEquals(1, reopened.size());
+            User recovered = reopened.findByUsername(kept.getUsername()).get();
+            assertEquals("updated@example.com", recovered.getEmail());
+            assertEquals(1, recovered.getVersion());
+            assertNotNull(recovered.getLastLogin());
+            assertEquals(kept.getId(), reopened.findUsersByPrefix(kept.getUsername(), null, 10).get(0).getId());
+            assertTrue(reopened.findUsersByPrefix(originalName, null, 10).isEmpty());
+            assertFalse(reopened.findById(deleted.getId()).isPresent());
+            assertTrue(reopened.createUser(newUser("next")).getId() > deleted.getId());
+        }
+        userDAO = open();
+    }
+
+    @Test
+    public void testTornEntryIsDiscarded() throws Exception {
+        LogStructuredUserDAO dao = (LogStructuredUserDAO) userDAO;
+        User user = dao.createUser(newUser("torn"));
+        User torn = dao.createUser(newUser("torn"));
+        dao.close();
+
+        // Flip a byte inside the second entry so its checksum no longer matches
+        Path file = directory.resolve("users-0.data");
+        int firstEntry = 2 * Integer.BYTES + 1 + UserSnapshotWriter.encodeRecord(user).length;
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(firstEntry + 20);
+            raf.write(raf.read() ^ 0xFF);
+        }
+
+        try (LogStructuredUserDAO reopened = open()) {
+            assertTrue(reopened.findById(user.getId()).isPresent());
+            assertFalse(reopened.findById(torn.getId()).isPresent());
+            reopened.createUser(newUser("second"));
+        }
+        try (LogStructuredUserDAO reopened = open()) {
+            assertEquals(2, reopened.size());
+        }
+        userDAO = open();
+    }
+
+    @Test
+    public void testCompactionKeepsLiveRecords() throws Exception {
+        LogStructuredUserDAO dao = (LogStructuredUserDAO) userDAO;
+        User user = dao.createUser(newUser("compact"));
+        // Enough rewrites to spill into several segments
+        for (int i = 0; i < 2000; i++) {
+            dao.updateLastLogin(user.getUsername());
+        }
+        User removed = dao.createUser(newUser("removed"));
+        dao.deleteUser(removed.getId());
+        assertTrue(dao.getGarbageRatio() > 0.9);
+
+        dao.compact();
+        assertTrue(dao.getGarbageRatio() < 0.1);
+        assertTrue(Files.exists(directory.resolve("users-1.data")));
+        assertFalse(Files.exists(directory.resolve("users-0.data")));
+        assertEquals(user.getEmail(), dao.findById(user.getId()).get().getEmail());
+        assertEquals(user.getId(), dao.findUsersByPrefix(user.getUsername(), null, 10).get(0).getId());
+        dao.close();
+
+        try (LogStructuredUserDAO reopened = open()) {
+            assertEquals(1, reopened.size());
+            assertNotNull(reopened.findByUsername(user.getUsername()).get().getLastLogin());
+            assertFalse(reopened.findById(removed.getId()).isPresent());
+        }
+        userDAO = open();
+    }
+
+    @Test
+    public void testDeletedIdsAreNotReusedAfterCompaction() throws Exception {
+        LogStructuredUserDAO dao = (LogStructuredUserDAO) userDAO;
+        dao.createUser(newUser("low"));
+        User highest = dao.createUser(newUser("highest"));
+        dao.deleteUser(highest.getId());
+        // Compaction drops every entry that mentioned the deleted user
+        dao.compact();
+        dao.close();
+
+        try (LogStructuredUserDAO reopened = open()) {
+            assertEquals(1, reopened.size());
+            User next = reopened.createUser(newUser("next"));
+            assertTrue("Reused id " + next.getId(), next.getId() > highest.getId());
+        }
+        userDAO = open();
+    }
+}
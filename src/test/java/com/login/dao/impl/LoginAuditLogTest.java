@@ -0,0 +1,140 @@
+package com.login.dao.impl;
+
+import com.login.model.LoginEvent;
+import com.login.util.Database;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test class for LoginAuditLog
+ */
+public class LoginAuditLogTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path directory;
+    private Database database;
+    private LoginAuditLog auditLog;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = temporaryFolder.newFolder("login-audit").toPath();
+        database = Database.fromConfig("jdbc:sqlite:" + directory.resolve("audit.db"));
+        auditLog = new LoginAuditLog(database, 4096, 60000, 30, 100);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        auditLog.close();
+        database.close();
+    }
+
+    @Test
+    public void testEventsAreWrittenOnFlush() throws Exception {
+        auditLog.record("alice", LoginEvent.Outcome.BAD_PASSWORD, "desktop");
+        auditLog.record("alice", LoginEvent.Outcome.SUCCESS, "desktop");
+        auditLog.record("bob", LoginEvent.Outcome.UNKNOWN_USER, null);
+        assertTrue(auditLog.findRecentEvents("alice", 10).isEmpty());
+
+        auditLog.flush();
+
+        List<LoginEvent> events = auditLog.findRecentEvents("ALICE", 10);
+        assertEquals(2, events.size());
+        assertEquals(LoginEvent.Outcome.SUCCESS, events.get(0).getOutcome());
+        assertEquals(LoginEvent.Outcome.BAD_PASSWORD, events.get(1).getOutcome());
+        assertEquals("desktop", events.get(0).getClient());
+        assertNull(auditLog.findRecentEvents("bob", 10).get(0).getClient());
+    }
+
+    @Test
+    public void testLargeBurstIsWrittenInBatches() throws Exception {
+        for (int i = 0; i < 3000; i++) {
+            auditLog.record("burst", LoginEvent.Outcome.SUCCESS, "client" + i);
+        }
+        auditLog.flush();
+        assertEquals(3000, auditLog.findRecentEvents("burst", 5000).size());
+        assertEquals(0, auditLog.getDroppedCount());
+    }
+
+    @Test
+    public void testFullBufferDropsInsteadOfBlocking() throws Exception {
+        LoginAuditLog small = new LoginAuditLog(database, 8, 60000, 30, 100);
+        try {
+            for (int i = 0; i < 20; i++) {
+                small.record("flood", LoginEvent.Outcome.BAD_PASSWORD, null);
+            }
+            assertEquals(12, small.getDroppedCount());
+            small.flush();
+            assertEquals(8, small.findRecentEvents("flood", 100).size());
+        } finally {
+            small.close();
+        }
+    }
+
+    @Test
+    public void testFailedWriteIsRetriedThenDropped() throws Exception {
+        auditLog.record("retry", LoginEvent.Outcome.SUCCESS, null);
+        auditLog.record("retry", LoginEvent.Outcome.BAD_PASSWORD, null);
+        renameTable("login_events", "login_events_away");
+        try {
+            auditLog.flush();
+            fail("Expected the write to fail");
+        } catch (SQLException expected) {
+        }
+        renameTable("login_events_away", "login_events");
+
+        // The failed batch is written on the next flush, ahead of newer events
+        auditLog.record("retry", LoginEvent.Outcome.UNKNOWN_USER, null);
+        auditLog.flush();
+        assertEquals(3, auditLog.findRecentEvents("retry", 10).size());
+        assertEquals(0, auditLog.getDroppedCount());
+
+        auditLog.record("lost", LoginEvent.Outcome.SUCCESS, null);
+        renameTable("login_events", "login_events_away");
+        for (int attempt = 0; attempt < 3; attempt++) {
+            try {
+                auditLog.flush();
+                fail("Expected the write to fail");
+            } catch (SQLException expected) {
+            }
+        }
+        renameTable("login_events_away", "login_events");
+        auditLog.flush();
+        assertEquals(1, auditLog.getDroppedCount());
+        assertTrue(auditLog.findRecentEvents("lost", 10).isEmpty());
+    }
+
+    private void renameTable(String from, String to) throws SQLException {
+        database.getWriteQueue().execute(conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                return stmt.executeUpdate("ALTER TABLE " + from + " RENAME TO " + to);
+            }
+        });
+    }
+
+    @Test
+    public void testRetentionDeletesExpiredEventsInChunks() throws Exception {
+        long expired = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(31);
+        for (int i = 0; i < 250; i++) {
+            auditLog.record(new LoginEvent("old", LoginEvent.Outcome.SUCCESS, null, expired + i));
+        }
+        auditLog.record("recent", LoginEvent.Outcome.SUCCESS, null);
+        auditLog.flush();
+
+        assertEquals(250, auditLog.purgeExpired());
+        assertTrue(auditLog.findRecentEvents("old", 10).isEmpty());
+        assertEquals(1, auditLog.findRecentEvents("recent", 10).size());
+        assertEquals(0, auditLog.purgeExpired());
+    }
+}
@@ -0,0 +1,154 @@
+package com.login.dao.impl;
+
+import com.login.dao.UserDAO;
+import com.login.dao.UserDAOContract;
+import com.login.model.User;
+import com.login.model.UserChangeEvent;
+import com.login.util.Database;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the UserDAO contract against three SQLite shards,
+ * plus shard routing and offline rebalancing
+ */
+public class ShardedUserDAOContractTest extends UserDAOContract {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path directory;
+
+    @Override
+    protected UserDAO createDAO() throws IOException {
+        directory = temporaryFolder.newFolder("sharded-users").toPath();
+        return new ShardedUserDAO(openShards("shard", 3));
+    }
+
+    @Override
+    protected void closeDAO(UserDAO dao) throws IOException {
+        ((ShardedUserDAO) dao).close();
+    }
+
+    private List<Database> openShards(String prefix, int count) {
+        List<Database> databases = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            databases.add(Database.fromConfig("jdbc:sqlite:" + directory.resolve(prefix + "-" + i + ".db")));
+        }
+        return databases;
+    }
+
+    @Test
+    public void testIdsEncodeTheUsernameShard() throws Exception {
+        int[] perShard = new int[3];
+        for (int i = 0; i < 30; i++) {
+            User user = userDAO.createUser(newUser("route"));
+            int shard = ShardedUserDAO.shardOf(user.getId());
+            assertEquals(ShardedUserDAO.shardFor(user.getUsername(), 3), shard);
+            perShard[shard]++;
+        }
+        for (int count : perShard) {
+            assertTrue(count > 0);
+        }
+    }
+
+    @Test(expected = java.sql.SQLException.class)
+    public void testRenameAcrossShardsIsRejected() throws Exception {
+        User user = userDAO.createUser(newUser("rename"));
+        String renamed;
+        do {
+            renamed = uniqueName("renamed");
+        } while (ShardedUserDAO.shardFor(renamed, 3) == ShardedUserDAO.shardOf(user.getId()));
+        user.setUsername(renamed);
+        userDAO.updateUser(user);
+    }
+
+    @Test
+    public void testRebalanceToTwoShards() throws Exception {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            users.add(userDAO.createUser(newUser("move")));
+        }
+        userDAO.updateLastLogin(users.get(0).getUsername());
+        ((ShardedUserDAO) userDAO).close();
+
+        List<Database> sources = openShards("shard", 3);
+        List<Database> targets = openShards("target", 2);
+        Path idMap = directory.resolve("id-map.csv");
+        long[] counts = ShardRebalancer.rebalance(sources, targets, idMap);
+        sources.forEach(Database::close);
+        assertEquals(50, counts[0] + counts[1]);
+        assertEquals(50, Files.readAllLines(idMap).size());
+
+        ShardedUserDAO rebalanced = new ShardedUserDAO(targets);
+        userDAO = rebalanced;
+        assertEquals(50, rebalanced.getAllUsers().size());
+        for (User user : users) {
+            User moved = rebalanced.findByUsername(user.getUsername()).get();
+            assertEquals(ShardedUserDAO.shardFor(user.getUsername(), 2), ShardedUserDAO.shardOf(moved.getId()));
+            assertEquals(user.getCreatedAt().truncatedTo(ChronoUnit.MILLIS), moved.getCreatedAt());
+            assertEquals(moved.getUsername(), rebalanced.findById(moved.getId()).get().getUsername());
+        }
+        assertNotNull(rebalanced.findByUsername(users.get(0).getUsername()).get().getLastLogin());
+    }
+
+    @Test
+    public void testChangeFeedsCarryGlobalIds() throws Exception {
+        ShardedUserDAO dao = (ShardedUserDAO) userDAO;
+        Map<Long, String> created = new HashMap<>();
+        for (int i = 0; i < 12; i++) {
+            User user = dao.createUser(newUser("feed"));
+            created.put(user.getId(), user.getUsername());
+        }
+
+        Map<Long, String> published = new HashMap<>();
+        for (int shard = 0; shard < dao.getShardCount(); shard++) {
+            BlockingQueue<UserChangeEvent> events = new LinkedBlockingQueue<>();
+            try (UserChangeFeed feed = dao.openChangeFeed(shard, 10)) {
+                feed.subscribe(new Flow.Subscriber<UserChangeEvent>() {
+                    @Override
+                    public void onSubscribe(Flow.Subscription subscription) {
+                        subscription.request(Long.MAX_VALUE);
+                    }
+
+                    @Override
+                    public void onNext(UserChangeEvent event) {
+                        events.add(event);
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                    }
+
+                    @Override
+                    public void onComplete() {
+                    }
+                });
+                long latest = feed.getLatestSequence();
+                UserChangeEvent event;
+                do {
+                    event = events.poll(5, TimeUnit.SECONDS);
+                    assertNotNull("Timed out waiting for shard " + shard, event);
+                    assertEquals(shard, ShardedUserDAO.shardOf(event.getUserId()));
+                    published.put(event.getUserId(), event.getUsername());
+                } while (event.getSequence() < latest);
+            }
+        }
+        assertEquals(created, published);
+    }
+}
@@ -0,0 +1,277 @@
+package com.login.dao.impl;
+
+import com.login.dao.ChangePositionExpiredException;
+import com.login.model.User;
+import com.login.model.UserChangeEvent;
+import com.login.util.Database;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test class for the user_changes outbox and UserChangeFeed
+ */
+public class UserChangeFeedTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path directory;
+    private String url;
+    private Database database;
+    private UserDAOImpl userDAO;
+    private UserChangeFeed feed;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = temporaryFolder.newFolder("change-feed").toPath();
+        url = "jdbc:sqlite:" + directory.resolve("feed.db");
+        database = Database.fromConfig(url);
+        userDAO = new UserDAOImpl(database);
+        feed = new UserChangeFeed(database, 10);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        feed.close();
+        database.close();
+    }
+
+    /**
+     * Collects events into a queue and exposes the subscription for manual requests
+     */
+    private static class CollectingSubscriber implements Flow.Subscriber<UserChangeEvent> {
+        final BlockingQueue<UserChangeEvent> events = new LinkedBlockingQueue<>();
+        volatile Flow.Subscription subscription;
+        volatile Throwable error;
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(UserChangeEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+
+        UserChangeEvent next() throws InterruptedException {
+            UserChangeEvent event = events.poll(5, TimeUnit.SECONDS);
+            assertNotNull("Timed out waiting for a change event", event);
+            return event;
+        }
+    }
+
+    private User createWithHistory() throws Exception {
+        User user = userDAO.createUser(new User("feed_user", "$2a$12$notarealhash", "feed@example.com"));
+        user.setEmail("changed@example.com");
+        userDAO.updateUser(user);
+        userDAO.updateLastLogin(user.getUsername());
+        userDAO.deleteUser(user.getId());
+        return user;
+    }
+
+    @Test
+    public void testEventsArriveInOrderWithinDemand() throws Exception {
+        User user = createWithHistory();
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        feed.subscribe(subscriber);
+
+        subscriber.subscription.request(2);
+        UserChangeEvent created = subscriber.next();
+        UserChangeEvent updated = subscriber.next();
+        assertEquals(UserChangeEvent.Type.CREATED, created.getType());
+        assertEquals(UserChangeEvent.Type.UPDATED, updated.getType());
+        assertEquals(user.getId().longValue(), created.getUserId());
+        assertEquals(1, updated.getVersion());
+        assertTrue(updated.getSequence() > created.getSequence());
+
+        // Nothing beyond the requested two
+        assertNull(subscriber.events.poll(200, TimeUnit.MILLISECONDS));
+
+        subscriber.subscription.request(10);
+        assertEquals(UserChangeEvent.Type.LAST_LOGIN, subscriber.next().getType());
+        UserChangeEvent deleted = subscriber.next();
+        assertEquals(UserChangeEvent.Type.DELETED, deleted.getType());
+        assertEquals("feed_user", deleted.getUsername());
+        assertEquals(deleted.getSequence(), feed.getLatestSequence());
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    public void testResumeFromSequence() throws Exception {
+        createWithHistory();
+        CollectingSubscriber first = new CollectingSubscriber();
+        feed.subscribe(first);
+        first.subscription.request(2);
+        first.next();
+        long resumeAfter = first.next().getSequence();
+        first.subscription.cancel();
+
+        CollectingSubscriber resumed = new CollectingSubscriber();
+        feed.subscribe(resumed, resumeAfter);
+        resumed.subscription.request(Long.MAX_VALUE);
+        assertEquals(UserChangeEvent.Type.LAST_LOGIN, resumed.next().getType());
+
+        // New changes keep flowing to an unbounded subscriber
+        assertEquals(UserChangeEvent.Type.DELETED, resumed.next().getType());
+        userDAO.createUser(new User("feed_later", "$2a$12$notarealhash", "later@example.com"));
+        assertEquals("feed_later", resumed.next().getUsername());
+    }
+
+    @Test
+    public void testFailedMutationLeavesNoEvent() throws Exception {
+        userDAO.createUser(new User("feed_dup", "$2a$12$notarealhash", "dup@example.com"));
+        try {
+            userDAO.createUser(new User("FEED_DUP", "$2a$12$notarealhash", "dup@example.com"));
+            fail("Expected a unique constraint violation");
+        } catch (java.sql.SQLException expected) {
+        }
+        assertEquals(1, feed.getLatestSequence());
+        assertEquals(1, feed.purgeThrough(1));
+    }
+
+    @Test
+    public void testOutboxKeepsOnlyRetainedEvents() throws Exception {
+        UserDAOImpl retaining = new UserDAOImpl(database, 100);
+        User user = retaining.createUser(new User("feed_busy", "$2a$12$notarealhash", null));
+        for (int i = 0; i < 500; i++) {
+            retaining.updateLastLogin(user.getUsername());
+        }
+
+        // Trimmed every 100 events, so never more than twice the retained count
+        assertEquals(501, feed.getLatestSequence());
+        long retained;
+        try (Connection conn = database.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*), MIN(seq) FROM user_changes")) {
+            rs.next();
+            retained = rs.getLong(1);
+            assertEquals(502 - retained, rs.getLong(2));
+        }
+        assertTrue("Outbox holds " + retained + " events", retained >= 100 && retained <= 200);
+
+        // A subscriber from the start gets the retained tail, in order
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        feed.subscribe(subscriber);
+        subscriber.subscription.request(1);
+        assertEquals(502 - retained, subscriber.next().getSequence());
+    }
+
+    @Test
+    public void testExpiredPositionIsSignalled() throws Exception {
+        UserDAOImpl retaining = new UserDAOImpl(database, 100);
+        User user = retaining.createUser(new User("feed_stale", "$2a$12$notarealhash", null));
+        for (int i = 0; i < 300; i++) {
+            retaining.updateLastLogin(user.getUsername());
+        }
+
+        // Signalled on subscribe, before any demand, rather than skipping the trimmed events
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        feed.subscribe(subscriber, 1);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (subscriber.error == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue("Expected an expired position, got " + subscriber.error,
+                subscriber.error instanceof ChangePositionExpiredException);
+        ChangePositionExpiredException expired = (ChangePositionExpiredException) subscriber.error;
+        assertEquals(1, expired.getAfterSequence());
+        assertTrue(expired.getOldestSequence() > 2);
+        assertTrue(subscriber.events.isEmpty());
+
+        // Resubscribing from the latest sequence works
+        CollectingSubscriber resynced = new CollectingSubscriber();
+        feed.subscribe(resynced, feed.getLatestSequence());
+        resynced.subscription.request(1);
+        retaining.updateLastLogin(user.getUsername());
+        assertEquals(feed.getLatestSequence(), resynced.next().getSequence());
+        assertNull(resynced.error);
+    }
+
+    @Test
+    public void testCloseCompletesAfterDeliveryInProgress() throws Exception {
+        userDAO.createUser(new User("feed_slow", "$2a$12$notarealhash", null));
+        CountDownLatch inOnNext = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CollectingSubscriber subscriber = new CollectingSubscriber() {
+            @Override
+            public void onNext(UserChangeEvent event) {
+                inOnNext.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.onNext(event);
+            }
+        };
+        feed.subscribe(subscriber);
+        subscriber.subscription.request(1);
+        assertTrue(inOnNext.await(5, TimeUnit.SECONDS));
+
+        // Completion waits for onNext to return instead of overlapping it
+        feed.close();
+        assertEquals(1, subscriber.completed.getCount());
+        release.countDown();
+        assertTrue(subscriber.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, subscriber.events.size());
+    }
+
+    @Test(timeout = 60000)
+    public void testSecondProcessTailsFeed() throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process tailer = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                ChangeFeedTailer.class.getName(), url, "0", "3")
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        try (BufferedReader out = new BufferedReader(
+                new InputStreamReader(tailer.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = out.readLine()) != null && !line.equals("READY")) {
+                // Skip start-up output
+            }
+            assertEquals("READY", line);
+
+            User user = userDAO.createUser(new User("replica_user", "$2a$12$notarealhash", "replica@example.com"));
+            userDAO.updateLastLogin(user.getUsername());
+            userDAO.deleteUser(user.getId());
+
+            assertTrue(out.readLine().endsWith(" CREATED replica_user"));
+            assertTrue(out.readLine().endsWith(" LAST_LOGIN replica_user"));
+            assertTrue(out.readLine().endsWith(" DELETED replica_user"));
+        } finally {
+            assertTrue(tailer.waitFor(30, TimeUnit.SECONDS));
+            tailer.destroy();
+        }
+        assertEquals(0, tailer.exitValue());
+    }
+}
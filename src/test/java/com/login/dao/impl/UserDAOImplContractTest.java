@@ -0,0 +1,15 @@
+package com.login.dao.impl;
+
+import com.login.dao.UserDAO;
+import com.login.dao.UserDAOContract;
+
+/**
+ * Runs the UserDAO contract against the SQLite implementation
+ */
+public class UserDAOImplContractTest extends UserDAOContract {
+
+    @Override
+    protected UserDAO createDAO() {
+        return new UserDAOImpl();
+    }
+}
@@ -0,0 +1,246 @@
+package com.login.dao.impl;
+
+import com.login.dao.VersionConflictException;
+import com.login.model.User;
+import com.login.util.Database;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Query plan regression tests for UserDAOImpl.
+ * <p>
+ * Every DAO method runs against a seeded users table through connections that record
+ * the SQL they are given; each recorded statement is then checked with EXPLAIN QUERY
+ * PLAN. A statement with a WHERE clause must find its rows by index rather than scan
+ * users, and no statement may sort through a temporary b-tree. The check runs once per
+ * table size in -Dqueryplan.sizes (default 10^4 rows; e.g. 10000,100000,1000000 for the
+ * full sweep), and the average time of the point lookups at each size is printed for
+ * comparison. The timings are recorded only, never asserted.
+ */
+public class UserDAOImplQueryPlanTest {
+
+    private static final int TIMED_LOOKUPS = 2000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path directory;
+    private final List<RecordingDatabase> databases = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        directory = temporaryFolder.newFolder("query-plan").toPath();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (Database database : databases) {
+            database.close();
+        }
+    }
+
+    @Test
+    public void testEveryStatementUsesAnIndex() throws Exception {
+        List<String> failures = new ArrayList<>();
+        for (int rows : sizes()) {
+            failures.addAll(checkPlans(rows));
+            recordLookupTimes(rows);
+        }
+        assertTrue("Plans regressed:\n" + String.join("\n", failures), failures.isEmpty());
+    }
+
+    private List<String> checkPlans(int rows) throws Exception {
+        RecordingDatabase database = open(rows);
+        UserDAOImpl userDAO = new UserDAOImpl(database);
+        database.statements.clear();
+
+        User created = userDAO.createUser(new User("plan_user", "hash", "plan@example.com"));
+        userDAO.findByUsername("user5");
+        userDAO.findRecordByUsername("user5");
+        userDAO.findById(created.getId());
+        userDAO.usernameExists("user5");
+        userDAO.findByEmail("plan@example.com");
+        userDAO.findRecordByEmail("PLAN@example.com");
+        userDAO.emailExists("plan@example.com");
+        userDAO.findUsersByPrefix("user1", "user10", 10);
+        userDAO.findUsersContaining("ser5", 0, 10);
+        userDAO.updateLastLogin("plan_user");
+        User stale = userDAO.findById(created.getId()).get();
+        User current = userDAO.findById(created.getId()).get();
+        userDAO.updateUser(current);
+        try {
+            userDAO.updateUser(stale);
+            fail("Expected a version conflict");
+        } catch (VersionConflictException e) {
+            // exercises the version check
+        }
+        userDAO.findUsersAfter(100, 50);
+        userDAO.getAllUsers();
+        userDAO.getAllUserRecords();
+        userDAO.exportUsers(directory.resolve("users-" + rows + ".snapshot"));
+        userDAO.deleteInactiveUsers(LocalDateTime.of(2000, 1, 1, 0, 0), 10);
+        userDAO.deleteUser(created.getId());
+
+        List<String> failures = new ArrayList<>();
+        try (Connection conn = database.getConnection()) {
+            for (String sql : database.statements) {
+                List<String> plan = explain(conn, sql);
+                boolean filtered = sql.toUpperCase().contains(" WHERE ");
+                for (String step : plan) {
+                    if (step.contains("TEMP B-TREE") || (filtered && step.startsWith("SCAN users"))) {
+                        failures.add(rows + " rows: " + sql + "\n    " + String.join("\n    ", plan));
+                        break;
+                    }
+                }
+            }
+        }
+        assertTrue(database.statements.size() >= 12);
+        return failures;
+    }
+
+    /**
+     * Print the average time of each point lookup against the table seeded with the given rows
+     */
+    private void recordLookupTimes(int rows) throws SQLException {
+        UserDAOImpl userDAO = new UserDAOImpl(databases.get(databases.size() - 1));
+        // Warm up the statement cache and page cache first
+        timeLookups(rows, i -> userDAO.findByUsername("user" + i));
+        long byUsername = timeLookups(rows, i -> userDAO.findByUsername("user" + i));
+        long byEmail = timeLookups(rows, i -> userDAO.findByEmail("user" + i + "@example.com"));
+        long byId = timeLookups(rows, i -> userDAO.findById((long) i));
+        long byPrefix = timeLookups(rows, i -> userDAO.findUsersByPrefix("user" + i, null, 10));
+        System.out.println(String.format("Lookup times at %d rows (us/op): username %.1f, email %.1f, id %.1f, prefix %.1f",
+                rows, byUsername / 1000.0, byEmail / 1000.0, byId / 1000.0, byPrefix / 1000.0));
+    }
+
+    private static long timeLookups(int rows, Lookup lookup) throws SQLException {
+        long start = System.nanoTime();
+        for (int n = 0; n < TIMED_LOOKUPS; n++) {
+            // Spread the keys over the whole table
+            lookup.run(1 + (int) ((long) n * 7919 % rows));
+        }
+        return (System.nanoTime() - start) / TIMED_LOOKUPS;
+    }
+
+    private interface Lookup {
+        void run(int i) throws SQLException;
+    }
+
+    private RecordingDatabase open(int rows) throws SQLException {
+        RecordingDatabase database = new RecordingDatabase("jdbc:sqlite:" + directory.resolve("users-" + rows + ".db"));
+        databases.add(database);
+        seed(database, rows);
+        return database;
+    }
+
+    private static int[] sizes() {
+        return Arrays.stream(System.getProperty("queryplan.sizes", "10000")
+                .split(",")).mapToInt(size -> Integer.parseInt(size.trim())).sorted().toArray();
+    }
+
+    private static void seed(Database database, int rows) throws SQLException {
+        String sql = "INSERT INTO users (username, username_key, password, email, created_at, last_login, version) " +
+                "VALUES (?, ?, ?, ?, ?, ?, 0)";
+        long now = System.currentTimeMillis();
+        database.getWriteQueue().execute(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (int i = 1; i <= rows; i++) {
+                    stmt.setString(1, "user" + i);
+                    stmt.setString(2, "user" + i);
+                    stmt.setString(3, "$2a$12$notarealhash");
+                    stmt.setString(4, "user" + i + "@example.com");
+                    stmt.setLong(5, now - rows + i);
+                    if (i % 3 == 0) {
+                        stmt.setNull(6, java.sql.Types.INTEGER);
+                    } else {
+                        stmt.setLong(6, now - i);
+                    }
+                    stmt.addBatch();
+                    if (i % 10000 == 0) {
+                        stmt.executeBatch();
+                    }
+                }
+                stmt.executeBatch();
+            }
+            return rows;
+        });
+    }
+
+    private static List<String> explain(Connection conn, String sql) throws SQLException {
+        List<String> plan = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                plan.add(rs.getString("detail"));
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * A database whose connections remember every data statement prepared or executed on them
+     */
+    private static class RecordingDatabase extends Database {
+        private final Set<String> statements = ConcurrentHashMap.newKeySet();
+
+        RecordingDatabase(String url) {
+            super(url, "", "", "WAL", 2, 256, 4, 5000);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return record(super.getConnection(), Connection.class);
+        }
+
+        @Override
+        public Connection getReadConnection() throws SQLException {
+            return record(super.getReadConnection(), Connection.class);
+        }
+
+        private <T> T record(T target, Class<T> type) {
+            // Database's constructor opens connections before this subclass is initialized
+            if (statements == null) {
+                return target;
+            }
+            Object proxy = Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type },
+                    (p, method, args) -> {
+                        if (args != null && args.length > 0 && args[0] instanceof String
+                                && (method.getName().startsWith("prepare") || method.getName().startsWith("execute"))) {
+                            String sql = ((String) args[0]).trim();
+                            if (sql.matches("(?is)(SELECT|INSERT|UPDATE|DELETE)\\b.*")) {
+                                statements.add(sql);
+                            }
+                        }
+                        try {
+                            Object result = method.invoke(target, args);
+                            if (result instanceof Statement && !(result instanceof PreparedStatement)) {
+                                return record((Statement) result, Statement.class);
+                            }
+                            return result;
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+            return type.cast(proxy);
+        }
+    }
+}
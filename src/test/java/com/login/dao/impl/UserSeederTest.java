@@ -0,0 +1,136 @@
+package com.login.dao.impl;
+
+import com.login.model.User;
+import com.login.service.UserService;
+import com.login.util.Database;
+import com.login.util.PasswordUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test class for UserSeeder
+ */
+public class UserSeederTest {
+
+    private static final int COUNT = 2500;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path directory;
+    private int rounds;
+    private final List<Database> databases = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        directory = temporaryFolder.newFolder("seeder").toPath();
+        // The hash pool is built at the configured cost; keep it cheap here
+        rounds = PasswordUtil.getBcryptRounds();
+        PasswordUtil.setBcryptRounds(4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        PasswordUtil.setBcryptRounds(rounds);
+        for (Database database : databases) {
+            database.close();
+        }
+    }
+
+    @Test
+    public void testSameSeedGivesSameUsers() throws Exception {
+        Database first = open("first.db");
+        Database second = open("second.db");
+        Database other = open("other.db");
+        UserSeeder.seed(first, COUNT, 7);
+        UserSeeder.seed(second, COUNT, 7);
+        UserSeeder.seed(other, COUNT, 8);
+
+        List<User> users = new UserDAOImpl(first).findUsersAfter(0, COUNT + 1);
+        assertEquals(COUNT, users.size());
+        assertEquals(describe(users), describe(new UserDAOImpl(second).findUsersAfter(0, COUNT)));
+        assertNotEquals(describe(users), describe(new UserDAOImpl(other).findUsersAfter(0, COUNT)));
+    }
+
+    @Test
+    public void testSeededUsersAreSearchableAndCanLogIn() throws Exception {
+        Database database = open("seeded.db");
+        UserSeeder.seed(database, COUNT, 7);
+        UserDAOImpl userDAO = new UserDAOImpl(database);
+
+        // Indexes and search triggers are back after the load
+        assertEquals(4, countSchema(database, "index", "idx_users_%"));
+        assertEquals(3, countSchema(database, "trigger", "users_search_%"));
+        // The journal switched off for the load is back
+        try (Connection conn = database.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA journal_mode")) {
+            rs.next();
+            assertEquals("wal", rs.getString(1));
+        }
+
+        User user = userDAO.findById(1001L).get();
+        UserService service = new UserService(userDAO);
+        assertEquals(user.getId(), service.authenticateUser(user.getUsername().toUpperCase(),
+                UserSeeder.passwordFor(1000)).getId());
+        assertTrue(service.getUserByEmail(user.getEmail()).isPresent());
+
+        String fragment = user.getUsername().substring(1, 5);
+        boolean found = false;
+        for (User match : userDAO.findUsersContaining(fragment, 0, COUNT)) {
+            found |= match.getId().equals(user.getId());
+        }
+        assertTrue(found);
+
+        // New users are indexed as usual
+        service.registerUser("after_seeding", "password123", null);
+        assertEquals(1, userDAO.findUsersContaining("after_seed", 0, 10).size());
+    }
+
+    @Test
+    public void testRefusesPopulatedDatabase() throws Exception {
+        Database database = open("populated.db");
+        new UserDAOImpl(database).createUser(new User("existing", "hash", null));
+        try {
+            UserSeeder.seed(database, 10, 7);
+            fail("Expected a populated database to be refused");
+        } catch (SQLException expected) {
+        }
+    }
+
+    private Database open(String file) {
+        Database database = Database.fromConfig("jdbc:sqlite:" + directory.resolve(file));
+        databases.add(database);
+        return database;
+    }
+
+    private static List<String> describe(List<User> users) {
+        List<String> described = new ArrayList<>();
+        for (User user : users) {
+            described.add(user.getUsername() + "," + user.getEmail() + "," + user.getCreatedAt() + "," + user.getLastLogin());
+        }
+        return described;
+    }
+
+    private static int countSchema(Database database, String type, String pattern) throws SQLException {
+        try (Connection conn = database.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE type = '" + type
+                     + "' AND name LIKE '" + pattern + "'")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
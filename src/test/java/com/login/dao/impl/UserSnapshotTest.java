@@ -0,0 +1,155 @@
+package com.login.dao.impl;
+
+import com.login.model.User;
+import com.login.service.UserService;
+import com.login.util.Database;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * Test class for the binary user snapshot format
+ */
+public class UserSnapshotTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("users", ".snapshot");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        LocalDateTime created = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        try (UserSnapshotWriter writer = new UserSnapshotWriter(file)) {
+            for (long i = 1; i <= 5000; i++) {
+                User user = new User("用户" + i, "$2a$12$hash" + i, i % 2 == 0 ? null : "u" + i + "@example.com");
+                user.setId(i);
+                user.setVersion(i * 3);
+                user.setCreatedAt(created);
+                user.setLastLogin(i % 3 == 0 ? created.plusDays(1) : null);
+                writer.write(user);
+            }
+            writer.commit();
+        }
+
+        try (UserSnapshotReader reader = new UserSnapshotReader(file)) {
+            for (long i = 1; i <= 5000; i++) {
+                User user = reader.next();
+                assertEquals(Long.valueOf(i), user.getId());
+                assertEquals("用户" + i, user.getUsername());
+                assertEquals("$2a$12$hash" + i, user.getPassword());
+                assertEquals(i % 2 == 0 ? null : "u" + i + "@example.com", user.getEmail());
+                assertEquals(i * 3, user.getVersion());
+                assertEquals(created, user.getCreatedAt());
+                assertEquals(i % 3 == 0 ? created.plusDays(1) : null, user.getLastLogin());
+            }
+            assertNull(reader.next());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedSnapshotIsRejected() throws IOException {
+        try (UserSnapshotWriter writer = new UserSnapshotWriter(file)) {
+            User user = new User("truncated", "hash");
+            user.setId(1L);
+            writer.write(user);
+            writer.commit();
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 10));
+
+        try (UserSnapshotReader reader = new UserSnapshotReader(file)) {
+            while (reader.next() != null) {
+                // drain
+            }
+        }
+    }
+
+    @Test
+    public void testExportIncludesRegisteredUser() throws SQLException, IOException {
+        String username = "exporttest" + System.currentTimeMillis();
+        User registered = new UserService().registerUser(username, "password123", null);
+
+        long exported = new UserDAOImpl().exportUsers(file);
+
+        boolean found = false;
+        long read = 0;
+        try (UserSnapshotReader reader = new UserSnapshotReader(file)) {
+            User user;
+            while ((user = reader.next()) != null) {
+                read++;
+                found |= registered.getId().equals(user.getId()) && username.equals(user.getUsername());
+            }
+        }
+        assertEquals(exported, read);
+        assertTrue(found);
+    }
+
+    @Test
+    public void testFailedExportLeavesPreviousSnapshot() throws Exception {
+        Path directory = temporaryFolder.newFolder("export").toPath();
+        Database database = Database.fromConfig("jdbc:sqlite:" + directory.resolve("export.db"));
+        try {
+            UserDAOImpl userDAO = new UserDAOImpl(database);
+            for (int i = 0; i < 50; i++) {
+                userDAO.createUser(new User("export_user" + i, "hash", null));
+            }
+            Path previous = directory.resolve("users.snapshot");
+            assertEquals(50, userDAO.exportUsers(previous));
+            byte[] good = Files.readAllBytes(previous);
+
+            // A row the driver cannot map makes the export fail partway through
+            try (Connection conn = database.getConnection(); Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("UPDATE users SET created_at = 'not a time' WHERE username = 'export_user30'");
+            }
+            Path fresh = directory.resolve("fresh.snapshot");
+            for (Path target : new Path[] {previous, fresh}) {
+                try {
+                    userDAO.exportUsers(target);
+                    fail("Expected the export to fail");
+                } catch (SQLException expected) {
+                }
+            }
+
+            assertArrayEquals(good, Files.readAllBytes(previous));
+            assertFalse(Files.exists(fresh));
+            try (Stream<Path> files = Files.list(directory)) {
+                assertFalse(files.anyMatch(path -> path.toString().endsWith(".tmp")));
+            }
+            Database target = Database.fromConfig("jdbc:sqlite:" + directory.resolve("target.db"));
+            try {
+                new UserDAOImpl(target).importUsers(fresh);
+                fail("Expected nothing to import");
+            } catch (IOException expected) {
+            } finally {
+                target.close();
+            }
+        } finally {
+            database.close();
+        }
+    }
+}
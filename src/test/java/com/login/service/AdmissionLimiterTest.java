@@ -0,0 +1,155 @@
+package com.login.service;
+
+import com.login.dao.VersionConflictException;
+import com.login.dao.impl.InMemoryUserDAO;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test class for AdmissionLimiter
+ */
+public class AdmissionLimiterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static AdmissionLimiter limiter(int initial, int maxQueue, long queueTimeoutMillis) {
+        return new AdmissionLimiter(initial, 1, 16, 60_000, 0.5, 0.5, maxQueue, queueTimeoutMillis);
+    }
+
+    @Test
+    public void testRejectsLowPriorityBeyondItsShare() throws Exception {
+        AdmissionLimiter limiter = limiter(4, 0, 0);
+        long first = limiter.acquire(AdmissionLimiter.Priority.LOW, "registerUser");
+        long second = limiter.acquire(AdmissionLimiter.Priority.LOW, "registerUser");
+        try {
+            limiter.acquire(AdmissionLimiter.Priority.LOW, "registerUser");
+            fail("Expected registrations to be limited to half the slots");
+        } catch (ServiceOverloadedException e) {
+            assertEquals("registerUser", e.getOperation());
+            assertEquals(2, e.getInFlight());
+        }
+
+        // Logins can still use the slots registrations may not
+        limiter.acquire(AdmissionLimiter.Priority.HIGH, "authenticate");
+        limiter.acquire(AdmissionLimiter.Priority.HIGH, "authenticate");
+        try {
+            limiter.acquire(AdmissionLimiter.Priority.HIGH, "authenticate");
+            fail("Expected the limit to be enforced");
+        } catch (ServiceOverloadedException expected) {
+        }
+        assertEquals(4, limiter.getInFlight());
+        assertEquals(2, limiter.getRejectedCount());
+        limiter.release(first, false);
+        limiter.release(second, false);
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    @Test
+    public void testQueuedLoginTakesTheNextFreeSlot() throws Exception {
+        AdmissionLimiter limiter = limiter(1, 1, 10_000);
+        long held = limiter.acquire(AdmissionLimiter.Priority.HIGH, "authenticate");
+        CountDownLatch admitted = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                limiter.release(limiter.acquire(AdmissionLimiter.Priority.HIGH, "authenticate"), false);
+                admitted.countDown();
+            } catch (ServiceOverloadedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        waiter.start();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (limiter.getQueueDepth() == 0) {
+            assertTrue("Timed out waiting for the queue", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+
+        // The queue is full and a login is waiting, so nothing else gets in
+        try {
+            limiter.acquire(AdmissionLimiter.Priority.HIGH, "authenticate");
+            fail("Expected a full queue to reject");
+        } catch (ServiceOverloadedException expected) {
+        }
+        try {
+            limiter.acquire(AdmissionLimiter.Priority.LOW, "registerUser");
+            fail("Expected registrations to yield to queued logins");
+        } catch (ServiceOverloadedException expected) {
+        }
+
+        limiter.release(held, false);
+        assertTrue(admitted.await(10, TimeUnit.SECONDS));
+        waiter.join();
+        assertEquals(0, limiter.getQueueDepth());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testLimitGrowsAdditivelyAndShrinksMultiplicatively() throws Exception {
+        AdmissionLimiter limiter = limiter(4, 0, 0);
+        long[] started = new long[4];
+        for (int round = 0; round < 8; round++) {
+            for (int i = 0; i < started.length; i++) {
+                started[i] = limiter.acquire(AdmissionLimiter.Priority.HIGH, "authenticate");
+            }
+            for (long start : started) {
+                limiter.release(start, false);
+            }
+        }
+        int grown = limiter.getLimit();
+        assertTrue("Limit should grow while in use, was " + grown, grown > 4 && grown < 16);
+
+        limiter.release(limiter.acquire(AdmissionLimiter.Priority.HIGH, "authenticate"), true);
+        assertEquals(grown / 2, limiter.getLimit(), 1);
+        for (int i = 0; i < 10; i++) {
+            limiter.release(limiter.acquire(AdmissionLimiter.Priority.HIGH, "authenticate"), true);
+        }
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    public void testServiceShedsRegistrationsWhileLoginsHoldTheSlots() throws Exception {
+        Path directory = temporaryFolder.newFolder("limited-service").toPath();
+        try (InMemoryUserDAO dao = new InMemoryUserDAO(directory, 0, false)) {
+            AdmissionLimiter limiter = limiter(2, 0, 0);
+            UserService service = new UserService(dao, null, null, limiter);
+            service.registerUser("limited_user", "password123", null);
+            assertSame(limiter, service.getAdmissionLimiter());
+
+            long held = limiter.acquire(AdmissionLimiter.Priority.HIGH, "authenticate");
+            try {
+                service.registerUser("shed_user", "password123", null);
+                fail("Expected the registration to be shed");
+            } catch (ServiceOverloadedException expected) {
+            }
+            assertTrue(service.isUsernameAvailable("shed_user"));
+            // A login still fits in the remaining slot
+            assertEquals("limited_user", service.authenticate("limited_user", "password123").getUsername());
+            limiter.release(held, false);
+            assertEquals(0, limiter.getInFlight());
+        }
+    }
+
+    @Test
+    public void testOnlyLoadFailuresCountAsOverload() {
+        assertTrue(UserService.isOverload(new SQLTimeoutException("Timed out waiting for a pooled connection")));
+        assertTrue(UserService.isOverload(new SQLException("[SQLITE_BUSY] The database file is locked", null, 5)));
+        assertTrue(UserService.isOverload(new SQLException("[SQLITE_LOCKED] A table is locked", null, 6)));
+        // The write queue wraps the driver's exception
+        assertTrue(UserService.isOverload(new SQLException("Write failed",
+                new SQLException("[SQLITE_BUSY] The database file is locked", null, 5))));
+
+        assertFalse(UserService.isOverload(new SQLException("UNIQUE constraint failed: users.username", null, 19)));
+        assertFalse(UserService.isOverload(new SQLException("UNIQUE constraint failed: users.email_key")));
+        assertFalse(UserService.isOverload(new VersionConflictException(1L, 1, 2)));
+        assertFalse(UserService.isOverload(new ServiceOverloadedException("authenticate", 4, 4)));
+    }
+}
@@ -1,16 +1,32 @@
 package com.login.service;
 
+import com.login.dao.UserDAO;
+import com.login.dao.VersionConflictException;
+import com.login.dao.impl.UserDAOImpl;
 import com.login.model.User;
+import com.login.util.Database;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import static org.junit.Assert.*;
 
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Test class for UserService
  */
 public class UserServiceTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
     
     private UserService userService;
     
@@ -23,7 +39,7 @@ public class UserServiceTest {
     public void testRegisterUser_ValidInput() throws SQLException {
         String username = "testuser" + System.currentTimeMillis();
         String password = "password123";
-        String email = "test@example.com";
+        String email = username + "@example.com";
         
         User user = userService.registerUser(username, password, email);
         
@@ -55,7 +71,7 @@ public class UserServiceTest {
         String password = "password123";
         
         // Register user first
-        userService.registerUser(username, password, "test@example.com");
+        userService.registerUser(username, password, username + "@example.com");
         
         // Then authenticate
         User authenticatedUser = userService.authenticateUser(username, password);
@@ -70,7 +86,7 @@ public class UserServiceTest {
         String password = "password123";
         
         // Register user first
-        userService.registerUser(username, password, "test@example.com");
+        userService.registerUser(username, password, username + "@example.com");
         
         // Try to authenticate with wrong password
         userService.authenticateUser(username, "wrongpassword");
@@ -81,6 +97,56 @@ public class UserServiceTest {
         userService.authenticateUser("nonexistent", "password123");
     }
     
+    @Test
+    public void testAuthenticateUser_ByEmail() throws SQLException {
+        String username = "mailtest" + System.currentTimeMillis();
+        String email = "Mail." + username + "@Example.com";
+        userService.registerUser(username, "password123", email);
+
+        User user = userService.authenticateUser(" " + email.toLowerCase() + " ", "password123");
+        assertEquals(username, user.getUsername());
+        assertEquals(username, userService.getUserByEmail(email.toUpperCase()).get().getUsername());
+        assertFalse(userService.isEmailAvailable(email));
+
+        try {
+            userService.registerUser(username + "x", "password123", email.toLowerCase());
+            fail("Expected the email to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Email already registered", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testUsernameCannotShadowAnEmail() throws SQLException {
+        String username = "shadowed" + System.currentTimeMillis();
+        String email = username + "@example.com";
+        userService.registerUser(username, "password123", email);
+
+        try {
+            userService.registerUser(email, "password456", null);
+            fail("Expected a username containing '@' to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Username cannot contain '@'", e.getMessage());
+        }
+        assertEquals(username, userService.authenticateUser(email, "password123").getUsername());
+    }
+
+    @Test
+    public void testSuggestUsersRanksPrefixMatchesFirst() throws SQLException {
+        String stem = "suggest" + System.currentTimeMillis();
+        User inner = userService.registerUser("x" + stem, "password123", null);
+        User later = userService.registerUser(stem + "_b", "password123", null);
+        User earlier = userService.registerUser(stem + "_a", "password123", null);
+
+        List<User> suggestions = userService.suggestUsers(stem.toUpperCase(), 10);
+        assertEquals(3, suggestions.size());
+        assertEquals(earlier.getId(), suggestions.get(0).getId());
+        assertEquals(later.getId(), suggestions.get(1).getId());
+        assertEquals(inner.getId(), suggestions.get(2).getId());
+        assertEquals(1, userService.suggestUsers(stem, 1).size());
+        assertTrue(userService.suggestUsers(" ", 10).isEmpty());
+    }
+
     @Test
     public void testIsUsernameAvailable() throws SQLException {
         String username = "availtest" + System.currentTimeMillis();
@@ -89,9 +155,99 @@ public class UserServiceTest {
         assertTrue(userService.isUsernameAvailable(username));
         
         // Register user
-        userService.registerUser(username, "password123", "test@example.com");
+        userService.registerUser(username, "password123", username + "@example.com");
         
         // Should not be available now
         assertFalse(userService.isUsernameAvailable(username));
     }
+    
+    @Test
+    public void testUsernameLookupIgnoresCaseAndWhitespace() throws SQLException {
+        String username = "CaseTest" + System.currentTimeMillis();
+        userService.registerUser("  " + username + " ", "password123", null);
+        
+        User user = userService.authenticateUser(username.toUpperCase(), "password123");
+        assertEquals(username, user.getUsername());
+        assertFalse(userService.isUsernameAvailable(username.toLowerCase()));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testRegisterUser_CaseVariantDuplicate() throws SQLException {
+        String username = "dupcase" + System.currentTimeMillis();
+        userService.registerUser(username, "password123", null);
+        userService.registerUser(username.toUpperCase(), "password123", null);
+    }
+    
+    @Test
+    public void testChangePassword() throws SQLException {
+        String username = "pwtest" + System.currentTimeMillis();
+        userService.registerUser(username, "password123", username + "@example.com");
+        
+        assertTrue(userService.changePassword(username, "password123", "newpass456"));
+        
+        assertNotNull(userService.authenticateUser(username, "newpass456"));
+    }
+    
+    @Test
+    public void testUpdateWithStaleVersionIsRejected() throws SQLException {
+        UserDAO userDAO = new UserDAOImpl();
+        String username = "versiontest" + System.currentTimeMillis();
+        User created = userService.registerUser(username, "password123", "old." + username + "@example.com");
+        
+        User first = userDAO.findById(created.getId()).get();
+        User second = userDAO.findById(created.getId()).get();
+        
+        first.setEmail("first." + username + "@example.com");
+        assertTrue(userDAO.updateUser(first));
+        assertEquals(second.getVersion() + 1, first.getVersion());
+        
+        second.setEmail("second." + username + "@example.com");
+        try {
+            userDAO.updateUser(second);
+            fail("Expected a version conflict");
+        } catch (VersionConflictException e) {
+            assertEquals(first.getVersion(), e.getActualVersion());
+        }
+        
+        // The retry helper re-reads and re-applies the change
+        assertTrue(userService.updateWithRetry(second, user -> user.setEmail("second." + username + "@example.com")));
+        assertEquals("second." + username + "@example.com", userDAO.findById(created.getId()).get().getEmail());
+    }
+    
+    @Test
+    public void testPurgeInactiveUsersInChunksAndShrinks() throws Exception {
+        Path directory = temporaryFolder.newFolder("purge").toPath();
+        Database database = Database.fromConfig("jdbc:sqlite:" + directory.resolve("purge.db"));
+        try {
+            UserDAO userDAO = new UserDAOImpl(database);
+            UserService service = new UserService(userDAO);
+            String padding = "x".repeat(2000);
+            for (int i = 0; i < 10; i++) {
+                userDAO.createUser(new User("dormant" + i, "hash", i + padding));
+            }
+            Thread.sleep(20);
+            LocalDateTime cutoff = LocalDateTime.now();
+            User active = userDAO.createUser(new User("active", "hash", null));
+            long pagesBefore = pageCount(database);
+            
+            List<Long> progress = new ArrayList<>();
+            long deleted = service.purgeInactiveUsers(cutoff, 3, 1, progress::add);
+            
+            assertEquals(10, deleted);
+            assertEquals(List.of(3L, 6L, 9L, 10L), progress);
+            assertEquals(1, userDAO.getAllUsers().size());
+            assertEquals(active.getId(), userDAO.getAllUsers().get(0).getId());
+            assertTrue(pageCount(database) < pagesBefore);
+        } finally {
+            database.close();
+        }
+    }
+    
+    private static long pageCount(Database database) throws SQLException {
+        try (Connection conn = database.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA page_count")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
 }
@@ -0,0 +1,107 @@
+package com.login.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test class for ConfigWatcher and TuningConfig
+ */
+public class ConfigWatcherTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Properties original;
+    private Path directory;
+    private Path file;
+    private ConfigWatcher watcher;
+
+    @Before
+    public void setUp() throws Exception {
+        original = ConfigUtil.getAll();
+        directory = temporaryFolder.newFolder("config").toPath();
+        file = directory.resolve("database.properties");
+        write(original);
+        watcher = new ConfigWatcher(file);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        watcher.close();
+        ConfigUtil.replace(original);
+    }
+
+    @Test
+    public void testValidChangeIsAppliedToListeners() throws Exception {
+        BlockingQueue<TuningConfig> applied = new LinkedBlockingQueue<>();
+        watcher.addListener(applied::add);
+
+        Properties changed = ConfigUtil.getAll();
+        changed.setProperty("db.pool.readers", "7");
+        changed.setProperty("db.write.batchWindowMs", "9");
+        write(changed);
+
+        TuningConfig config = applied.poll(10, TimeUnit.SECONDS);
+        assertNotNull("Change was not picked up", config);
+        assertEquals(7, config.getPoolReaders());
+        assertEquals(9, config.getWriteBatchWindowMillis());
+        assertEquals(config, watcher.getEffective());
+        assertEquals("7", watcher.getEffective().toMap().get("db.pool.readers"));
+        assertEquals(7, ConfigUtil.getInt("db.pool.readers", 4));
+    }
+
+    @Test
+    public void testInvalidChangeIsRejected() throws Exception {
+        TuningConfig before = watcher.getEffective();
+        Properties changed = ConfigUtil.getAll();
+        changed.setProperty("db.pool.readers", "7");
+        changed.setProperty("password.bcryptRounds", "40");
+        write(changed);
+
+        assertFalse(watcher.reload());
+        assertEquals(before, watcher.getEffective());
+        assertEquals(original.getProperty("db.pool.readers"), ConfigUtil.get("db.pool.readers", ""));
+    }
+
+    @Test
+    public void testTuningAppliesToDatabase() throws Exception {
+        Path dbFile = directory.resolve("tuning.db");
+        Database database = Database.fromConfig("jdbc:sqlite:" + dbFile);
+        try {
+            Properties changed = ConfigUtil.getAll();
+            changed.setProperty("db.pool.readers", "2");
+            database.applyTuning(TuningConfig.from(changed));
+            assertEquals(2, database.getReadPool().getMaxSize());
+        } finally {
+            database.close();
+            Files.deleteIfExists(dbFile);
+            Files.deleteIfExists(directory.resolve("tuning.db-wal"));
+            Files.deleteIfExists(directory.resolve("tuning.db-shm"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonNumericValueIsInvalid() {
+        Properties props = new Properties();
+        props.setProperty("db.write.maxBatchSize", "lots");
+        TuningConfig.from(props);
+    }
+
+    private void write(Properties props) throws Exception {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            props.store(out, null);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.login.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Test class for ConnectionPool and the read/write split in DatabaseUtil
+ */
+public class ConnectionPoolTest {
+
+    @Test
+    public void testClosedConnectionIsReused() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(DatabaseUtil::getConnection, 1, 100);
+        try {
+            Connection first = pool.getConnection();
+            assertEquals(1, pool.getInUse());
+            first.close();
+            assertTrue(first.isClosed());
+            assertEquals(0, pool.getInUse());
+
+            try (Connection second = pool.getConnection()) {
+                assertFalse(second.isClosed());
+            }
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test(expected = SQLException.class)
+    public void testExhaustedPoolTimesOut() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(DatabaseUtil::getConnection, 1, 50);
+        try (Connection held = pool.getConnection()) {
+            assertFalse(held.isClosed());
+            pool.getConnection();
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testResizeGrowsAndShrinks() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(DatabaseUtil::getConnection, 1, 50);
+        try {
+            Connection first = pool.getConnection();
+            pool.resize(2, 50);
+            Connection second = pool.getConnection();
+            assertEquals(2, pool.getInUse());
+
+            pool.resize(1, 50);
+            second.close();
+            first.close();
+            try (Connection only = pool.getConnection()) {
+                assertFalse(only.isClosed());
+                try {
+                    pool.getConnection();
+                    fail("Expected the shrunk pool to be exhausted");
+                } catch (SQLException e) {
+                    // one connection left
+                }
+            }
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test(expected = SQLException.class)
+    public void testReadConnectionRejectsWrites() throws SQLException {
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE users SET email = email WHERE id = -1");
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.login.util;
+
+import com.login.dao.impl.UserDAOImpl;
+import com.login.model.User;
+import com.login.service.UserService;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Test class for FlightEvents
+ */
+public class FlightEventsTest {
+
+    private static final String[] EVENT_NAMES = {
+        "com.login.ConnectionAcquire", "com.login.DaoQuery", "com.login.PasswordOperation", "com.login.ServiceOperation"
+    };
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testLoginEmitsEveryStage() throws Exception {
+        Path directory = temporaryFolder.newFolder("jfr").toPath();
+        Database database = Database.fromConfig("jdbc:sqlite:" + directory.resolve("jfr.db"));
+        Path dump = directory.resolve("login.jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : EVENT_NAMES) {
+                recording.enable(name).withThreshold(java.time.Duration.ZERO);
+            }
+            recording.start();
+            UserService service = new UserService(new UserDAOImpl(database));
+            service.registerUser("flight_user", "password123", null);
+            service.authenticate("Flight_User", "password123");
+            try {
+                service.authenticate("flight_user", "wrong123");
+                fail("Expected a bad password");
+            } catch (IllegalArgumentException expected) {
+            }
+            recording.stop();
+            recording.dump(dump);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+            List<String> services = new ArrayList<>();
+            boolean acquired = false;
+            boolean queried = false;
+            boolean verified = false;
+            for (RecordedEvent event : events) {
+                switch (event.getEventType().getName()) {
+                    case "com.login.ConnectionAcquire":
+                        acquired |= event.getBoolean("succeeded");
+                        break;
+                    case "com.login.DaoQuery":
+                        if ("findRecordByUsername".equals(event.getString("operation"))) {
+                            assertEquals(FlightEvents.usernameHash("flight_user"), event.getLong("usernameHash"));
+                            assertEquals(1, event.getInt("rowCount"));
+                            queried = true;
+                        }
+                        break;
+                    case "com.login.PasswordOperation":
+                        verified |= "MATCH".equals(event.getString("outcome")) && event.getInt("rounds") > 0;
+                        break;
+                    case "com.login.ServiceOperation":
+                        services.add(event.getString("operation") + ":" + event.getString("outcome"));
+                        break;
+                    default:
+                        break;
+                }
+            }
+            assertTrue(acquired);
+            assertTrue(queried);
+            assertTrue(verified);
+            assertTrue(services.contains("registerUser:SUCCESS"));
+            assertTrue(services.contains("authenticate:SUCCESS"));
+            assertTrue(services.contains("authenticate:BAD_PASSWORD"));
+        } finally {
+            database.close();
+        }
+    }
+
+    @Test
+    public void testEveryLookupEmitsADaoQuery() throws Exception {
+        Path directory = temporaryFolder.newFolder("jfr-dao").toPath();
+        Database database = Database.fromConfig("jdbc:sqlite:" + directory.resolve("jfr.db"));
+        Path dump = directory.resolve("dao.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.login.DaoQuery").withThreshold(java.time.Duration.ZERO);
+            recording.start();
+            UserDAOImpl userDAO = new UserDAOImpl(database);
+            User user = userDAO.createUser(new User("flight_dao", "$2a$12$notarealhash", "flight@example.com"));
+            userDAO.findByEmail("flight@example.com");
+            userDAO.findById(user.getId());
+            userDAO.getAllUsers();
+            userDAO.findUsersAfter(0, 10);
+            userDAO.findUsersByPrefix("flight", null, 10);
+            userDAO.findUsersContaining("ight_d", 0, 10);
+            userDAO.deleteUser(user.getId());
+            recording.stop();
+            recording.dump(dump);
+
+            Set<String> operations = new HashSet<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+                if (!"com.login.DaoQuery".equals(event.getEventType().getName())) {
+                    continue;
+                }
+                operations.add(event.getString("operation"));
+                if ("findById".equals(event.getString("operation"))) {
+                    assertEquals(FlightEvents.usernameHash("flight_dao"), event.getLong("usernameHash"));
+                    assertEquals(1, event.getInt("rowCount"));
+                }
+            }
+            assertTrue(operations.toString(), operations.containsAll(List.of("findByEmail", "findById", "getAllUsers",
+                    "findUsersAfter", "findUsersByPrefix", "findUsersContaining", "deleteUser")));
+        } finally {
+            database.close();
+        }
+    }
+
+    @Test
+    public void testUsernameHashIgnoresCase() {
+        assertEquals(FlightEvents.usernameHash("alice"), FlightEvents.usernameHash(" Alice "));
+        assertNotEquals(FlightEvents.usernameHash("alice"), FlightEvents.usernameHash("bob"));
+        assertEquals(0, FlightEvents.usernameHash(null));
+    }
+}
@@ -0,0 +1,104 @@
+package com.login.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+
+/**
+ * Test class for HealthProbe
+ */
+public class HealthProbeTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path directory;
+    private Database database;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = temporaryFolder.newFolder("health").toPath();
+        database = Database.fromConfig("jdbc:sqlite:" + directory.resolve("health.db"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Test
+    public void testHealthyReport() {
+        PasswordUtil.verifyPassword("password123", PasswordUtil.hashPassword("password123"));
+
+        HealthReport report = HealthProbe.check(database);
+
+        assertTrue(report.isHealthy());
+        assertNull(report.getError());
+        assertTrue(report.getAcquireMicros() >= 0);
+        assertTrue(report.getRoundTripMicros() >= 0);
+        assertTrue(report.getPageCount() > 0);
+        assertTrue(report.getWalBytes() >= 0);
+        assertEquals(0, report.getPoolInUse());
+        assertTrue(report.getVerifyCount() >= 1);
+        assertTrue(report.getAverageVerifyMillis() > 0);
+
+        String json = report.toJson();
+        assertTrue(json.startsWith("{\"status\":\"UP\""));
+        assertTrue(json.contains("\"pool\":{\"inUse\":0,"));
+        assertTrue(json.contains("\"bcrypt\":{\"rounds\":12,"));
+    }
+
+    @Test
+    public void testSlowVerificationIsUnhealthy() {
+        PasswordUtil.verifyPassword("password123", PasswordUtil.hashPassword("password123"));
+
+        HealthReport slow = HealthProbe.check(database, 1);
+        assertFalse(slow.isHealthy());
+        assertTrue(slow.isVerifySlow());
+        assertNull(slow.getError());
+        assertTrue(slow.toJson().contains("\"maxVerifyMillis\":1,\"slow\":true}"));
+
+        HealthReport unlimited = HealthProbe.check(database, 0);
+        assertTrue(unlimited.isHealthy());
+        assertFalse(unlimited.isVerifySlow());
+    }
+
+    @Test
+    public void testAverageFollowsRecentVerifications() {
+        int rounds = PasswordUtil.getBcryptRounds();
+        PasswordUtil.verifyPassword("password123", PasswordUtil.hashPassword("password123"));
+        PasswordUtil.setBcryptRounds(4);
+        try {
+            String cheap = PasswordUtil.hashPassword("password123");
+            for (int i = 0; i < 50; i++) {
+                PasswordUtil.verifyPassword("password123", cheap);
+            }
+        } finally {
+            PasswordUtil.setBcryptRounds(rounds);
+        }
+
+        // The cost-12 verification still weighs on the lifetime average but no longer on the recent one
+        double lifetimeMillis = PasswordUtil.getVerifyNanos() / 1e6 / PasswordUtil.getVerifyCount();
+        HealthReport report = HealthProbe.check(database, 0);
+        assertTrue(report.getAverageVerifyMillis() > 0);
+        assertTrue(report.getAverageVerifyMillis() < lifetimeMillis / 2);
+    }
+
+    @Test
+    public void testUnreachableDatabaseIsReportedDown() {
+        Database missing = Database.fromConfig("jdbc:sqlite:" + directory.resolve("no/such/dir/health.db"));
+
+        HealthReport report = HealthProbe.check(missing);
+        missing.close();
+
+        assertFalse(report.isHealthy());
+        assertNotNull(report.getError());
+        assertEquals(-1, report.getRoundTripMicros());
+        assertTrue(report.toJson().startsWith("{\"status\":\"DOWN\",\"checkedAt\":"));
+    }
+}
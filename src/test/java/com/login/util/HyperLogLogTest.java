@@ -0,0 +1,51 @@
+package com.login.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for HyperLogLog
+ */
+public class HyperLogLogTest {
+
+    @Test
+    public void testEstimateIsWithinErrorBounds() {
+        for (int count : new int[] {10, 1000, 100000}) {
+            HyperLogLog sketch = new HyperLogLog(12);
+            for (int i = 0; i < count; i++) {
+                sketch.add(i);
+                sketch.add(i);
+            }
+            // Five standard errors at p = 12
+            assertEquals(count, sketch.estimate(), Math.max(1, count * 0.08));
+        }
+    }
+
+    @Test
+    public void testMergeEstimatesUnion() {
+        HyperLogLog first = new HyperLogLog(12);
+        HyperLogLog second = new HyperLogLog(12);
+        for (int i = 0; i < 30000; i++) {
+            first.add("user" + i);
+            second.add("user" + (i + 20000));
+        }
+        first.merge(second);
+        assertEquals(50000, first.estimate(), 50000 * 0.08);
+    }
+
+    @Test
+    public void testSerializationRoundTrip() {
+        HyperLogLog sketch = new HyperLogLog(10);
+        for (int i = 0; i < 5000; i++) {
+            sketch.add(i);
+        }
+        HyperLogLog restored = HyperLogLog.fromBytes(sketch.toBytes());
+        assertEquals(10, restored.getPrecision());
+        assertEquals(sketch.estimate(), restored.estimate());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMergeRejectsDifferentPrecision() {
+        new HyperLogLog(10).merge(new HyperLogLog(12));
+    }
+}
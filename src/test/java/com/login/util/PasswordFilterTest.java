@@ -0,0 +1,92 @@
+package com.login.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Test class for PasswordFilter
+ */
+public class PasswordFilterTest {
+
+    private static final int LISTED = 100000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path directory;
+    private PasswordFilter filter;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = temporaryFolder.newFolder("password-filter").toPath();
+        Path list = directory.resolve("passwords.txt");
+        try (BufferedWriter writer = Files.newBufferedWriter(list, StandardCharsets.UTF_8)) {
+            writer.write("password123\nqwerty1\nläsenord1\n");
+            for (int i = 0; i < LISTED; i++) {
+                writer.write("leaked" + i + "\n");
+            }
+        }
+        Path file = directory.resolve("filter.bin");
+        assertEquals(LISTED + 3, PasswordFilter.build(list, file, 0, 0.01));
+        filter = PasswordFilter.open(file);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+    }
+
+    @Test
+    public void testListedPasswordsAreFound() {
+        assertTrue(filter.mightContain("password123"));
+        assertTrue(filter.mightContain("läsenord1"));
+        for (int i = 0; i < LISTED; i++) {
+            assertTrue(filter.mightContain("leaked" + i));
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        int falsePositives = 0;
+        for (int i = 0; i < LISTED; i++) {
+            if (filter.mightContain("unlisted" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("False positives: " + falsePositives, falsePositives < LISTED * 0.02);
+        assertFalse(filter.mightContain("Password123"));
+    }
+
+    @Test
+    public void testFailedBuildKeepsPreviousFilter() throws Exception {
+        Path file = directory.resolve("filter.bin");
+        byte[] previous = Files.readAllBytes(file);
+        try {
+            PasswordFilter.build(directory.resolve("missing.txt"), file, 1000, 0.01);
+            fail("Expected the missing list to fail the build");
+        } catch (IOException expected) {
+        }
+        assertArrayEquals(previous, Files.readAllBytes(file));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.filter(path -> path.toString().endsWith(".tmp")).count());
+        }
+        assertTrue(PasswordFilter.open(file).mightContain("qwerty1"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherFiles() throws Exception {
+        Path other = directory.resolve("other.bin");
+        Files.write(other, new byte[64]);
+        PasswordFilter.open(other);
+    }
+}
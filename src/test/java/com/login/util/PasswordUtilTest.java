@@ -0,0 +1,42 @@
+package com.login.util;
+
+import org.mindrot.jbcrypt.BCrypt;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Test class for PasswordUtil
+ */
+public class PasswordUtilTest {
+
+    @Test
+    public void testByteHashVerifiesLikeStringHash() {
+        String[] passwords = { "password123", "pässwörd9", "a1", "x".repeat(70) + "1" };
+        for (String password : passwords) {
+            String hash = BCrypt.hashpw(password, BCrypt.gensalt(4));
+            byte[] bytes = hash.getBytes(StandardCharsets.US_ASCII);
+            assertTrue(PasswordUtil.verifyPassword(password, hash));
+            assertTrue(PasswordUtil.verifyPassword(password, bytes));
+            assertFalse(PasswordUtil.verifyPassword(password + "x", bytes));
+        }
+    }
+
+    @Test
+    public void testMalformedByteHashDoesNotVerify() {
+        byte[] hash = BCrypt.hashpw("password123", BCrypt.gensalt(4)).getBytes(StandardCharsets.US_ASCII);
+        assertFalse(PasswordUtil.verifyPassword("password123", (byte[]) null));
+        assertFalse(PasswordUtil.verifyPassword(null, hash));
+        assertFalse(PasswordUtil.verifyPassword("password123", new byte[0]));
+        assertFalse(PasswordUtil.verifyPassword("password123", Arrays.copyOf(hash, hash.length - 1)));
+
+        byte[] corrupt = hash.clone();
+        corrupt[10] = '!';
+        assertFalse(PasswordUtil.verifyPassword("password123", corrupt));
+        byte[] otherVariant = hash.clone();
+        otherVariant[2] = 'y';
+        assertFalse(PasswordUtil.verifyPassword("password123", otherVariant));
+    }
+}
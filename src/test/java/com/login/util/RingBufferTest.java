@@ -0,0 +1,74 @@
+package com.login.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Test class for RingBuffer
+ */
+public class RingBufferTest {
+
+    @Test
+    public void testOfferFailsWhenFull() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(3);
+        assertEquals(4, buffer.capacity());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+
+        assertEquals(Integer.valueOf(0), buffer.poll());
+        assertTrue(buffer.offer(4));
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(4, buffer.drainTo(drained::add, 10));
+        assertEquals(List.of(1, 2, 3, 4), drained);
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void testConcurrentProducersLoseNothing() throws InterruptedException {
+        RingBuffer<Long> buffer = new RingBuffer<>(1024);
+        int producers = 4;
+        int perProducer = 50000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            long base = (long) p * perProducer;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(base + i)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            threads[p].start();
+        }
+
+        AtomicLong sum = new AtomicLong();
+        long[] lastPerProducer = new long[producers];
+        java.util.Arrays.fill(lastPerProducer, -1);
+        int received = 0;
+        while (received < producers * perProducer) {
+            Long value = buffer.poll();
+            if (value == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            // Each producer's elements come out in the order it offered them
+            int producer = (int) (value / perProducer);
+            assertTrue(value > lastPerProducer[producer]);
+            lastPerProducer[producer] = value;
+            sum.addAndGet(value);
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long n = (long) producers * perProducer;
+        assertEquals(n * (n - 1) / 2, sum.get());
+        assertNull(buffer.poll());
+    }
+}
@@ -0,0 +1,85 @@
+package com.login.util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Test class for SortedSlotIndex
+ */
+public class SortedSlotIndexTest {
+
+    private final String[] keys = new String[64];
+    private final SortedSlotIndex index = new SortedSlotIndex(slot -> keys[slot]);
+
+    @Test
+    public void testRangeSearch() {
+        put(0, "carol");
+        put(1, "alice");
+        put(2, "bob");
+        put(3, "alicia");
+
+        assertEquals(List.of("alice", "alicia", "bob", "carol"), inOrder());
+        assertEquals(0, index.ceiling("al"));
+        assertEquals(2, index.higher("alicia"));
+        assertEquals(2, index.ceiling("b"));
+        assertEquals(4, index.ceiling("d"));
+
+        // Rename: remove before the key changes, add after
+        index.remove(1);
+        keys[1] = "dave";
+        index.add(1);
+        index.remove(2);
+        keys[2] = null;
+        assertEquals(List.of("alicia", "carol", "dave"), inOrder());
+    }
+
+    @Test
+    public void testDeferredAddsMatchIncrementalOrder() {
+        Random random = new Random(42);
+        TreeMap<String, Integer> expected = new TreeMap<>();
+        for (int round = 0; round < 20; round++) {
+            boolean deferred = round % 2 == 0;
+            if (deferred) {
+                index.defer();
+            }
+            // Adds, renames and frees, with freed slots reused while deferred
+            for (int op = 0; op < 50; op++) {
+                int slot = random.nextInt(keys.length);
+                if (keys[slot] != null) {
+                    expected.remove(keys[slot]);
+                    index.remove(slot);
+                    keys[slot] = null;
+                }
+                if (random.nextBoolean()) {
+                    String key = "user" + random.nextInt(1000);
+                    if (!expected.containsKey(key)) {
+                        put(slot, key);
+                        expected.put(key, slot);
+                    }
+                }
+            }
+            if (deferred) {
+                index.resume();
+            }
+            assertEquals(new ArrayList<>(expected.keySet()), inOrder());
+        }
+    }
+
+    private void put(int slot, String key) {
+        keys[slot] = key;
+        index.add(slot);
+    }
+
+    private List<String> inOrder() {
+        List<String> ordered = new ArrayList<>();
+        for (int position = 0; position < index.size(); position++) {
+            ordered.add(keys[index.slotAt(position)]);
+        }
+        return ordered;
+    }
+}
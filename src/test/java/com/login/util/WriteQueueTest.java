@@ -0,0 +1,127 @@
+package com.login.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test class for WriteQueue
+ */
+public class WriteQueueTest {
+
+    private File dbFile;
+    private String url;
+    private WriteQueue writeQueue;
+
+    @Before
+    public void setUp() throws Exception {
+        dbFile = File.createTempFile("write-queue", ".db");
+        url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE items (id INTEGER PRIMARY KEY, name TEXT UNIQUE NOT NULL)");
+        }
+        writeQueue = new WriteQueue(() -> DriverManager.getConnection(url), 5, 64);
+    }
+
+    @After
+    public void tearDown() {
+        writeQueue.shutdown();
+        dbFile.delete();
+    }
+
+    @Test
+    public void testConcurrentWritesAreAllCommitted() throws Exception {
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String name = "item" + i;
+            futures.add(writeQueue.submit(conn -> insert(conn, name)));
+        }
+        for (CompletableFuture<Integer> future : futures) {
+            assertEquals(Integer.valueOf(1), future.get());
+        }
+
+        assertEquals(500, countRows());
+    }
+
+    @Test
+    public void testFailedMutationDoesNotAbortGroup() throws Exception {
+        writeQueue.execute(conn -> insert(conn, "duplicate"));
+
+        CompletableFuture<Integer> before = writeQueue.submit(conn -> insert(conn, "before"));
+        CompletableFuture<Integer> failing = writeQueue.submit(conn -> insert(conn, "duplicate"));
+        CompletableFuture<Integer> after = writeQueue.submit(conn -> insert(conn, "after"));
+
+        assertEquals(Integer.valueOf(1), before.get());
+        assertEquals(Integer.valueOf(1), after.get());
+        try {
+            failing.get();
+            fail("Expected constraint violation");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SQLException);
+        }
+        assertEquals(3, countRows());
+    }
+
+    @Test
+    public void testWritesRacingShutdownNeverHang() throws Exception {
+        List<CompletableFuture<Integer>> futures = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    String name = "race" + thread + "_" + i;
+                    futures.add(writeQueue.submit(conn -> insert(conn, name)));
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        writeQueue.shutdown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        int committed = 0;
+        for (CompletableFuture<Integer> future : futures) {
+            try {
+                committed += future.get(10, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                assertEquals("Write queue is shut down", e.getCause().getMessage());
+            }
+        }
+        assertEquals(committed, countRows());
+    }
+
+    private int insert(Connection conn, String name) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO items (name) VALUES (?)")) {
+            stmt.setString(1, name);
+            return stmt.executeUpdate();
+        }
+    }
+
+    private int countRows() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM items")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
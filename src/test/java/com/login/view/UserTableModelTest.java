@@ -0,0 +1,113 @@
+package com.login.view;
+
+import com.login.model.User;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import javax.swing.SwingUtilities;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test class for UserTableModel
+ */
+public class UserTableModelTest {
+
+    private static final int TOTAL = 1050;
+    private static final int PAGE_SIZE = 100;
+
+    private final List<Long> fetchedAfter = Collections.synchronizedList(new ArrayList<>());
+
+    private List<User> fetch(long afterId, int limit) {
+        fetchedAfter.add(afterId);
+        List<User> page = new ArrayList<>();
+        for (long id = afterId + 1; id <= TOTAL && page.size() < limit; id++) {
+            User user = new User("user" + id, "hash", null);
+            user.setId(id);
+            page.add(user);
+        }
+        return page;
+    }
+
+    @Test
+    public void testGrowsPageByPageAndKeepsBoundedWindow() throws Exception {
+        UserTableModel model = onEdt(() -> new UserTableModel(this::fetch, PAGE_SIZE, 3));
+        awaitRows(model, PAGE_SIZE);
+        assertFalse(onEdt(model::isEndReached));
+        assertEquals("user1", onEdt(() -> model.getValueAt(0, 1)));
+
+        // Reading the second half of the last loaded page prefetches the next one
+        while (!onEdt(model::isEndReached)) {
+            int rows = onEdt(model::getRowCount);
+            onEdt(() -> model.getValueAt(rows - 1, 0));
+            awaitCondition(() -> model.getRowCount() > rows || model.isEndReached());
+        }
+        assertEquals(TOTAL, (int) onEdt(model::getRowCount));
+        assertEquals((long) TOTAL, onEdt(() -> model.getValueAt(TOTAL - 1, 0)));
+        assertTrue(onEdt(model::getCachedPageCount) <= 3);
+
+        // An evicted page is fetched again straight from its remembered anchor
+        fetchedAfter.clear();
+        assertEquals("Loading...", onEdt(() -> model.getValueAt(PAGE_SIZE * 2 + 5, 1)));
+        awaitCondition(() -> "user206".equals(model.getValueAt(PAGE_SIZE * 2 + 5, 1)));
+        assertEquals(Collections.singletonList(200L), fetchedAfter);
+    }
+
+    @Test
+    public void testFailureStopsLoadingUntilRefresh() throws Exception {
+        AtomicReference<Exception> error = new AtomicReference<>();
+        boolean[] broken = {true};
+        UserTableModel model = onEdt(() -> {
+            UserTableModel created = new UserTableModel((afterId, limit) -> {
+                if (broken[0]) {
+                    throw new SQLException("database is locked");
+                }
+                return fetch(afterId, limit);
+            }, PAGE_SIZE, 3);
+            created.setErrorListener(error::set);
+            return created;
+        });
+        awaitCondition(() -> error.get() != null);
+        assertEquals("database is locked", error.get().getMessage());
+        assertEquals(0, (int) onEdt(model::getRowCount));
+
+        broken[0] = false;
+        onEdt(() -> {
+            model.refresh();
+            return null;
+        });
+        awaitRows(model, PAGE_SIZE);
+    }
+
+    private static void awaitRows(UserTableModel model, int rows) throws Exception {
+        awaitCondition(() -> model.getRowCount() >= rows);
+    }
+
+    private static void awaitCondition(Callable<Boolean> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!onEdt(condition)) {
+            assertTrue("Timed out waiting for the model", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static <T> T onEdt(Callable<T> action) throws Exception {
+        AtomicReference<T> result = new AtomicReference<>();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                result.set(action.call());
+            } catch (Exception e) {
+                failure.set(e);
+            }
+        });
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return result.get();
+    }
+}